@@ -0,0 +1,339 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * Read-only view of a {@linkplain StoreArchive store archive}. The archive is memory-mapped
+ * on construction, so lookups (binary searches over the sorted index) and reads involve
+ * no system calls. Objects are decoded directly from the mapped data region.
+ * <p>
+ * The index must fit in a single mapping (&lt; 2 GB, or some 75 million objects with
+ * 16-byte IDs); the data region is mapped in overlapping 1 GB chunks, so that
+ * every object lies wholly in some chunk.
+ * </p>
+ * <p>
+ * Instances are thread-safe. {@linkplain #write(Object)} is not supported.
+ * </p>
+ */
+public class ArchiveObjectManager<T> extends ObjectManager<T> {
+
+  private final static int DATA_CHUNK_BYTES = 1 << 30;
+
+
+  private final File file;
+  private final Codec<T> codec;
+  private final HashFunction hashFunction;
+  private final int idLength;
+  private final int entryWidth;
+  private final int count;
+  private final int maxObjectLength;
+  private final ByteBuffer index;
+  private final ByteBuffer[] dataChunks;
+
+
+  /**
+   * Returns a view of an archive of raw bytes (as from a {@linkplain BytesManager}).
+   * Objects are returned as read-only slices of the mapped archive.
+   */
+  public static ArchiveObjectManager<ByteBuffer> ofBytes(File archive) throws UncheckedIOException {
+    return new ArchiveObjectManager<>(archive, new BytesCodec());
+  }
+
+
+  /**
+   * Opens the given archive.
+   *
+   * @param archive the archive file
+   * @param codec   decodes (and encodes, for {@linkplain #getId(Object)}) the archived
+   *                objects
+   */
+  public ArchiveObjectManager(File archive, Codec<T> codec)
+      throws CorruptionException, UncheckedIOException {
+    this.file = archive;
+    this.codec = codec;
+    if (codec == null)
+      throw new IllegalArgumentException("null codec");
+
+    try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+
+      final long size = channel.size();
+      if (size < StoreArchive.HEADER_BYTES)
+        throw new CorruptionException("not an archive: " + archive);
+
+      ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, StoreArchive.HEADER_BYTES);
+      byte[] magic = new byte[StoreArchive.MAGIC.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, StoreArchive.MAGIC))
+        throw new CorruptionException("not an archive: " + archive);
+      int version = header.getInt();
+      if (version > StoreArchive.VERSION)
+        throw new CorruptionException("unsupported archive version " + version + ": " + archive);
+      this.idLength = header.getInt();
+      long objects = header.getLong();
+      long indexOffset = header.getLong();
+      long dataOffset = header.getLong();
+      this.maxObjectLength = header.getInt();
+      byte[] algo = new byte[StoreArchive.MAX_ALGO_BYTES];
+      header.get(algo);
+      int algoLen = 0;
+      while (algoLen < algo.length && algo[algoLen] != 0)
+        ++algoLen;
+      this.hashFunction = HashFunction.forName(new String(algo, 0, algoLen, StandardCharsets.US_ASCII));
+
+      this.entryWidth = idLength + StoreArchive.INDEX_LOC_BYTES;
+      if (idLength != hashFunction.digestLength() ||
+          objects < 0 || objects > Integer.MAX_VALUE / entryWidth ||
+          indexOffset != StoreArchive.HEADER_BYTES ||
+          dataOffset != indexOffset + objects * entryWidth ||
+          dataOffset > size ||
+          maxObjectLength < 0 || maxObjectLength > StoreArchive.MAX_OBJECT_BYTES)
+        throw new CorruptionException("malformed archive header: " + archive);
+      this.count = (int) objects;
+
+      this.index = channel.map(MapMode.READ_ONLY, indexOffset, dataOffset - indexOffset);
+
+      // overlapping chunks: object starting in chunk k lies wholly in chunk k
+      // (an object starts at most DATA_CHUNK_BYTES - 1 into its chunk, so the
+      // overlap is 1 less than the max object length: chunks fit in an int)
+      long dataSize = size - dataOffset;
+      int chunks = (int) Math.max(1, (dataSize + DATA_CHUNK_BYTES - 1) / DATA_CHUNK_BYTES);
+      this.dataChunks = new ByteBuffer[chunks];
+      for (int k = 0; k < chunks; ++k) {
+        long start = (long) k * DATA_CHUNK_BYTES;
+        long len = Math.min(dataSize - start, (long) DATA_CHUNK_BYTES + maxObjectLength - 1);
+        MappedByteBuffer chunk = channel.map(MapMode.READ_ONLY, dataOffset + start, Math.max(0, len));
+        dataChunks[k] = chunk;
+      }
+
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on opening archive " + archive, iox);
+    }
+  }
+
+
+  public File getFile() {
+    return file;
+  }
+
+
+  public HashFunction getHashFunction() {
+    return hashFunction;
+  }
+
+
+  /**
+   * Returns the number of objects in the archive.
+   */
+  public int count() {
+    return count;
+  }
+
+
+  /**
+   * Not supported.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public String write(T object) throws UnsupportedOperationException {
+    throw new UnsupportedOperationException("read-only archive: " + file);
+  }
+
+
+  @Override
+  public String getId(T object) {
+    ByteBuffer buffer;
+    if (codec instanceof BytesCodec)
+      buffer = ((ByteBuffer) object).duplicate();
+    else {
+      buffer = ByteBuffer.allocate(codec.maxBytes());
+      codec.write(object, buffer);
+      buffer.flip();
+    }
+    HashFunction.Hasher hasher = hashFunction.newHasher();
+    hasher.update(buffer);
+    return toHex(hasher.digest());
+  }
+
+
+  @Override
+  public boolean containsId(String id) {
+    return find(id) != -1;
+  }
+
+
+  @Override
+  public T read(String id) throws NotFoundException {
+    int entry = find(id);
+    if (entry == -1)
+      throw new NotFoundException(id);
+    return codec.read(data(entry));
+  }
+
+
+  @Override
+  public Stream<String> streamIds() {
+    return IntStream.range(0, count).mapToObj(this::hexId);
+  }
+
+
+  @Override
+  public Stream<String> streamIds(String idPrefix) {
+    return IntStream.range(lowerBound(idPrefix), count).mapToObj(this::hexId);
+  }
+
+
+  @Override
+  public T readUsingPrefix(String idPrefix) throws NotFoundException, IllegalArgumentException {
+    if (idPrefix == null || idPrefix.isEmpty())
+      throw new IllegalArgumentException("empty idPrefix " + idPrefix);
+    String prefix = canonicalizeHex(idPrefix);
+    int entry = lowerBound(prefix);
+    if (entry == count || !hexId(entry).startsWith(prefix))
+      throw new NotFoundException(idPrefix + "..");
+    if (entry + 1 < count && hexId(entry + 1).startsWith(prefix))
+      throw new IllegalArgumentException("ambiguous (more than 1 result) for prefix " + idPrefix);
+    return codec.read(data(entry));
+  }
+
+
+  @Override
+  public Stream<T> streamObjects() {
+    return IntStream.range(0, count).mapToObj(e -> codec.read(data(e)));
+  }
+
+
+  @Override
+  public Stream<T> streamObjects(String idPrefix) {
+    return IntStream.range(lowerBound(idPrefix), count).mapToObj(e -> codec.read(data(e)));
+  }
+
+
+  /**
+   * Returns a read-only slice of the archived contents of the given object.
+   *
+   * @param id the object's ID
+   */
+  public ByteBuffer getBytes(String id) throws NotFoundException {
+    int entry = find(id);
+    if (entry == -1)
+      throw new NotFoundException(id);
+    return data(entry);
+  }
+
+
+
+
+  private ByteBuffer data(int entry) {
+    long offset = index.getLong(entry * entryWidth + idLength);
+    int length = index.getInt(entry * entryWidth + idLength + 8);
+    ByteBuffer chunk = dataChunks[(int) (offset / DATA_CHUNK_BYTES)];
+    int pos = (int) (offset % DATA_CHUNK_BYTES);
+    if (length < 0 || (long) pos + length > chunk.limit())
+      throw new CorruptionException("truncated archive (entry " + entry + "): " + file);
+    return chunk.slice(pos, length).asReadOnlyBuffer();
+  }
+
+
+  private String hexId(int entry) {
+    byte[] id = new byte[idLength];
+    index.get(entry * entryWidth, id);
+    return toHex(id);
+  }
+
+
+  private int find(String id) {
+    String hex = canonicalizeHex(id);
+    if (hex.length() != 2 * idLength)
+      return -1;
+    byte[] key = hexToBytes(hex);
+    int lo = 0;
+    int hi = count - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int comp = compareId(mid, key);
+      if (comp < 0)
+        lo = mid + 1;
+      else if (comp > 0)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -1;
+  }
+
+
+  /**
+   * Returns the first entry whose hex ID is &ge; the given prefix.
+   */
+  private int lowerBound(String idPrefix) {
+    String prefix = idPrefix.isEmpty() ? "" : canonicalizeHex(idPrefix);
+    if (prefix.length() > 2 * idLength)
+      prefix = prefix.substring(0, 2 * idLength);
+    byte[] key = hexToBytes(prefix.length() % 2 == 0 ? prefix : prefix + "0");
+    int lo = 0;
+    int hi = count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (compareId(mid, key) < 0)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+
+  private int compareId(int entry, byte[] key) {
+    int pos = entry * entryWidth;
+    for (int k = 0; k < key.length; ++k) {
+      int comp = Byte.compareUnsigned(index.get(pos + k), key[k]);
+      if (comp != 0)
+        return comp;
+    }
+    return key.length < idLength ? 1 : 0;
+  }
+
+
+
+  /**
+   * Identity codec for raw bytes.
+   */
+  private static class BytesCodec implements Codec<ByteBuffer> {
+
+    @Override
+    public void write(ByteBuffer item, ByteBuffer dtn) {
+      dtn.put(item.duplicate());
+    }
+
+    @Override
+    public int maxBytes() {
+      return StoreArchive.MAX_OBJECT_BYTES;
+    }
+
+    @Override
+    public ByteBuffer read(ByteBuffer src) {
+      return src;
+    }
+  }
+
+}
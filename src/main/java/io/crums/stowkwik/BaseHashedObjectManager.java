@@ -7,13 +7,36 @@ package io.crums.stowkwik;
 import static io.crums.util.IntegralStrings.toHex;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -24,7 +47,8 @@ import io.crums.util.IntegralStrings;
 
 /**
  * Base implementation for a file-per-object storage manager. The ID of each object is
- * determined by a cryptographic hash (MD5 usually suffices) of its contents.
+ * determined by a cryptographic hash (MD5 usually suffices) of its contents. The hash
+ * is computed by a pluggable {@linkplain HashFunction}.
  *
  * @param <T> the type of object managed.
  */
@@ -35,8 +59,56 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
    */
   public final static String DEFAULT_HASH_ALGO = "MD5";
   
+  /**
+   * Default maximum number of concurrent reads per {@linkplain #readAll(List)} call.
+   */
+  public final static int DEFAULT_READ_PARALLELISM = 8;
+  
+  /**
+   * Default maximum number of entries in the resolved-path cache.
+   * 
+   * @see #setPathCacheSize(int)
+   */
+  public final static int DEFAULT_PATH_CACHE_SIZE = 4096;
+  
+  /**
+   * Maximum attempts at writing an object file whose parent directory is concurrently
+   * pruned by {@linkplain #remove(String)}.
+   */
+  private final static int MAX_WRITE_ATTEMPTS = 3;
+  
   protected final HexPathTree hexPath;
+  /**
+   * The {@linkplain HashFunction#name() name} of the {@linkplain #hashFunction}.
+   */
   protected final String hashAlgo;
+  protected final HashFunction hashFunction;
+  
+  /**
+   * Coalesces concurrent writes of the same object (ID). Removals also run in this
+   * table (with result {@linkplain #REMOVAL}), so a write and a removal of the same
+   * ID never overlap.
+   */
+  private final SingleFlight<String> writeFlights = new SingleFlight<>();
+  
+  /**
+   * The result of a removal in {@linkplain #writeFlights}. (Compared by identity.)
+   */
+  private final static String REMOVAL = new String("removal");
+  
+  private volatile RecentIdCache recentIds;
+  
+  /**
+   * IDs written while a {@linkplain GarbageCollector} is collecting; {@code null}, if none is.
+   */
+  private volatile Set<String> writtenIds;
+  
+  private volatile int mappedReadThreshold;
+  
+  private volatile Charset readerCharset;
+  
+  private volatile Executor readExecutor;
+  private volatile int readParallelism = DEFAULT_READ_PARALLELISM;
 
   /**
    * 
@@ -46,18 +118,90 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
    *            directory
    * @param hashAlgo
    *            the name of the cryptographic hashing algorithm
-   *            (suitable for {@linkplain MessageDigest#getInstance(String)})
+   *            (suitable for {@linkplain HashFunction#forName(String)}, which in
+   *            turn falls back to {@linkplain MessageDigest#getInstance(String)})
    *            E.g. {@code MD5}, {@code SHA-1}, {@code SHA-256}, ..
    * 
    * @see BaseHashedObjectManager#DEFAULT_HASH_ALGO
    */
   protected BaseHashedObjectManager(File dir, String ext, String hashAlgo) {
-    this.hexPath = new HexPathTree(dir, ext);
-    this.hashAlgo = hashAlgo;
-    if (hashAlgo == null)
-      throw new IllegalArgumentException("null hashAlgo");
+    this(dir, ext, HashFunction.forName(hashAlgo));
+  }
+  
+  /**
+   * 
+   * @param dir the root directory. If doesn't exist it's created.
+   * @param ext the file name extension
+   * @param hashFunction the hash function used to compute object IDs
+   */
+  protected BaseHashedObjectManager(File dir, String ext, HashFunction hashFunction) {
+    StoreMetadata meta = StoreMetadata.load(dir, ext);
+    this.hexPath =
+        meta == null ?
+            new HexPathTree(dir, ext) :
+              new HexPathTree(dir, ext, meta.getMaxFilesPerDir());
+    this.hashFunction = hashFunction;
+    if (hashFunction == null)
+      throw new IllegalArgumentException("null hashFunction");
+    this.hashAlgo = hashFunction.name();
+    hexPath.setCacheSize(DEFAULT_PATH_CACHE_SIZE);
+    initStore(meta);
+  }
+  
+  
+  /**
+   * Initializes the store on construction. If the store has {@linkplain StoreMetadata metadata},
+   * then it's checked against this instance's hash algorithm and ID scheme (no further I/O);
+   * otherwise, the store is {@linkplain #sanityCheckAlgo() sanity-checked}, its root directory
+   * primed, and its metadata written.
+   * <p>
+   * Subclasses whose {@linkplain #idScheme() ID scheme} depends on their own state must defer
+   * this (by overriding it as a noop until they're fully constructed).
+   * </p>
+   * 
+   * @param meta the store's existing metadata, or {@code null} if there is none
+   */
+  protected void initStore(StoreMetadata meta) {
+    if (meta != null) {
+      meta.checkCompatible(hashAlgo, idScheme());
+      return;
+    }
     sanityCheckAlgo();
     hexPath.primeRoot();
+    getMetadata().save(getRootDir());
+  }
+  
+  
+  /**
+   * Returns a string describing how IDs are derived from an object's encoding, if not simply
+   * by hashing it; the empty string, otherwise. This is recorded in (and checked against) the
+   * store's metadata.
+   * 
+   * @return the empty string
+   */
+  protected String idScheme() {
+    return "";
+  }
+  
+  
+  /**
+   * Returns the metadata describing this store.
+   */
+  public StoreMetadata getMetadata() {
+    return new StoreMetadata(
+        hashAlgo, getFileExtension(), hexPath.getMaxFilesPerDir(), idScheme());
+  }
+  
+  
+  /**
+   * Performs the full (expensive) store check that's skipped on opening a store with
+   * metadata: a sample object is read and its ID recomputed.
+   * 
+   * @throws IllegalArgumentException if the store's hash algo (or ID scheme) appears not
+   *         to match that of this instance
+   */
+  public void verify() throws IllegalArgumentException, UncheckedIOException {
+    sanityCheckAlgo();
   }
   
   
@@ -66,10 +210,8 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
     String sampleId;
     {
       List<String> sampleIds = streamIds().limit(1).collect(Collectors.toList());
-      if (sampleIds.isEmpty()) {
-        newDigest(); // make sure the digest algo is supported (method was not exercised)
+      if (sampleIds.isEmpty())
         return;
-      }
       sampleId = sampleIds.get(0);
     }
     
@@ -85,30 +227,200 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
     return hexPath.getRoot();
   }
   
+  
+  /**
+   * Returns the hash function used to compute object IDs.
+   */
+  public HashFunction getHashFunction() {
+    return hashFunction;
+  }
+  
 
   public String getFileExtension() {
     return hexPath.getFileExtension();
   }
   
+  
+  /**
+   * Sets the maximum number of entries in the resolved-path (ID to file) cache. Paths
+   * are cached when found or written, so that hot IDs resolve without file system calls.
+   * Cached paths are validated on use: if the file is gone (or fails to open), its entry
+   * is evicted and the path resolved afresh.
+   * 
+   * @param maxEntries the maximum number of cached paths; or zero, to disable the cache
+   *                   (defaults to {@linkplain #DEFAULT_PATH_CACHE_SIZE})
+   * 
+   * @see #DEFAULT_PATH_CACHE_SIZE
+   */
+  public void setPathCacheSize(int maxEntries) {
+    hexPath.setCacheSize(maxEntries);
+  }
+  
+  
+  /**
+   * Installs (or removes) a cache of recently written IDs. This short circuits
+   * repeat writes of the same objects, as well as {@linkplain #containsId(String)}
+   * lookups on recently written IDs.
+   * 
+   * @param cache the cache, or {@code null} to remove it (initially {@code null})
+   */
+  public void setRecentIdCache(RecentIdCache cache) {
+    this.recentIds = cache;
+  }
+  
+  
+  /**
+   * Returns the recently written ID cache, if any.
+   * 
+   * @return possibly {@code null}
+   */
+  public RecentIdCache getRecentIdCache() {
+    return recentIds;
+  }
+  
+  
+  /**
+   * Sets the size at or above which object files are memory-mapped on read, instead
+   * of being copied into a heap buffer. Since objects are immutable, the (read-only)
+   * mapping can be handed to the decoder (or caller) directly. Mapping costs more
+   * than copying for small files, so this is best set in the 100s of KB.
+   * 
+   * @param bytes the file size threshold; or zero, to disable mapped reads (the default)
+   * 
+   * @see #loadByteBuffer(File)
+   */
+  public void setMappedReadThreshold(int bytes) {
+    if (bytes < 0)
+      throw new IllegalArgumentException("negative bytes: " + bytes);
+    this.mappedReadThreshold = bytes;
+  }
+  
+  
+  /**
+   * Returns the size at or above which object files are memory-mapped on read,
+   * or zero, if mapped reads are disabled.
+   */
+  public int getMappedReadThreshold() {
+    return mappedReadThreshold;
+  }
+  
 
   
   
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Concurrent writes of the same object (ID) are coalesced: only one thread
+   * touches the file system, while the others wait for, and share, its outcome.
+   * Across processes, object files are created exclusively (so if another process
+   * beats us to it, its file is validated instead).
+   * </p>
+   */
   @Override
   public String write(T object) throws UncheckedIOException {
+    RecentIdCache recent = this.recentIds;
+    if (recent != null) {
+      String id = recent.idOf(object);
+      if (id != null) {
+        noteWritten(id);
+        // (re-checked after noting it: see removeUnless)
+        if (recent.isCached(id))
+          return id;
+      }
+    }
+    
     ByteBuffer buffer = toByteBuffer(object);
     
-    String hash = signature(buffer);
-    File file = hexPath.suggest(hash, true);
+    return writeEncoded(object, buffer, signature(buffer));
+  }
+  
+  
+  /**
+   * Writes the given {@code object} whose encoding ({@code buffer}) and ID ({@code hash})
+   * have already been computed. (Used by {@linkplain HashMigration}, which computes IDs
+   * under 2 hash functions in one pass.)
+   */
+  String writeEncoded(T object, ByteBuffer buffer, String hash) throws UncheckedIOException {
+    // noted before the file is written, so a sweep never sees an unnoted new file
+    noteWritten(hash);
+    RecentIdCache recent = this.recentIds;
+    if (recent == null || !recent.containsId(hash)) {
+      // if a removal of the same ID was in flight, write afresh
+      while (writeFlights.run(hash, () -> writeImpl(hash, object, buffer)) == REMOVAL);
+    }
     
-    if (file.exists())
-      validateFile(file, object, buffer);
-    else
-      writeObjectFile(file, object, buffer);
+    if (recent != null)
+      recent.objectWritten(object, hash);
     
     return hash;
   }
   
   
+  private void noteWritten(String id) {
+    Set<String> written = this.writtenIds;
+    if (written != null)
+      written.add(id);
+  }
+  
+  
+  /**
+   * Starts recording the IDs of written objects (whether new or not), and returns
+   * the (concurrent) set they're recorded in. Used by {@linkplain GarbageCollector},
+   * since file modification times are not a reliable record of when an object was
+   * written (a {@linkplain FileManager} object file, for example, keeps the
+   * timestamp of the file it was moved or copied from).
+   * 
+   * @see #stopWriteTracking(Set)
+   */
+  synchronized Set<String> startWriteTracking() {
+    Set<String> written = ConcurrentHashMap.newKeySet();
+    this.writtenIds = written;
+    return written;
+  }
+  
+  
+  /**
+   * Stops recording written IDs, if they're still being recorded in the given set.
+   */
+  synchronized void stopWriteTracking(Set<String> written) {
+    if (this.writtenIds == written)
+      this.writtenIds = null;
+  }
+  
+  
+  private String writeImpl(String hash, T object, ByteBuffer buffer) {
+    File file;
+    for (int attempt = 1; ; ++attempt) {
+      file = hexPath.suggest(hash, true);
+      try {
+        writeOrValidate(file, object, buffer);
+        break;
+      } catch (RuntimeException x) {
+        // a concurrent remove may have pruned the (empty) parent directory
+        if (attempt == MAX_WRITE_ATTEMPTS || file.getParentFile().isDirectory())
+          throw x;
+      }
+    }
+    
+    hexPath.cachePath(hash, file);
+    return hash;
+  }
+  
+  
+  private void writeOrValidate(File file, T object, ByteBuffer buffer) {
+    if (file.exists())
+      validateFile(file, object, buffer);
+    else try {
+      writeObjectFile(file, object, buffer.duplicate());
+    } catch (IllegalArgumentException iax) {
+      // lost the race to another process?
+      if (!file.exists())
+        throw iax;
+      validateFile(file, object, buffer);
+    }
+  }
+  
+  
   
   @Override
   public String getId(T object) {
@@ -121,6 +433,15 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
 
   @Override
   public boolean containsId(String id) {
+    RecentIdCache recent = this.recentIds;
+    if (recent != null && recent.containsId(IntegralStrings.canonicalizeHex(id)))
+      return true;
+    File file = hexPath.findCached(id);
+    if (file != null) {
+      if (file.isFile())
+        return true;
+      hexPath.evictCached(id);
+    }
     return hexPath.find(id) != null;
   }
 
@@ -128,7 +449,16 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
 
   @Override
   public T read(String hash) throws UncheckedIOException {
-    File file = hexPath.find(hash);
+    File file = hexPath.findCached(hash);
+    if (file != null) {
+      try {
+        return readObjectFile(file);
+      } catch (NotFoundException stale) {
+        hexPath.evictCached(hash);
+      }
+    }
+    
+    file = hexPath.find(hash);
     if (file == null)
       throw new NotFoundException(hash);
     
@@ -162,6 +492,408 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
   }
   
   
+  /**
+   * Sets the executor and parallelism used by {@linkplain #readAll(List)}. Since reads
+   * block on I/O, the executor should not be the common fork-join pool.
+   * 
+   * @param executor    the I/O executor; or {@code null}, for a shared (unbounded,
+   *                    daemon thread) default
+   * @param parallelism the maximum number of concurrent reads per {@code readAll} call,
+   *                    counting the calling thread (&ge; 1). If 1, the executor is
+   *                    not used.
+   */
+  public void setReadExecutor(Executor executor, int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism " + parallelism);
+    this.readExecutor = executor;
+    this.readParallelism = parallelism;
+  }
+  
+  
+  /**
+   * Returns the maximum number of concurrent reads per {@linkplain #readAll(List)} call.
+   * 
+   * @see #DEFAULT_READ_PARALLELISM
+   */
+  public int getReadParallelism() {
+    return readParallelism;
+  }
+  
+  
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The IDs' file paths are resolved in bulk (sharing subdirectory lookups), and the
+   * files are then read concurrently, by up to {@linkplain #getReadParallelism() read
+   * parallelism} threads (the calling thread, plus helpers from the {@linkplain
+   * #setReadExecutor(Executor, int) read executor}). Helpers that haven't started by
+   * the time the calling thread runs out of work are abandoned (so a busy executor
+   * never delays the call).
+   * </p>
+   */
+  @Override
+  public List<T> readAll(List<String> ids) throws UncheckedIOException {
+    final List<File> files = hexPath.findAll(ids);
+    final int count = files.size();
+    @SuppressWarnings("unchecked")
+    final T[] objects = (T[]) new Object[count];
+    
+    final AtomicInteger next = new AtomicInteger();
+    Runnable reader = () -> {
+      try {
+        for (int index; (index = next.getAndIncrement()) < count; ) {
+          File file = files.get(index);
+          if (file == null)
+            continue;
+          try {
+            objects[index] = readObjectFile(file);
+          } catch (NotFoundException stale) {
+            // a stale cached path
+            String id = ids.get(index);
+            hexPath.evictCached(id);
+            file = hexPath.find(id);
+            if (file != null)
+              objects[index] = readObjectFile(file);
+          }
+        }
+      } catch (RuntimeException | Error x) {
+        next.set(count);  // stop the others
+        throw x;
+      }
+    };
+    
+    int helpers = Math.min(readParallelism, count) - 1;
+    if (helpers <= 0) {
+      reader.run();
+      return Arrays.asList(objects);
+    }
+    
+    Executor executor = readExecutor;
+    if (executor == null)
+      executor = DefaultReadExecutor.INSTANCE;
+    
+    // a helper only runs if it claims its flag before the calling thread does
+    List<CompletableFuture<Void>> helping = new ArrayList<>(helpers);
+    List<AtomicBoolean> claims = new ArrayList<>(helpers);
+    for (int index = helpers; index-- > 0; ) {
+      AtomicBoolean claim = new AtomicBoolean();
+      claims.add(claim);
+      helping.add(CompletableFuture.runAsync(
+          () -> {
+            if (claim.compareAndSet(false, true))
+              reader.run();
+          },
+          executor));
+    }
+    
+    RuntimeException rx = null;
+    try {
+      reader.run();
+    } catch (RuntimeException x) {
+      rx = x;
+    }
+    for (int index = 0; index < helpers; ++index) {
+      if (claims.get(index).compareAndSet(false, true))
+        continue;   // never started (and now never will)
+      CompletableFuture<Void> helper = helping.get(index);
+      try {
+        helper.join();
+      } catch (CompletionException cx) {
+        Throwable cause = cx.getCause();
+        if (cause instanceof Error)
+          throw (Error) cause;
+        if (rx == null)
+          rx = cause instanceof RuntimeException ? (RuntimeException) cause : cx;
+      }
+    }
+    if (rx != null)
+      throw rx;
+    
+    return Arrays.asList(objects);
+  }
+  
+  
+  /**
+   * Lazily created default {@linkplain #readAll(List)} executor.
+   */
+  static class DefaultReadExecutor {
+    
+    final static ExecutorService INSTANCE = Executors.newCachedThreadPool(
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "stowkwik-read-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+  
+  
+  /**
+   * Opens and returns a read-only channel onto the stored contents of the object with
+   * the given ID. This allows large objects to be consumed incrementally (rather than
+   * loaded fully). The caller is responsible for closing the channel.
+   * 
+   * @param id the object's ID
+   * 
+   * @see #openInputStream(String)
+   */
+  public SeekableByteChannel openChannel(String id) throws NotFoundException, UncheckedIOException {
+    try {
+      return openFile(id);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on opening " + id, iox);
+    }
+  }
+  
+  
+  /**
+   * Opens the given object's file for reading, trying its cached path first.
+   */
+  private FileChannel openFile(String id) throws NotFoundException, IOException {
+    File file = hexPath.findCached(id);
+    if (file != null) {
+      try {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      } catch (NoSuchFileException stale) {
+        hexPath.evictCached(id);
+      }
+    }
+    file = hexPath.find(id);
+    if (file == null)
+      throw new NotFoundException(id);
+    return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+  }
+  
+  
+  /**
+   * Opens and returns an input stream onto the stored contents of the object with
+   * the given ID. The stream is not buffered. The caller is responsible for closing it.
+   * 
+   * @param id the object's ID
+   * 
+   * @see #openChannel(String)
+   */
+  public InputStream openInputStream(String id) throws NotFoundException, UncheckedIOException {
+    return java.nio.channels.Channels.newInputStream(openChannel(id));
+  }
+  
+  
+  /**
+   * Returns a reader onto the stored contents of the object with the given ID, decoded
+   * using the given {@code charset}. Characters are decoded incrementally, thru a bounded
+   * buffer. The caller is responsible for closing the reader.
+   * 
+   * @param id      the object's ID
+   * @param charset the character set the object is encoded in
+   */
+  public Reader getReader(String id, Charset charset) throws NotFoundException, UncheckedIOException {
+    if (charset == null)
+      throw new IllegalArgumentException("null charset");
+    return new InputStreamReader(openInputStream(id), charset);
+  }
+  
+  
+  /**
+   * Declares this a text store whose objects are encoded in the given character set.
+   * If set, then {@linkplain #hasReader()} returns {@code true}, and {@linkplain
+   * #getReader(String)} is supported.
+   * 
+   * @param charset the character set; or {@code null}, if this is not a text store (the default)
+   */
+  public void setReaderCharset(Charset charset) {
+    this.readerCharset = charset;
+  }
+  
+  
+  /**
+   * Returns the character set objects are encoded in, if this is a text store;
+   * {@code null}, otherwise.
+   */
+  public Charset getReaderCharset() {
+    return readerCharset;
+  }
+  
+  
+  /**
+   * @return {@code true} iff a {@linkplain #setReaderCharset(Charset) reader charset}
+   *         is set
+   */
+  @Override
+  public boolean hasReader() {
+    return readerCharset != null;
+  }
+  
+  
+  /**
+   * Returns a reader using the {@linkplain #getReaderCharset() reader charset}.
+   * 
+   * @throws UnsupportedOperationException if no reader charset is set
+   * 
+   * @see #getReader(String, Charset)
+   */
+  @Override
+  public Reader getReader(String id) throws NotFoundException, UnsupportedOperationException {
+    Charset charset = readerCharset;
+    if (charset == null)
+      throw new UnsupportedOperationException("not a text store (no reader charset)");
+    return getReader(id, charset);
+  }
+  
+  
+  /**
+   * Reads a range of the stored contents of the object with the given ID into a new
+   * buffer. This is a positional read of just the requested bytes: the rest of the
+   * object is neither read nor decoded.
+   * 
+   * @param id      the object's ID
+   * @param offset  the starting offset into the object's stored contents (&ge; 0)
+   * @param length  the maximum number of bytes to read (&ge; 0); the buffer is sized
+   *                to no more than the bytes remaining past {@code offset}
+   * 
+   * @return a flipped buffer with {@code length} bytes remaining; fewer, if the object's
+   *         end is reached
+   * 
+   * @see #read(String, long, ByteBuffer)
+   */
+  public ByteBuffer read(String id, long offset, int length)
+      throws NotFoundException, IllegalArgumentException, UncheckedIOException {
+    if (offset < 0)
+      throw new IllegalArgumentException("offset " + offset);
+    if (length < 0)
+      throw new IllegalArgumentException("length " + length);
+    
+    try (FileChannel channel = openFile(id)) {
+      // don't allocate past the object's end
+      long available = Math.max(0, channel.size() - offset);
+      ByteBuffer buffer = allocateBuffer((int) Math.min(length, available));
+      Channels.readFully(channel, offset, buffer);
+      return buffer.flip();
+      
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on reading range of " + id, iox);
+    }
+  }
+  
+  
+  /**
+   * Reads a range of the stored contents of the object with the given ID into the
+   * given buffer using a positional read. Bytes are read until the buffer is full, or
+   * the end of the object is reached.
+   * 
+   * @param id      the object's ID
+   * @param offset  the starting offset into the object's stored contents (&ge; 0)
+   * @param dst     the buffer read into (its position is advanced)
+   * 
+   * @return the number of bytes read
+   */
+  public int read(String id, long offset, ByteBuffer dst)
+      throws NotFoundException, IllegalArgumentException, UncheckedIOException {
+    return (int) read(id, new long[] { offset }, new ByteBuffer[] { dst });
+  }
+  
+  
+  /**
+   * Scatter-reads several ranges of the stored contents of the object with the given ID
+   * into the given buffers using positional reads (the file is opened only once). The
+   * {@code i}th range begins at {@code offsets[i]} and is read into {@code dsts[i]} until
+   * that buffer is full, or the end of the object is reached.
+   * 
+   * @param id      the object's ID
+   * @param offsets the starting offsets of the ranges (each &ge; 0)
+   * @param dsts    the buffers read into, one per offset (their positions are advanced)
+   * 
+   * @return the total number of bytes read
+   */
+  public long read(String id, long[] offsets, ByteBuffer[] dsts)
+      throws NotFoundException, IllegalArgumentException, UncheckedIOException {
+    
+    if (offsets.length != dsts.length)
+      throw new IllegalArgumentException(
+          "offsets/buffers length mismatch: " + offsets.length + "/" + dsts.length);
+    for (int index = 0; index < offsets.length; ++index) {
+      if (offsets[index] < 0)
+        throw new IllegalArgumentException("offsets[" + index + "]: " + offsets[index]);
+      if (dsts[index] == null)
+        throw new IllegalArgumentException("null dsts[" + index + "]");
+    }
+    
+    try (FileChannel channel = openFile(id)) {
+      
+      long total = 0;
+      for (int index = 0; index < offsets.length; ++index)
+        total += Channels.readFully(channel, offsets[index], dsts[index]);
+      return total;
+      
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on reading ranges of " + id, iox);
+    }
+  }
+  
+  
+  /**
+   * Transfers the stored contents of the object with the given ID to the given channel.
+   * The bytes are sent using {@linkplain FileChannel#transferTo(long, long, WritableByteChannel)
+   * FileChannel.transferTo}, so that where the OS supports it (e.g. {@code sendfile} to a socket),
+   * they're copied by the kernel without passing thru the JVM heap.
+   * 
+   * @param id  the object's ID
+   * @param out the destination (left open)
+   * 
+   * @return the number of bytes transferred (the stored object's size)
+   * 
+   * @see #transferTo(String, long, long, WritableByteChannel)
+   */
+  public long transferTo(String id, WritableByteChannel out)
+      throws NotFoundException, UncheckedIOException {
+    return transferTo(id, 0, -1, out);
+  }
+  
+  
+  /**
+   * Transfers a range of the stored contents of the object with the given ID to the
+   * given channel.
+   * 
+   * @param id      the object's ID
+   * @param offset  the starting offset into the object's stored contents (&ge; 0)
+   * @param len     the number of bytes to transfer; or -1, for the remaining bytes
+   *                past {@code offset}
+   * @param out     the destination (left open)
+   * 
+   * @return the number of bytes transferred
+   * 
+   * @throws IllegalArgumentException if the range is out of bounds
+   * 
+   * @see #transferTo(String, WritableByteChannel)
+   */
+  public long transferTo(String id, long offset, long len, WritableByteChannel out)
+      throws NotFoundException, IllegalArgumentException, UncheckedIOException {
+    
+    if (out == null)
+      throw new IllegalArgumentException("null out channel");
+    if (offset < 0 || len < -1)
+      throw new IllegalArgumentException("offset " + offset + ", len " + len);
+    
+    try (FileChannel channel = openFile(id)) {
+      
+      long size = channel.size();
+      if (len == -1)
+        len = Math.max(0, size - offset);
+      if (len > size - offset)
+        throw new IllegalArgumentException(
+            "offset " + offset + " + len " + len + " > size " + size + " of " + id);
+      
+      Channels.transferFully(channel, offset, len, out);
+      return len;
+      
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on transferring " + id, iox);
+    }
+  }
+  
+  
   public T readUsingPrefix(String idPrefix) throws NotFoundException, IllegalArgumentException, UncheckedIOException {
     if (idPrefix == null || idPrefix.isEmpty())
       throw new IllegalArgumentException("empty idPrefix " + idPrefix);
@@ -190,13 +922,89 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
   protected final File getFilepath(String hash) {
     return hexPath.find(hash);
   }
+
+
+  /**
+   * Removes the object with the given ID, if it exists. Subdirectories left empty
+   * by the removal are pruned (excepting the top level ones, which are always kept).
+   * <p>
+   * Note there's no reference counting: the object is removed even if it's still
+   * referenced elsewhere. To remove only unreachable objects, see
+   * {@linkplain GarbageCollector}.
+   * </p>
+   *
+   * @param id the object's ID
+   * @return {@code true} iff the object was removed (if {@code false}, it didn't exist)
+   */
+  public boolean remove(String id) throws UncheckedIOException {
+    return removeUnless(IntegralStrings.canonicalizeHex(id), Set.of());
+  }
+  
+  
+  /**
+   * Removes the object with the given (canonical) ID, unless the ID is in the given
+   * {@code spared} set. The check and the removal are atomic with respect to writes
+   * of the same ID: provided a writer adds the ID to the set before writing (as the
+   * {@linkplain #startWriteTracking() write tracking} set is), either the writer
+   * sees the object removed (and writes it afresh), or the object is spared.
+   * 
+   * @return {@code true} iff the object was removed
+   */
+  boolean removeUnless(String hex, Set<String> spared) throws UncheckedIOException {
+    boolean[] removed = new boolean[1];
+    // if a write of the same ID was in flight, remove after it
+    while (writeFlights.run(hex, () -> {
+          removed[0] = removeImpl(hex, spared);
+          return REMOVAL;
+        }) != REMOVAL);
+    return removed[0];
+  }
+  
+  
+  private boolean removeImpl(String hex, Set<String> spared) throws UncheckedIOException {
+    RecentIdCache recent = this.recentIds;
+    if (recent != null)
+      recent.evict(hex);
+    // (checked after the eviction, since writers note the ID before consulting the cache)
+    if (spared.contains(hex))
+      return false;
+    File file = hexPath.find(hex);
+    hexPath.evictCached(hex);
+    if (file == null)
+      return false;
+    try {
+      if (!Files.deleteIfExists(file.toPath()))
+        return false;
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on deleting " + file, iox);
+    }
+    
+    // prune empty subdirs (delete fails on a non-empty dir, so this is race-safe
+    // against concurrent removes; concurrent writes retry if their dir is pruned)
+    File root = getRootDir();
+    for (File dir = file.getParentFile();
+        !dir.equals(root) && !dir.getParentFile().equals(root) && dir.delete();
+        dir = dir.getParentFile());
+    
+    return true;
+  }
   
   
+  /**
+   * Loads and returns the contents of the given file. If the file is at least
+   * {@linkplain #getMappedReadThreshold() mapped-read threshold} in size, then
+   * a read-only memory-mapped buffer is returned; o.w. a newly
+   * {@linkplain #allocateBuffer(int) allocated} buffer.
+   */
   protected final ByteBuffer loadByteBuffer(File file) throws UncheckedIOException {
-    if (file.length() > maxBytes())
+    long length = file.length();
+    if (length > maxBytes())
       throw new CorruptionException(
-          "file length " + file.length() + " > maxBytes (" + maxBytes() + "): " + file);
-    ByteBuffer buffer = allocateBuffer((int) file.length());
+          "file length " + length + " > maxBytes (" + maxBytes() + "): " + file);
+    int threshold = mappedReadThreshold;
+    if (threshold != 0 && length >= threshold)
+      return Channels.mapReadOnly(file);
+    ByteBuffer buffer = allocateBuffer((int) length);
     Channels.readFully(file, buffer);
     return buffer.flip();
   }
@@ -255,16 +1063,30 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
    * Excepting its mark, the state of the {@code buffer} is not modified.
    */
   protected String signature(ByteBuffer buffer) {
-    MessageDigest digest = threadLocalDigest();
+    HashFunction.Hasher hasher = threadLocalHasher();
     buffer.mark();
-    digest.update(buffer);
+    hasher.update(buffer);
     buffer.reset();
-    return toHex(digest.digest());
+    return toHex(hasher.digest());
   }
   
   /**
+   * Returns this thread's (reset) hasher for this instance's hash function.
    * Testing shows about a 10% improvement in speed when reusing digests (SSD
    */
+  protected HashFunction.Hasher threadLocalHasher() {
+    return ThreadLocalHashers.get(hashFunction);
+  }
+  
+  
+  /**
+   * Returns this thread's (reset) JCA digest for the {@linkplain #hashAlgo}.
+   * 
+   * @deprecated object IDs are computed by the {@linkplain #hashFunction}; use
+   *             {@linkplain #threadLocalHasher()}. (Fails if the function is not a
+   *             JCA algorithm.)
+   */
+  @Deprecated
   protected MessageDigest threadLocalDigest() {
     Map<String, MessageDigest> map = digestMap.get();
     MessageDigest digest = map.get(hashAlgo);
@@ -276,6 +1098,10 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
     return digest;
   }
   
+  /**
+   * @deprecated see {@linkplain #threadLocalDigest()}
+   */
+  @Deprecated
   protected final static ThreadLocal<Map<String, MessageDigest>> digestMap = new ThreadLocal<>() {
     @Override
     protected Map<String, MessageDigest> initialValue() {
@@ -284,6 +1110,11 @@ public abstract class BaseHashedObjectManager<T> extends ObjectManager<T> {
   };
   
   
+  /**
+   * @deprecated use {@code hashFunction.newHasher()}. (Fails if the
+   *             {@linkplain #hashFunction} is not a JCA algorithm.)
+   */
+  @Deprecated
   protected MessageDigest newDigest() {
     try {
       return MessageDigest.getInstance(hashAlgo);
@@ -47,7 +47,20 @@ public class BinaryObjectManager<T> extends HashedObjectManager<T> {
     super(dir, ext, codec, hashAlgo);
     this.codec = codec;
   }
+  
 
+  /**
+   * Creates a new instance with given binary codec.
+   * 
+   * @param dir   store directory
+   * @param ext   filename extension (w/o the dot) used to store objects of type {@code <T>}
+   * @param codec serialization interface for type {@code <T>}
+   * @param hashFunction the hash function
+   */
+  public BinaryObjectManager(File dir, String ext, Codec<T> codec, HashFunction hashFunction) {
+    super(dir, ext, codec, hashFunction);
+    this.codec = codec;
+  }
 
 
 
@@ -56,6 +69,15 @@ public class BinaryObjectManager<T> extends HashedObjectManager<T> {
 
 
 
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * If the file is at least {@linkplain #getMappedReadThreshold() mapped-read threshold}
+   * in size, then the object is decoded directly from the (read-only) file mapping. Codecs
+   * that retain views of the buffer they read from keep the mapping alive.
+   * </p>
+   */
   @Override
   protected T readObjectFile(File file) throws UncheckedIOException {
     ByteBuffer buffer = loadByteBuffer(file);
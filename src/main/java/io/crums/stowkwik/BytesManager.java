@@ -28,12 +28,23 @@ public class BytesManager extends BaseHashedObjectManager<ByteBuffer> {
   }
 
   public BytesManager(File dir, String ext, String hashAlgo, int maxBytes) {
-    super(dir, ext, hashAlgo);
+    this(dir, ext, HashFunction.forName(hashAlgo), maxBytes);
+  }
+
+  public BytesManager(File dir, String ext, HashFunction hashFunction, int maxBytes) {
+    super(dir, ext, hashFunction);
     this.maxBytes = maxBytes;
     if (maxBytes < 16)
       throw new IllegalArgumentException("maxBytes: " + maxBytes);
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * If the file is at least {@linkplain #getMappedReadThreshold() mapped-read threshold}
+   * in size, then the returned buffer is a read-only {@code MappedByteBuffer}.
+   * </p>
+   */
   @Override
   protected ByteBuffer readObjectFile(File file) throws UncheckedIOException {
     return loadByteBuffer(file);
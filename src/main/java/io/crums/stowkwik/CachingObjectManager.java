@@ -0,0 +1,218 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToIntFunction;
+
+import io.crums.stowkwik.io.TinyLfuCache;
+
+/**
+ * Caches decoded objects on read. Since objects are immutable and addressed by
+ * their contents, a cached object only goes stale if it's removed. Objects should
+ * therefore be removed thru {@linkplain #remove(String)}; if they're removed from the
+ * base store directly, they must also be {@linkplain #invalidate(String) invalidated}
+ * here. The cache is bounded
+ * either by object count, or by estimated object size, and uses frequency-aware
+ * eviction (see {@linkplain TinyLfuCache}), so under skewed read traffic the popular
+ * objects stay in memory.
+ * <p>
+ * Concurrent misses on the same ID are coalesced: only one thread loads the object
+ * from the base store, while the others wait for, and share, its result.
+ * </p>
+ * <p>
+ * Note the same object <em>instance</em> is returned to every reader that hits the
+ * cache. So if the type {@code T} is mutable, readers must not modify it.
+ * </p>
+ */
+public class CachingObjectManager<T> extends WrappedObjectManager<T> {
+
+  private final TinyLfuCache<String, T> cache;
+  private final SingleFlight<T> loads = new SingleFlight<>();
+  /**
+   * Loads (and caches) under the read lock; removals (and invalidations) under the
+   * write lock. So a removed object is not re-cached by a load that read it first.
+   */
+  private final ReadWriteLock removalLock = new ReentrantReadWriteLock();
+
+  /**
+   * Creates an instance bounded by count.
+   *
+   * @param base        the base store
+   * @param maxObjects  the maximum number of cached objects (&ge; 1)
+   */
+  public CachingObjectManager(ObjectManager<T> base, int maxObjects) {
+    super(base);
+    this.cache = new TinyLfuCache<>(maxObjects);
+  }
+
+  /**
+   * Creates an instance bounded by (estimated) size.
+   *
+   * @param base            the base store
+   * @param maxBytes        the maximum total (estimated) size of the cached objects
+   * @param sizer           estimates the size (in bytes) of an object
+   * @param expectedObjects the expected number of objects when the cache is full
+   */
+  public CachingObjectManager(
+      ObjectManager<T> base, long maxBytes, ToIntFunction<? super T> sizer, int expectedObjects) {
+    super(base);
+    this.cache = new TinyLfuCache<>(maxBytes, sizer, expectedObjects);
+  }
+
+
+
+  @Override
+  public T read(String id) throws NotFoundException, UncheckedIOException {
+    T object = cache.get(id);
+    if (object != null)
+      return object;
+
+    return loads.run(id, () -> {
+      Lock lock = removalLock.readLock();
+      lock.lock();
+      try {
+        // (another thread may have just loaded it)
+        T loaded = cache.peek(id);
+        if (loaded == null) {
+          loaded = base.read(id);
+          cache.put(id, loaded);
+        }
+        return loaded;
+      } finally {
+        lock.unlock();
+      }
+    });
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Cached objects are served from memory; the rest are read from the base
+   * store in a single batch, and then cached.
+   * </p>
+   */
+  @Override
+  public List<T> readAll(List<String> ids) throws UncheckedIOException {
+    List<T> objects = new ArrayList<>(ids.size());
+    List<String> missIds = new ArrayList<>();
+    List<Integer> missIndexes = new ArrayList<>();
+    for (String id : ids) {
+      T object = cache.get(id);
+      if (object == null) {
+        missIds.add(id);
+        missIndexes.add(objects.size());
+      }
+      objects.add(object);
+    }
+    if (missIds.isEmpty())
+      return objects;
+    
+    Lock lock = removalLock.readLock();
+    lock.lock();
+    try {
+      List<T> loaded = base.readAll(missIds);
+      for (int index = 0; index < loaded.size(); ++index) {
+        T object = loaded.get(index);
+        if (object != null) {
+          objects.set(missIndexes.get(index), object);
+          cache.put(missIds.get(index), object);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return objects;
+  }
+
+
+  /**
+   * Removes the object with the given ID from the base store, and from the cache.
+   * 
+   * @param id the object's ID (as it's read)
+   * @return {@code true} iff the object was removed from the base store
+   * 
+   * @throws UnsupportedOperationException if the base store is not a
+   *         {@linkplain BaseHashedObjectManager} (the only kind that supports removal)
+   * 
+   * @see BaseHashedObjectManager#remove(String)
+   */
+  public boolean remove(String id) throws UnsupportedOperationException, UncheckedIOException {
+    if (!(base instanceof BaseHashedObjectManager))
+      throw new UnsupportedOperationException(
+          "base store does not support removal: " + base.getClass().getName());
+    BaseHashedObjectManager<T> store = (BaseHashedObjectManager<T>) base;
+    Lock lock = removalLock.writeLock();
+    lock.lock();
+    try {
+      boolean removed = store.remove(id);
+      cache.remove(id);
+      return removed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Drops the object with the given ID from the cache. Use this if the object is
+   * removed from the base store directly.
+   * 
+   * @param id the object's ID (as it's read)
+   */
+  public void invalidate(String id) {
+    Lock lock = removalLock.writeLock();
+    lock.lock();
+    try {
+      cache.remove(id);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Returns the underlying cache. (Exposed for diagnostics and tuning.)
+   */
+  public TinyLfuCache<String, T> getCache() {
+    return cache;
+  }
+
+
+  /**
+   * Returns the number of reads served from the cache.
+   */
+  public long hits() {
+    return cache.hits();
+  }
+
+  /**
+   * Returns the number of reads not served from the cache.
+   */
+  public long misses() {
+    return cache.misses();
+  }
+
+  /**
+   * Returns the number of objects evicted from (or denied admission to) the cache.
+   */
+  public long evictions() {
+    return cache.evictions();
+  }
+
+  /**
+   * Returns the ratio of cache hits to reads, or zero if there have been no reads.
+   */
+  public double hitRate() {
+    return cache.hitRate();
+  }
+
+}
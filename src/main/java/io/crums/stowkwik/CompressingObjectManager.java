@@ -0,0 +1,475 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.crums.stowkwik.io.Channels;
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * A {@linkplain BinaryObjectManager} that stores its objects deflated, optionally
+ * with a preset dictionary. An object's ID is still the hash of its (uncompressed)
+ * encoding, so IDs are the same as in an uncompressed store.
+ * <h2>Stored Format</h2>
+ * <p>
+ * Compressed objects are tagged with a short header (a 3-byte magic, a method byte,
+ * the uncompressed length, and if a dictionary was used, the dictionary's Adler-32
+ * checksum). Objects that don't compress well (or are smaller than the {@linkplain
+ * #setMinCompressBytes(int) minimum}) are stored as is, untagged, so compressed and
+ * uncompressed objects live side by side in the same store. (An uncompressed encoding
+ * that happens to begin with the magic bytes is stored with a "raw" tag.)
+ * </p>
+ * <p>
+ * Since the stored bytes are not (always) the objects' encodings, the store records a
+ * {@linkplain #ID_SCHEME "deflate" ID scheme} in its metadata. So a plain
+ * {@linkplain BinaryObjectManager} won't open it (nor vice versa), and tools that
+ * assume stored bytes are encodings ({@linkplain StoreArchive}, {@linkplain
+ * HashMigration}) reject it.
+ * </p>
+ * <h2>Dictionaries</h2>
+ * <p>
+ * For small, similar records, most of the gain comes from a preset dictionary.
+ * A dictionary may be {@linkplain #trainDictionary(int, int) trained} from a sample
+ * of the store, or {@linkplain #setDictionary(byte[]) set} explicitly. Dictionaries
+ * are saved under the store's root directory and are never deleted, so objects
+ * compressed with a retired dictionary remain readable. The current dictionary's ID
+ * is recorded in the store's {@linkplain StoreMetadata#getDictionary() metadata}.
+ * </p>
+ * <p>
+ * Note the raw-byte accessors inherited from the base class ({@linkplain
+ * #openChannel(String) openChannel}, {@linkplain #transferTo(String, java.nio.channels.WritableByteChannel)
+ * transferTo}, the positional {@code read}s, etc.) operate on the <em>stored</em>
+ * (possibly compressed) bytes.
+ * </p>
+ */
+public class CompressingObjectManager<T> extends BinaryObjectManager<T> {
+
+  /**
+   * Default {@linkplain #setMinCompressBytes(int) minimum size} of an object that's compressed.
+   */
+  public final static int DEFAULT_MIN_COMPRESS_BYTES = 64;
+
+  /**
+   * Deflate's window size: larger dictionaries are not useful.
+   */
+  public final static int MAX_DICTIONARY_BYTES = 32 * 1024;
+
+  /**
+   * The {@linkplain #idScheme() ID scheme} recorded in the store's metadata.
+   */
+  public final static String ID_SCHEME = "deflate";
+
+  private final static byte[] MAGIC = { (byte) 0xc5, 'S', 'Z' };
+
+  private final static byte RAW = 0;
+  private final static byte DEFLATE = 1;
+  private final static byte DEFLATE_DICT = 2;
+
+  private final static int HEADER_BYTES = MAGIC.length + 1 + 4;
+  private final static int MAX_HEADER_BYTES = HEADER_BYTES + 4;
+
+  private final static String DICT_INFIX = ".dict.";
+
+
+  private final Codec<T> codec;
+  private final Pattern dictPattern;
+  private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+  /** The current dictionary, or {@code null}. */
+  private volatile Dictionary dictionary;
+  private volatile int level = Deflater.DEFAULT_COMPRESSION;
+  private volatile int minCompressBytes = DEFAULT_MIN_COMPRESS_BYTES;
+
+
+  /**
+   * Creates a new instance with the {@linkplain #DEFAULT_HASH_ALGO default hash algo}.
+   *
+   * @param dir   store directory
+   * @param ext   filename extension used to store objects of type {@code <T>}
+   * @param codec serialization interface for type {@code <T>}
+   */
+  public CompressingObjectManager(File dir, String ext, Codec<T> codec) {
+    this(dir, ext, codec, HashFunction.forName(DEFAULT_HASH_ALGO));
+  }
+
+
+  /**
+   * @param dir   store directory
+   * @param ext   filename extension used to store objects of type {@code <T>}
+   * @param codec serialization interface for type {@code <T>}
+   * @param hashFunction the hash function
+   */
+  public CompressingObjectManager(File dir, String ext, Codec<T> codec, HashFunction hashFunction) {
+    super(dir, ext, codec, hashFunction);
+    this.codec = codec;
+    this.dictPattern = Pattern.compile(
+        Pattern.quote(StoreMetadata.FILE_PREFIX + ext + DICT_INFIX) + "([0-9a-f]{8})");
+    loadDictionaries();
+  }
+
+
+  private void loadDictionaries() {
+    for (File file : getRootDir().listFiles()) {
+      Matcher matcher = dictPattern.matcher(file.getName());
+      if (!matcher.matches())
+        continue;
+      byte[] dict;
+      try {
+        dict = Files.readAllBytes(file.toPath());
+      } catch (IOException iox) {
+        throw new UncheckedIOException("on loading dictionary " + file, iox);
+      }
+      int id = adler(dict);
+      if (id != Integer.parseUnsignedInt(matcher.group(1), 16))
+        throw new CorruptionException("dictionary checksum mismatch: " + file);
+      dictionaries.put(id, dict);
+    }
+    StoreMetadata meta = StoreMetadata.load(getRootDir(), getFileExtension());
+    String current = meta == null ? "" : meta.getDictionary();
+    if (!current.isEmpty()) {
+      int id = Integer.parseUnsignedInt(current, 16);
+      byte[] dict = dictionaries.get(id);
+      if (dict == null)
+        throw new CorruptionException(
+            "missing current dictionary " + current + " in " + getRootDir());
+      this.dictionary = new Dictionary(id, dict);
+    }
+  }
+
+
+
+  /**
+   * Sets the deflate compression level.
+   *
+   * @param level 0-9, or {@linkplain Deflater#DEFAULT_COMPRESSION} (the default)
+   */
+  public void setCompressionLevel(int level) {
+    if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION)
+      throw new IllegalArgumentException("level " + level);
+    this.level = level;
+  }
+
+
+  public int getCompressionLevel() {
+    return level;
+  }
+
+
+  /**
+   * Sets the minimum size of an object's encoding for it to be compressed.
+   * Smaller objects are stored as is.
+   *
+   * @param bytes &ge; 0
+   * @see #DEFAULT_MIN_COMPRESS_BYTES
+   */
+  public void setMinCompressBytes(int bytes) {
+    if (bytes < 0)
+      throw new IllegalArgumentException("bytes " + bytes);
+    this.minCompressBytes = bytes;
+  }
+
+
+  public int getMinCompressBytes() {
+    return minCompressBytes;
+  }
+
+
+  /**
+   * Sets and saves the preset dictionary used to compress objects from here on,
+   * and records it as current in the store's metadata.
+   *
+   * @param dict  the dictionary (at most {@linkplain #MAX_DICTIONARY_BYTES} long);
+   *              or {@code null}, to compress without one
+   */
+  public synchronized void setDictionary(byte[] dict) throws UncheckedIOException {
+    if (dict == null) {
+      this.dictionary = null;
+      getMetadata().save(getRootDir());
+      return;
+    }
+    if (dict.length == 0 || dict.length > MAX_DICTIONARY_BYTES)
+      throw new IllegalArgumentException("dictionary length " + dict.length);
+    dict = dict.clone();
+    int id = adler(dict);
+    File file = new File(
+        getRootDir(),
+        StoreMetadata.FILE_PREFIX + getFileExtension() + DICT_INFIX + String.format("%08x", id));
+    if (!file.isFile())
+      Channels.writeToNewFile(file, ByteBuffer.wrap(dict));
+    dictionaries.put(id, dict);
+    this.dictionary = new Dictionary(id, dict);
+    getMetadata().save(getRootDir());
+  }
+
+
+  /**
+   * Returns the current dictionary, if any.
+   *
+   * @return a copy of the dictionary, or {@code null}
+   */
+  public byte[] getDictionary() {
+    Dictionary dict = this.dictionary;
+    return dict == null ? null : dict.bytes.clone();
+  }
+
+
+  /**
+   * Trains a dictionary from a sample of the store's objects, and then
+   * {@linkplain #setDictionary(byte[]) sets} it. Since IDs are hashes, the first
+   * {@code sampleSize} objects in ID order are a random sample. The dictionary is
+   * simply the samples' encodings concatenated (no frequency analysis), filled from
+   * its end: the first sample in ID order comes last, and samples that don't fit
+   * in {@code maxBytes} are truncated or dropped.
+   *
+   * @param sampleSize  the maximum number of objects sampled
+   * @param maxBytes    the maximum dictionary size (&le; {@linkplain #MAX_DICTIONARY_BYTES})
+   *
+   * @return the dictionary, or {@code null} if the store is empty
+   */
+  public byte[] trainDictionary(int sampleSize, int maxBytes) throws UncheckedIOException {
+    if (sampleSize < 1)
+      throw new IllegalArgumentException("sampleSize " + sampleSize);
+    if (maxBytes < 1 || maxBytes > MAX_DICTIONARY_BYTES)
+      throw new IllegalArgumentException("maxBytes " + maxBytes);
+
+    List<String> ids = streamIds().limit(sampleSize).collect(Collectors.toList());
+    if (ids.isEmpty())
+      return null;
+
+    ByteBuffer dict = ByteBuffer.allocate(maxBytes);
+    // fill from the end: the earlier samples, the nearer the end
+    int pos = maxBytes;
+    for (String id : ids) {
+      ByteBuffer encoding = loadEncoding(getFilepath(id));
+      int len = Math.min(encoding.remaining(), pos);
+      if (len == 0)
+        break;
+      pos -= len;
+      encoding.limit(encoding.position() + len);
+      dict.put(pos, encoding, encoding.position(), len);
+    }
+    byte[] trained = new byte[maxBytes - pos];
+    dict.get(pos, trained);
+    setDictionary(trained);
+    return trained;
+  }
+
+
+
+
+  /**
+   * IDs are hashes of the uncompressed encodings, but the stored bytes are
+   * (mostly) deflated.
+   *
+   * @return {@linkplain #ID_SCHEME}
+   */
+  @Override
+  protected String idScheme() {
+    return ID_SCHEME;
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Includes the current dictionary's ID, if any.
+   * </p>
+   */
+  @Override
+  public StoreMetadata getMetadata() {
+    StoreMetadata meta = super.getMetadata();
+    Dictionary dict = this.dictionary;   // (null during construction)
+    return dict == null ? meta : meta.withDictionary(String.format("%08x", dict.id));
+  }
+
+
+  @Override
+  protected int maxBytes() {
+    return super.maxBytes() + MAX_HEADER_BYTES;
+  }
+
+
+  @Override
+  protected T readObjectFile(File file) throws UncheckedIOException {
+    return codec.read(loadEncoding(file));
+  }
+
+
+  @Override
+  protected void writeObjectFile(File file, T object, ByteBuffer buffer) throws UncheckedIOException {
+    Channels.writeToNewFile(file, toStored(buffer));
+  }
+
+
+  @Override
+  protected void validateFile(File file, T object, ByteBuffer buffer) throws CorruptionException {
+    if (!loadEncoding(file).equals(buffer))
+      throw new CorruptionException(file.toString());
+  }
+
+
+
+  /**
+   * Loads and returns the (uncompressed) encoding stored in the given file.
+   */
+  private ByteBuffer loadEncoding(File file) throws UncheckedIOException {
+    ByteBuffer stored = loadByteBuffer(file);
+    ByteBuffer encoding = fromStored(stored, file);
+    if (encoding.remaining() > super.maxBytes())
+      throw new CorruptionException(
+          "encoding length " + encoding.remaining() + " > maxBytes (" + super.maxBytes() + "): " + file);
+    return encoding;
+  }
+
+
+  private boolean isTagged(ByteBuffer stored) {
+    if (stored.remaining() < MAGIC.length + 1)
+      return false;
+    int pos = stored.position();
+    for (int index = 0; index < MAGIC.length; ++index)
+      if (stored.get(pos + index) != MAGIC[index])
+        return false;
+    return true;
+  }
+
+
+  private ByteBuffer fromStored(ByteBuffer stored, File file) {
+    if (!isTagged(stored))
+      return stored;
+
+    int pos = stored.position();
+    byte method = stored.get(pos + MAGIC.length);
+    if (method == RAW)
+      return stored.position(pos + MAGIC.length + 1).slice();
+
+    if ((method != DEFLATE && method != DEFLATE_DICT) || stored.remaining() < HEADER_BYTES)
+      return stored;   // (an improbable, untagged encoding)
+
+    int length = stored.getInt(pos + MAGIC.length + 1);
+    int dataPos = pos + HEADER_BYTES;
+    byte[] dict = null;
+    if (method == DEFLATE_DICT) {
+      if (stored.remaining() < MAX_HEADER_BYTES)
+        return stored;
+      int id = stored.getInt(dataPos);
+      dataPos += 4;
+      dict = dictionaries.get(id);
+      if (dict == null)
+        throw new CorruptionException(
+            "missing dictionary " + String.format("%08x", id) + " for " + file);
+    }
+    if (length < 0 || length > super.maxBytes())
+      return stored;
+
+    ByteBuffer encoding = allocateBuffer(length);
+    Inflater inflater = new Inflater(true);
+    try {
+      if (dict != null)
+        inflater.setDictionary(dict);
+      inflater.setInput(stored.duplicate().position(dataPos));
+      while (encoding.hasRemaining() && !inflater.finished()) {
+        if (inflater.inflate(encoding) == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          break;
+      }
+      if (encoding.hasRemaining() || !inflater.finished())
+        throw new CorruptionException("truncated compressed object: " + file);
+    } catch (DataFormatException dfx) {
+      throw new CorruptionException("malformed compressed object " + file + ": " + dfx.getMessage());
+    } finally {
+      inflater.end();
+    }
+    return encoding.flip();
+  }
+
+
+  /**
+   * Returns the stored form of the given encoding.
+   */
+  private ByteBuffer toStored(ByteBuffer encoding) {
+    final int length = encoding.remaining();
+    if (length >= minCompressBytes && length > 0) {
+      ByteBuffer compressed = deflate(encoding);
+      if (compressed != null)
+        return compressed;
+    }
+    if (!isTagged(encoding))
+      return encoding.duplicate();
+
+    ByteBuffer tagged = ByteBuffer.allocate(MAGIC.length + 1 + length);
+    tagged.put(MAGIC).put(RAW).put(encoding.duplicate());
+    return tagged.flip();
+  }
+
+
+  /**
+   * Returns the deflated, tagged encoding, or {@code null} if it doesn't save space.
+   */
+  private ByteBuffer deflate(ByteBuffer encoding) {
+    final int length = encoding.remaining();
+    final Dictionary dict = this.dictionary;    // (read once: bytes and ID must agree)
+    final int headerBytes = dict == null ? HEADER_BYTES : MAX_HEADER_BYTES;
+
+    ByteBuffer out = ByteBuffer.allocate(length);  // no bigger than the raw encoding
+    out.put(MAGIC).put(dict == null ? DEFLATE : DEFLATE_DICT).putInt(length);
+    if (dict != null)
+      out.putInt(dict.id);
+    if (!out.hasRemaining())
+      return null;
+
+    Deflater deflater = new Deflater(level, true);
+    try {
+      if (dict != null)
+        deflater.setDictionary(dict.bytes);
+      deflater.setInput(encoding.duplicate());
+      deflater.finish();
+      while (!deflater.finished()) {
+        deflater.deflate(out);
+        if (!out.hasRemaining() && !deflater.finished())
+          return null;
+      }
+    } finally {
+      deflater.end();
+    }
+    return out.position() - headerBytes < length ? out.flip() : null;
+  }
+
+
+  private static int adler(byte[] bytes) {
+    Adler32 adler = new Adler32();
+    adler.update(bytes);
+    return (int) adler.getValue();
+  }
+
+
+
+  /**
+   * A dictionary and its ID (Adler-32), published together.
+   */
+  private final static class Dictionary {
+    final int id;
+    final byte[] bytes;
+
+    Dictionary(int id, byte[] bytes) {
+      this.id = id;
+      this.bytes = bytes;
+    }
+  }
+
+}
@@ -7,23 +7,43 @@ package io.crums.stowkwik;
 import static io.crums.util.IntegralStrings.*;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
+import java.util.concurrent.ForkJoinPool;
 
+import io.crums.stowkwik.HashFunction.Hasher;
+import io.crums.stowkwik.io.Channels;
 import io.crums.stowkwik.io.CorruptionException;
 
 /**
- * 
+ * A store of files. Files are named after the hash of their contents: either
+ * a straight hash, or optionally, a Merkle tree hash of the file's fixed-size
+ * chunks, computed in parallel. The latter scales with the number of cores
+ * for large files.
  */
 public class FileManager extends BaseHashedObjectManager<File> {
   
   private final boolean moveOnWrite;
+  private final TreeFileHasher treeHasher;
+  /**
+   * Set at the end of construction. (Guards against the base constructor
+   * initializing the store before the ID scheme is known.)
+   */
+  private boolean constructed;
+  /**
+   * The metadata loaded by the base constructor, held until construction is complete.
+   * (No initializer, so that it's not reset after the base constructor sets it.)
+   */
+  private StoreMetadata loadedMeta;
 
   /**
    * Creates a <em>move-on-write</em>, MD5 instance; {@code this(dir, ext, DEFAULT_HASH_ALGO, true)}
@@ -59,8 +79,107 @@ public class FileManager extends BaseHashedObjectManager<File> {
    * @see BaseHashedObjectManager#DEFAULT_HASH_ALGO
    */
   public FileManager(File dir, String ext, String hashAlgo, boolean moveOnWrite) {
-    super(dir, ext, hashAlgo);
+    this(dir, ext, HashFunction.forName(hashAlgo), moveOnWrite);
+  }
+
+  /**
+   * Creates an instance with the given hash function.
+   * 
+   * @param hashFunction the hash function used to compute the IDs of files
+   * 
+   * @see FileManager#FileManager(File, String, String, boolean)
+   */
+  public FileManager(File dir, String ext, HashFunction hashFunction, boolean moveOnWrite) {
+    this(dir, ext, hashFunction, moveOnWrite, 0);
+  }
+
+  /**
+   * Creates an instance with the given ID scheme. If {@code chunkSize} is positive,
+   * then a file's ID is the Merkle tree hash of its {@code chunkSize}-byte chunks,
+   * which are hashed in parallel (in a dedicated fork-join pool, by default; see
+   * {@linkplain #setHashPool(ForkJoinPool)}). A store's ID scheme
+   * can't be changed once it's populated: IDs under the 2 schemes differ (even for
+   * files smaller than a chunk).
+   * 
+   * @param hashFunction the hash function used to compute the IDs of files
+   * @param chunkSize    the tree-hash chunk size (&ge; 4096); or zero, for a straight
+   *                     (sequential) hash of the file's contents
+   * 
+   * @see FileManager#FileManager(File, String, String, boolean)
+   */
+  public FileManager(
+      File dir, String ext, HashFunction hashFunction, boolean moveOnWrite, int chunkSize) {
+    super(dir, ext, hashFunction);
     this.moveOnWrite = moveOnWrite;
+    this.treeHasher = chunkSize == 0 ? null : new TreeFileHasher(hashFunction, chunkSize);
+    this.constructed = true;
+    StoreMetadata meta = loadedMeta;
+    this.loadedMeta = null;
+    initStore(meta);
+  }
+  
+  
+  /**
+   * Defers initialization until construction is complete. (The ID scheme
+   * is not known before then.) The metadata the base constructor loaded is
+   * kept for then.
+   */
+  @Override
+  protected void initStore(StoreMetadata meta) {
+    if (constructed)
+      super.initStore(meta);
+    else
+      loadedMeta = meta;
+  }
+  
+  
+  /**
+   * @return {@code "tree:}<em>chunkSize</em>{@code "}, if IDs are tree hashes; the empty
+   *         string, otherwise
+   */
+  @Override
+  protected String idScheme() {
+    return treeHasher == null ? "" : "tree:" + treeHasher.chunkSize();
+  }
+  
+  
+  /**
+   * Determines whether written files are moved (rather than copied) into the store.
+   */
+  public boolean isMoveOnWrite() {
+    return moveOnWrite;
+  }
+  
+  /**
+   * Returns the tree-hash chunk size, or zero, if IDs are straight hashes.
+   */
+  public int getChunkSize() {
+    return treeHasher == null ? 0 : treeHasher.chunkSize();
+  }
+  
+  
+  /**
+   * Sets the fork-join pool a file's chunks are tree-hashed in. Since chunks are
+   * hashed with blocking reads, the pool should not be the common pool. Has no
+   * effect, if IDs are straight hashes.
+   * 
+   * @param pool the pool; or {@code null}, for a shared (processor-bounded,
+   *             daemon thread) default
+   * 
+   * @see #getChunkSize()
+   */
+  public void setHashPool(ForkJoinPool pool) {
+    if (treeHasher != null)
+      treeHasher.setPool(pool);
+  }
+  
+  
+  /**
+   * Returns the fork-join pool a file's chunks are tree-hashed in; {@code null}, if
+   * IDs are straight hashes.
+   */
+  public ForkJoinPool getHashPool() {
+    return treeHasher == null ? null : treeHasher.getPool();
   }
 
   /**
@@ -71,8 +190,14 @@ public class FileManager extends BaseHashedObjectManager<File> {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Returns the given {@code file}, once it's checked to exist (since the path may come
+   * from the resolved-path cache).
+   */
   @Override
   protected File readObjectFile(File file) {
+    if (!file.isFile())
+      throw new NotFoundException(file.toString());
     return file;
   }
 
@@ -83,15 +208,59 @@ public class FileManager extends BaseHashedObjectManager<File> {
       throw new CorruptionException(file.toString());
   }
 
+  /**
+   * Moves (or copies) the given {@code object} file into place. The store file is
+   * created atomically, as a hard link to either the object file (if moving), or to
+   * a copy of it in the target directory, so if there are concurrent attempts to
+   * create the same file (across processes even), only one succeeds, and an existing
+   * file is never replaced. (See {@linkplain Channels#moveToNewFile(Path, Path)}.)
+   * 
+   * @throws IllegalArgumentException if {@code file} already exists
+   */
   @Override
   protected void writeObjectFile(File file, File object, ByteBuffer buffer) throws UncheckedIOException {
-    if (moveOnWrite) {
-      if (!object.renameTo(file) && !file.equals(object))
-        throw new IllegalArgumentException("failed to move " + object + " to " + file);
-    } else try {
-      Files.copy(object.toPath(), file.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+    if (file.equals(object))
+      return;
+    Path tmp = null;
+    try {
+      if (moveOnWrite && tryLink(file.toPath(), object.toPath())) {
+        Files.delete(object.toPath());
+        return;
+      }
+      // (different file systems, or no hard links)
+      tmp = Files.createTempFile(file.getParentFile().toPath(), "_", ".tmp");
+      Files.copy(
+          object.toPath(), tmp,
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+      Channels.moveToNewFile(tmp, file.toPath());
+      if (moveOnWrite)
+        Files.delete(object.toPath());
+    } catch (FileAlreadyExistsException fax) {
+      throw new IllegalArgumentException("attempt to write to existing file " + file);
     } catch (IOException iox) {
-      throw new UncheckedIOException("on copying " + object + " to " + file, iox);
+      throw new UncheckedIOException("on writing " + object + " to " + file, iox);
+    } finally {
+      if (tmp != null)
+        tmp.toFile().delete();
+    }
+  }
+  
+  
+  /**
+   * Creates a hard {@code link} to the given {@code existing} file, and returns
+   * {@code true}; or returns {@code false}, if that's not possible (e.g. hard links
+   * are not supported, or the 2 are on different file systems).
+   * 
+   * @throws FileAlreadyExistsException if {@code link} already exists
+   */
+  private static boolean tryLink(Path link, Path existing) throws FileAlreadyExistsException {
+    try {
+      Files.createLink(link, existing);
+      return true;
+    } catch (FileAlreadyExistsException fax) {
+      throw fax;
+    } catch (IOException | UnsupportedOperationException x) {
+      return false;
     }
   }
 
@@ -100,55 +269,94 @@ public class FileManager extends BaseHashedObjectManager<File> {
     return toHex(buffer);
   }
 
-  @SuppressWarnings("resource")
+  /**
+   * Files at least this large are hashed by memory-mapping them. (1 MiB.)
+   * Below this size, mapping costs more than it saves.
+   */
+  final static long MMAP_THRESHOLD = 1024 * 1024;
+  /**
+   * Mapped window size. (64 MiB.)
+   */
+  private final static int MMAP_WINDOW = 64 * 1024 * 1024;
+  /**
+   * Read buffer size for files smaller than {@linkplain #MMAP_THRESHOLD}. (64 KiB.)
+   */
+  private final static int READ_BUFFER_SIZE = 64 * 1024;
+  
+  /**
+   * Per-thread read buffers. Heap buffers since {@code MessageDigest}s digest
+   * these in place (direct buffers are first copied into a temp array).
+   */
+  private final static ThreadLocal<ByteBuffer> readBuffers =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocate(READ_BUFFER_SIZE));
+  
+  
   @Override
   protected ByteBuffer toByteBuffer(File object) throws UncheckedIOException {
     
-    ByteBuffer buffer;
-    {
-      long bytes = object.length();
-      if (bytes == 0)
-        throw new IllegalArgumentException("empty file " + object);
-      if (bytes > 1024 * 1024)
-        buffer = ByteBuffer.allocateDirect(64 * 1024);
-      if (bytes > 128  * 1024)
-        buffer = ByteBuffer.allocateDirect(8 * 1024);
+    long bytes = object.length();
+    if (bytes == 0)
+      throw new IllegalArgumentException("empty file " + object);
+    
+    if (treeHasher != null)
+      return ByteBuffer.wrap(treeHasher.hash(object));
+    
+    Hasher digest = threadLocalHasher();
+    
+    try (FileChannel channel = FileChannel.open(object.toPath(), StandardOpenOption.READ)) {
+      
+      if (bytes >= MMAP_THRESHOLD)
+        digestMapped(channel, digest);
       else
-        buffer = ByteBuffer.allocate(Math.min((int) bytes, 4 * 1024));
+        digestRead(channel, digest);
+      
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on reading " + object, iox);
     }
-
-    MessageDigest digest = threadLocalDigest();
+    
+    return ByteBuffer.wrap(digest.digest());
+  }
+  
+  
+  /**
+   * Digests the remaining contents of the channel using this thread's read buffer.
+   */
+  static void digestRead(FileChannel channel, Hasher digest) throws IOException {
+    ByteBuffer buffer = readBuffers.get().clear();
     
     int nullReads = 0;
     
-    try (FileChannel channel = new FileInputStream(object).getChannel()) {
+    while (channel.read(buffer) != -1) {
+      buffer.flip();
       
-      while (channel.read(buffer) != -1) {
-        buffer.flip();
-        
-        if (buffer.hasRemaining())
-          digest.update(buffer);
-        
-        // unhappy path..
-        else if (++nullReads > 1024) {
-          String offset;
-          try {
-            offset = Long.toString(channel.position());
-          } catch (IOException wow) {
-            offset = "unknown";
-          }
-          throw new IOException("null read sanity check failing. Offset: " + offset);
+      if (buffer.hasRemaining())
+        digest.update(buffer);
+      
+      // unhappy path..
+      else if (++nullReads > 1024) {
+        String offset;
+        try {
+          offset = Long.toString(channel.position());
+        } catch (IOException wow) {
+          offset = "unknown";
         }
-        
-        buffer.clear();
+        throw new IOException("null read sanity check failing. Offset: " + offset);
       }
       
-    } catch (IOException iox) {
-      throw new UncheckedIOException("on reading " + object, iox);
+      buffer.clear();
+    }
+  }
+  
+  
+  /**
+   * Digests the channel's contents by memory-mapping it in successive windows.
+   */
+  static void digestMapped(FileChannel channel, Hasher digest) throws IOException {
+    final long size = channel.size();
+    for (long pos = 0; pos < size; pos += MMAP_WINDOW) {
+      long len = Math.min(MMAP_WINDOW, size - pos);
+      digest.update(channel.map(MapMode.READ_ONLY, pos, len));
     }
-    
-    
-    return ByteBuffer.wrap(digest.digest());
   }
 
 }
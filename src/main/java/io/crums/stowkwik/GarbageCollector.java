@@ -0,0 +1,292 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.canonicalizeHex;
+
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import io.crums.stowkwik.io.HexPathTree;
+import io.crums.stowkwik.io.OffHeapIdSet;
+
+/**
+ * Mark-and-sweep garbage collection for a {@linkplain BaseHashedObjectManager store}
+ * whose objects reference one another by ID. Given a set of root IDs, and a function
+ * that extracts the IDs an object references, objects not reachable from the roots are
+ * {@linkplain BaseHashedObjectManager#remove(String) removed}.
+ * <ol>
+ * <li><em>Mark.</em> Reachable objects are traversed in parallel (on a dedicated
+ * fork-join pool), and their IDs recorded in an {@linkplain OffHeapIdSet off-heap}
+ * mark set. References to objects not in the store (and roots not in the store)
+ * are ignored: they're neither marked, nor count against the mark set's capacity.</li>
+ * <li><em>Sweep.</em> The store's objects are streamed, and the unmarked ones
+ * removed, at a rate no greater than the {@linkplain #setMaxRemovesPerSecond(int)
+ * configured maximum} (so that a sweep doesn't starve foreground I/O).</li>
+ * </ol>
+ * <h2>Concurrent Writes</h2>
+ * <p>
+ * Objects written (through the store instance being collected) after the mark phase
+ * started are never swept; neither are objects whose files were modified after then
+ * (e.g. written by another process). This protects objects written during a
+ * collection, but not references created
+ * (during a collection) to existing, otherwise unreachable objects: the roots should
+ * reflect a consistent snapshot of the store's users.
+ * </p>
+ */
+public class GarbageCollector<T> {
+
+  /**
+   * Slack for file system timestamp granularity.
+   */
+  private final static long MTIME_SLACK_MILLIS = 2000;
+
+
+  private final BaseHashedObjectManager<T> store;
+  private final Function<? super T, ? extends Collection<String>> references;
+
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private int maxRemovesPerSecond;
+
+  /** IDs written to the store since the last mark phase started; {@code null} before. */
+  private volatile Set<String> written;
+
+
+  /**
+   * @param store       the store
+   * @param references  returns the IDs referenced by an object (possibly empty, never null)
+   */
+  public GarbageCollector(
+      BaseHashedObjectManager<T> store, Function<? super T, ? extends Collection<String>> references) {
+    this.store = Objects.requireNonNull(store, "store");
+    this.references = Objects.requireNonNull(references, "references");
+  }
+
+
+  /**
+   * Sets the number of threads used in the mark phase.
+   *
+   * @param parallelism &ge; 1 (defaults to the number of processors)
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism " + parallelism);
+    this.parallelism = parallelism;
+  }
+
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+
+  /**
+   * Sets the maximum rate at which objects are removed in the sweep phase.
+   *
+   * @param maxRemovesPerSecond &ge; 0; if zero (the default), then removals are not throttled
+   */
+  public void setMaxRemovesPerSecond(int maxRemovesPerSecond) {
+    if (maxRemovesPerSecond < 0)
+      throw new IllegalArgumentException("maxRemovesPerSecond " + maxRemovesPerSecond);
+    this.maxRemovesPerSecond = maxRemovesPerSecond;
+  }
+
+
+  public int getMaxRemovesPerSecond() {
+    return maxRemovesPerSecond;
+  }
+
+
+
+  /**
+   * Runs a full collection: marks the objects reachable from the given {@code roots},
+   * and removes the rest.
+   *
+   * @param roots IDs of the root objects (those not in the store are ignored)
+   *
+   * @return the number of objects removed
+   */
+  public long collect(Collection<String> roots) throws UncheckedIOException {
+    long started = System.currentTimeMillis();
+    long count;
+    try (Stream<String> ids = store.streamIds()) {
+      count = ids.count();
+    }
+    // (slack for objects written during the mark phase)
+    OffHeapIdSet marks = mark(roots, count + roots.size());
+    return sweep(marks, started);
+  }
+
+
+  /**
+   * Marks the objects reachable from the given {@code roots}. Also starts recording
+   * the IDs of objects written to the store, so that the following
+   * {@linkplain #sweep(OffHeapIdSet, long) sweep} spares them.
+   *
+   * @param roots     IDs of the root objects (those not in the store are ignored)
+   * @param maxIds    the maximum number of reachable objects (e.g. the store's size);
+   *                  only IDs in the store are marked
+   *
+   * @return the set of reachable IDs
+   */
+  public OffHeapIdSet mark(Collection<String> roots, long maxIds) throws UncheckedIOException {
+    OffHeapIdSet marks =
+        new OffHeapIdSet(store.getHashFunction().digestLength(), Math.max(1, maxIds));
+    Set<String> previous = this.written;
+    if (previous != null)
+      store.stopWriteTracking(previous);
+    this.written = store.startWriteTracking();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new MarkRoots(roots, marks));
+    } finally {
+      pool.shutdown();
+    }
+    return marks;
+  }
+
+
+  /**
+   * Removes the objects not in the given mark set, excepting those written since the
+   * last {@linkplain #mark(Collection, long) mark} phase started, and those whose
+   * files were modified at or after the given time. Stops recording written IDs.
+   *
+   * @param marks         the reachable IDs
+   * @param markStarted   the time (in UTC millis) the mark phase started
+   *
+   * @return the number of objects removed
+   * @see #mark(Collection, long)
+   */
+  public long sweep(OffHeapIdSet marks, long markStarted) throws UncheckedIOException {
+    final long cutoff = markStarted - MTIME_SLACK_MILLIS;
+    final long nanosPerRemove =
+        maxRemovesPerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / maxRemovesPerSecond;
+    final long start = System.nanoTime();
+
+    final Set<String> written = this.written == null ? Set.of() : this.written;
+
+    AtomicLong removed = new AtomicLong();
+    try (Stream<HexPathTree.Entry> entries = store.hexPath.stream()) {
+      entries
+          .filter(e ->
+              !marks.contains(e.hex) &&
+              !written.contains(e.hex) &&
+              e.file.lastModified() < cutoff)
+          .forEach(e -> {
+            if (nanosPerRemove != 0)
+              throttle(start + removed.get() * nanosPerRemove);
+            // (re-checked atomically: it may have been written since it was filtered)
+            if (store.removeUnless(e.hex, written))
+              removed.incrementAndGet();
+          });
+    } finally {
+      if (this.written == written) {
+        store.stopWriteTracking(written);
+        this.written = null;
+      }
+    }
+    return removed.get();
+  }
+
+
+  private static void throttle(long notBefore) {
+    for (long wait; (wait = notBefore - System.nanoTime()) > 0; ) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException ix) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while sweeping", ix);
+      }
+    }
+  }
+
+
+
+  /**
+   * Marks the given ID, if it's not already marked and it's in the store, and returns
+   * {@code true} if it was.
+   */
+  private boolean markIfStored(String id, OffHeapIdSet marks) {
+    return !marks.contains(id) && store.containsId(id) && marks.add(id);
+  }
+
+
+  /**
+   * Marks the roots, and forks a {@linkplain Mark} for each.
+   */
+  private final class MarkRoots extends CountedCompleter<Void> {
+
+    private final static long serialVersionUID = 1L;
+
+    private final Collection<String> roots;
+    private final OffHeapIdSet marks;
+
+    MarkRoots(Collection<String> roots, OffHeapIdSet marks) {
+      this.roots = roots;
+      this.marks = marks;
+    }
+
+    @Override
+    public void compute() {
+      for (String root : roots) {
+        String id = canonicalizeHex(root);
+        if (markIfStored(id, marks)) {
+          addToPendingCount(1);
+          new Mark(this, id, marks).fork();
+        }
+      }
+      tryComplete();
+    }
+  }
+
+
+  /**
+   * Traverses a marked object's references, marking (and forking a task for) each
+   * one not already marked. Since tasks don't wait on their children, deep reference
+   * chains don't grow the stack.
+   */
+  private final class Mark extends CountedCompleter<Void> {
+
+    private final static long serialVersionUID = 1L;
+
+    private final String id;
+    private final OffHeapIdSet marks;
+
+    Mark(CountedCompleter<?> parent, String id, OffHeapIdSet marks) {
+      super(parent);
+      this.id = id;
+      this.marks = marks;
+    }
+
+    @Override
+    public void compute() {
+      T object;
+      try {
+        object = store.read(id);
+      } catch (NotFoundException dangling) {
+        object = null;
+      }
+      if (object != null) {
+        for (String ref : references.apply(object)) {
+          String refId = canonicalizeHex(ref);
+          if (markIfStored(refId, marks)) {
+            addToPendingCount(1);
+            new Mark(this, refId, marks).fork();
+          }
+        }
+      }
+      tryComplete();
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ServiceLoader;
+
+/**
+ * A (cryptographic) hash function used to derive object IDs. This is a thin SPI
+ * so that stores are not tied to {@linkplain MessageDigest}: fast pure-Java
+ * implementations (e.g. BLAKE3, XXH3-128) can be plugged in by registering them as
+ * a {@linkplain ServiceLoader service} (declared with {@code provides
+ * io.crums.stowkwik.HashFunction with ..} in the provider's module descriptor, or
+ * listed under {@code META-INF/services} on the class path).
+ * <p>
+ * Instances are looked up {@linkplain #forName(String) by name}. If no registered
+ * provider claims the name, it is taken to be a JCA {@code MessageDigest} algorithm
+ * (in which case, for example, SHA-256 benefits from the JDK's intrinsics).
+ * </p>
+ * <p>
+ * Implementations must be thread-safe; the {@linkplain Hasher}s they return need not be.
+ * </p>
+ */
+public interface HashFunction {
+
+
+  /**
+   * Returns the name of this function. This is how the function is looked up (and
+   * recorded in store metadata), so it should be stable. E.g. {@code MD5}, {@code SHA-256}.
+   */
+  String name();
+
+
+  /**
+   * Returns the length of the digest in bytes.
+   */
+  int digestLength();
+
+
+  /**
+   * Returns a new, not-thread-safe, {@linkplain Hasher} instance.
+   */
+  Hasher newHasher();
+
+
+
+  /**
+   * Stateful, not-thread-safe hash computation.
+   */
+  interface Hasher {
+
+    /**
+     * Updates the hash with the remaining bytes in the given {@code input}. On
+     * return the buffer's position equals its limit.
+     */
+    void update(ByteBuffer input);
+
+    /**
+     * Updates the hash with the given bytes.
+     */
+    default void update(byte[] input, int off, int len) {
+      update(ByteBuffer.wrap(input, off, len));
+    }
+
+    /**
+     * Completes the computation and returns the digest. On return,
+     * the instance is reset.
+     */
+    byte[] digest();
+
+    /**
+     * Resets the instance (discarding any bytes hashed so far).
+     */
+    void reset();
+  }
+
+
+
+  /**
+   * Returns the hash function with the given name. Registered providers are consulted
+   * first; failing that, the name is taken to be a {@linkplain MessageDigest} algorithm.
+   *
+   * @param name case insensitive
+   *
+   * @throws IllegalArgumentException if no such function is found
+   */
+  static HashFunction forName(String name) throws IllegalArgumentException {
+    if (name == null || name.isEmpty())
+      throw new IllegalArgumentException("empty hash function name: '" + name + "'");
+
+    for (HashFunction function : ServiceLoader.load(HashFunction.class)) {
+      if (function.name().equalsIgnoreCase(name))
+        return function;
+    }
+    return jca(name);
+  }
+
+
+  /**
+   * Returns a hash function backed by the JCA {@linkplain MessageDigest} algorithm
+   * with the given name.
+   *
+   * @param algo e.g. {@code MD5}, {@code SHA-1}, {@code SHA-256}, ..
+   *
+   * @throws IllegalArgumentException if the algorithm is not supported
+   */
+  static HashFunction jca(String algo) throws IllegalArgumentException {
+    return new JcaHashFunction(algo);
+  }
+
+}
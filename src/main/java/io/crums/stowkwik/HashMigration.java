@@ -0,0 +1,410 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.toHex;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * Migrates a store to a new hash function, online. Objects are rehashed (in parallel)
+ * into a new, <em>target</em> store, and each object's old-to-new ID is recorded in a
+ * plain text mapping table. Example table contents (MD5 to SHA-256):
+ * <pre>
+ *    .
+ *    .
+ *  86d3f3a95c324c9479bd8986968f4327 1f0ac1b1b9c1e0ad3f4c7d2c3b5a...
+ *  067b4e4fdb16fd58aa8a009b9fc0aad2 9d27e5d45f8a2b3c5e8f1a0cc1e4...
+ *    .
+ *    .
+ * </pre>
+ * <p>
+ * While the migration is underway, writes should go thru the {@linkplain #cutoverManager()
+ * cutover manager}: it writes each object to both stores (and records its mapping), so that
+ * the 2 stores stay in sync. Both IDs are computed in a single pass over the object's
+ * encoding. Once {@linkplain #migrate(int)} completes, clients may switch to the target store.
+ * </p>
+ * <p>
+ * A migration can be resumed: the mapping table is appended to, and objects already
+ * recorded in it are skipped. (A partial last line, as from a crash, is discarded.)
+ * </p>
+ * <h2>Limitations</h2>
+ * <p>
+ * The source and target stores must be of the same type and encode objects the same way
+ * (e.g. 2 {@linkplain BinaryObjectManager}s with the same codec). {@linkplain FileManager}
+ * stores (whose IDs are not hashes of an in-memory encoding) are not supported.
+ * </p>
+ */
+public class HashMigration<T> implements Closeable {
+
+  public final static char OLD_NEW_DELIMIT = ' ';
+  public final static char ENTRY_END = '\n';
+
+  /**
+   * The slice size in which an encoding is fed to the 2 hashers. Small enough
+   * that the second hasher reads the slice from cache. (8 KiB.)
+   */
+  private final static int SLICE_SIZE = 8 * 1024;
+
+
+  private final BaseHashedObjectManager<T> source;
+  private final BaseHashedObjectManager<T> target;
+  private final File mappingFile;
+  private final Map<String, String> oldToNew;
+  private final BufferedWriter writer;
+
+  private final AtomicLong migrated = new AtomicLong();
+
+
+  /**
+   * Creates a new (or resumes an existing) migration.
+   *
+   * @param source      the existing store
+   * @param target      the new store, using a different hash function
+   * @param mappingFile the old-to-new ID mapping table. If it exists, it's loaded and
+   *                    appended to.
+   */
+  public HashMigration(
+      BaseHashedObjectManager<T> source, BaseHashedObjectManager<T> target, File mappingFile)
+          throws IllegalArgumentException, UncheckedIOException {
+
+    this.source = source;
+    this.target = target;
+    this.mappingFile = mappingFile;
+
+    if (source == null)
+      throw new IllegalArgumentException("null source");
+    if (target == null)
+      throw new IllegalArgumentException("null target");
+    if (mappingFile == null)
+      throw new IllegalArgumentException("null mappingFile");
+    if (source.getClass() != target.getClass())
+      throw new IllegalArgumentException(
+          "source and target types differ: " + source.getClass().getName() + ", " +
+          target.getClass().getName());
+    if (source instanceof FileManager)
+      throw new IllegalArgumentException("FileManager stores not supported");
+    if (!source.idScheme().isEmpty() || !target.idScheme().isEmpty())
+      throw new IllegalArgumentException("non-hash ID scheme not supported");
+    if (source.hashAlgo.equalsIgnoreCase(target.hashAlgo))
+      throw new IllegalArgumentException("source and target hash function the same: " + source.hashAlgo);
+
+    try {
+      truncatePartialLine(mappingFile);
+      this.oldToNew = loadMapping(mappingFile);
+      this.writer = new BufferedWriter(new FileWriter(mappingFile, true));
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on opening " + mappingFile, iox);
+    }
+  }
+
+
+  public BaseHashedObjectManager<T> getSource() {
+    return source;
+  }
+
+
+  public BaseHashedObjectManager<T> getTarget() {
+    return target;
+  }
+
+
+  public File getMappingFile() {
+    return mappingFile;
+  }
+
+
+  /**
+   * Returns the new ID of the object with the given old ID, if it's been migrated;
+   * {@code null}, otherwise.
+   */
+  public String newId(String oldId) {
+    return oldToNew.get(oldId);
+  }
+
+
+  /**
+   * Returns an unmodifiable view of the mapping recorded so far.
+   */
+  public Map<String, String> getMapping() {
+    return Collections.unmodifiableMap(oldToNew);
+  }
+
+
+  /**
+   * Returns the number of objects recorded in the mapping table.
+   */
+  public int mappedCount() {
+    return oldToNew.size();
+  }
+
+
+  /**
+   * Returns the number of objects migrated by {@linkplain #migrate(int)} so far.
+   * (Objects written thru the cutover manager are not counted.)
+   */
+  public long migratedCount() {
+    return migrated.get();
+  }
+
+
+  /**
+   * Returns an {@code ObjectManager} that reads from the source store, and writes to
+   * both stores, recording the new mapping.
+   */
+  public ObjectManager<T> cutoverManager() {
+    return new WrappedObjectManager<T>(source) {
+      @Override
+      public String write(T object) throws UncheckedIOException {
+        return dualWrite(object);
+      }
+    };
+  }
+
+
+  /**
+   * Migrates all the objects in the source store not already recorded in the mapping
+   * table, using the given number of threads. Each object's source ID is also verified
+   * in the process.
+   *
+   * @param parallelism the number of threads (&ge; 1)
+   *
+   * @return the number of objects migrated by this invocation
+   *
+   * @throws CorruptionException if an object's contents don't match its ID
+   */
+  public long migrate(int parallelism)
+      throws IllegalArgumentException, CorruptionException, UncheckedIOException {
+
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism " + parallelism);
+
+    final long start = migrated.get();
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+
+      pool.submit(
+          () -> source.streamIds().parallel().forEach(this::migrateId)).get();
+
+    } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted", ix);
+    } catch (ExecutionException xx) {
+      Throwable cause = xx.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    } finally {
+      pool.shutdown();
+    }
+
+    flush();
+    return migrated.get() - start;
+  }
+
+
+  private void migrateId(String oldId) {
+    if (oldToNew.containsKey(oldId))
+      return;
+    File file = source.getFilepath(oldId);
+    if (file == null)
+      return; // (shouldn't happen: we don't delete)
+
+    // the object's already in the source: write it only to the target
+    T object = source.readObjectFile(file);
+    ByteBuffer buffer = source.toByteBuffer(object);
+    String[] ids = dualSignature(buffer);
+
+    if (!oldId.equals(ids[0]))
+      throw new CorruptionException(
+          "object " + oldId + " hashes to " + ids[0] + " (" + source.hashAlgo + ")");
+
+    target.writeEncoded(object, buffer, ids[1]);
+    map(ids[0], ids[1]);
+    migrated.incrementAndGet();
+  }
+
+
+  /**
+   * Writes the given (new) object to both stores and records its mapping.
+   *
+   * @return the object's source ID
+   */
+  private String dualWrite(T object) {
+    ByteBuffer buffer = source.toByteBuffer(object);
+
+    String[] ids = dualSignature(buffer);
+
+    source.writeEncoded(object, buffer.duplicate(), ids[0]);
+    target.writeEncoded(object, buffer.duplicate(), ids[1]);
+    map(ids[0], ids[1]);
+
+    return ids[0];
+  }
+
+
+  private void map(String oldId, String newId) {
+    if (oldToNew.putIfAbsent(oldId, newId) == null)
+      record(oldId, newId);
+  }
+
+
+  /**
+   * Computes the source and target IDs of the given encoding in a single pass.
+   * The buffer's state is not modified.
+   */
+  String[] dualSignature(ByteBuffer buffer) {
+    HashFunction.Hasher oldHasher = source.threadLocalHasher();
+    HashFunction.Hasher newHasher = target.threadLocalHasher();
+
+    ByteBuffer slice = buffer.duplicate();
+    final int limit = slice.limit();
+
+    for (int pos = slice.position(); pos < limit; pos += SLICE_SIZE) {
+      int end = Math.min(limit, pos + SLICE_SIZE);
+      slice.limit(end).position(pos);
+      oldHasher.update(slice);
+      slice.limit(end).position(pos);
+      newHasher.update(slice);
+    }
+    return new String[] { toHex(oldHasher.digest()), toHex(newHasher.digest()) };
+  }
+
+
+  private synchronized void record(String oldId, String newId) {
+    try {
+      writer.write(oldId);
+      writer.write(OLD_NEW_DELIMIT);
+      writer.write(newId);
+      writer.write(ENTRY_END);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on recording " + oldId + " -> " + newId, iox);
+    }
+  }
+
+
+  /**
+   * Flushes the mapping table to disk.
+   */
+  public synchronized void flush() throws UncheckedIOException {
+    try {
+      writer.flush();
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on flushing " + mappingFile, iox);
+    }
+  }
+
+
+  /**
+   * Closes the mapping table. The stores themselves have nothing to close.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    writer.close();
+  }
+
+
+
+
+  // ---S-T-A-T-I-C---
+
+
+  /**
+   * Loads and returns the given old-to-new ID mapping table. If the file does not exist,
+   * an empty map is returned.
+   *
+   * @return a concurrent (modifiable) map
+   *
+   * @throws CorruptionException if a line in the file is malformed. (A partial last
+   *         line, as from a crash, is ignored.)
+   */
+  public static Map<String, String> loadMapping(File mappingFile)
+      throws UncheckedIOException, CorruptionException {
+
+    Map<String, String> map = new ConcurrentHashMap<>();
+    if (!mappingFile.exists())
+      return map;
+
+    try (BufferedReader reader = new BufferedReader(new FileReader(mappingFile))) {
+
+      long lines = countLines(mappingFile);
+      for (long lineNo = 1; lineNo <= lines; ++lineNo) {
+        String line = reader.readLine();
+        int delimit = line.indexOf(OLD_NEW_DELIMIT);
+        if (delimit < 1 || delimit == line.length() - 1 ||
+            line.indexOf(OLD_NEW_DELIMIT, delimit + 1) != -1)
+          throw new CorruptionException(mappingFile + " line " + lineNo + ": " + line);
+        map.put(line.substring(0, delimit), line.substring(delimit + 1));
+      }
+
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on reading " + mappingFile, iox);
+    }
+
+    return map;
+  }
+
+
+  /**
+   * Returns the number of complete (newline-terminated) lines in the given file.
+   */
+  private static long countLines(File file) throws IOException {
+    long count = 0;
+    ByteBuffer buffer = ByteBuffer.allocate(SLICE_SIZE);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      while (channel.read(buffer.clear()) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining())
+          if (buffer.get() == ENTRY_END)
+            ++count;
+      }
+    }
+    return count;
+  }
+
+
+  /**
+   * Truncates a partial last line (as from a crash), if any, so that the
+   * table may be appended to.
+   */
+  private static void truncatePartialLine(File file) throws IOException {
+    if (!file.exists())
+      return;
+    try (FileChannel channel = FileChannel.open(
+        file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer one = ByteBuffer.allocate(1);
+      long pos = channel.size();
+      for (; pos > 0; --pos) {
+        channel.read(one.clear(), pos - 1);
+        if (one.get(0) == ENTRY_END)
+          break;
+      }
+      if (pos < channel.size())
+        channel.truncate(pos);
+    }
+  }
+
+}
@@ -28,7 +28,17 @@ public abstract class HashedObjectManager<T> extends BaseHashedObjectManager<T>
    * @param encoder     binary encoder for computing the hash of the object's contents
    */
   protected HashedObjectManager(File dir, String ext, Encoder<T> encoder, String hashAlgo) {
-    super(dir, ext, hashAlgo);
+    this(dir, ext, encoder, HashFunction.forName(hashAlgo));
+  }
+
+  /**
+   * @param dir           the root directory
+   * @param ext           filename extension used by entries
+   * @param encoder       binary encoder for computing the hash of the object's contents
+   * @param hashFunction  the hash function
+   */
+  protected HashedObjectManager(File dir, String ext, Encoder<T> encoder, HashFunction hashFunction) {
+    super(dir, ext, hashFunction);
     this.encoder = encoder;
     
     if (encoder == null)
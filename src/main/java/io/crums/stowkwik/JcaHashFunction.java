@@ -0,0 +1,72 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * {@linkplain MessageDigest} adaptor.
+ */
+final class JcaHashFunction implements HashFunction {
+
+  private final String algo;
+  private final int digestLength;
+
+
+  JcaHashFunction(String algo) {
+    this.algo = algo;
+    this.digestLength = newDigest().getDigestLength();
+  }
+
+  @Override
+  public String name() {
+    return algo;
+  }
+
+  @Override
+  public int digestLength() {
+    return digestLength;
+  }
+
+  @Override
+  public Hasher newHasher() {
+    final MessageDigest digest = newDigest();
+    return new Hasher() {
+      @Override
+      public void update(ByteBuffer input) {
+        digest.update(input);
+      }
+      @Override
+      public void update(byte[] input, int off, int len) {
+        digest.update(input, off, len);
+      }
+      @Override
+      public byte[] digest() {
+        return digest.digest();
+      }
+      @Override
+      public void reset() {
+        digest.reset();
+      }
+    };
+  }
+
+
+  private MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(algo);
+    } catch (NoSuchAlgorithmException nsax) {
+      throw new IllegalArgumentException("hash algo: " + algo, nsax);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return algo;
+  }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.canonicalizeHex;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import io.crums.stowkwik.io.IdBloomFilter;
+
+/**
+ * A union of a writable <em>top</em> store layered over one or more read-only
+ * <em>base</em> stores. New objects are only ever written to the top layer; reads
+ * go to the first layer that holds the object. So cloning a large reference store
+ * costs no more than creating an empty top layer over it.
+ * <p>
+ * The base stores must not be modified while layered (they may be shared by many
+ * instances, however). All layers must derive IDs the same way (same hash function
+ * and encoding).
+ * </p>
+ * <h2>Membership</h2>
+ * <p>
+ * The IDs of the top layer (a delta, small compared to the bases) are kept in memory,
+ * and loaded on construction. The bases are probed in order. Optionally, a
+ * per-base {@linkplain IdBloomFilter Bloom filter} can be {@linkplain #buildFilters(double)
+ * built}, so that a lookup skips the bases that don't hold the object (in particular,
+ * a write of a new object then usually touches no base at all). Building the filters
+ * streams every base's IDs once, so it's not done on construction.
+ * </p>
+ * <h2>Streams</h2>
+ * <p>
+ * ID and object streams are an ordered merge of the layers' (ordered) ID streams,
+ * with duplicates dropped.
+ * </p>
+ */
+public class LayeredObjectManager<T> extends ObjectManager<T> {
+
+  /**
+   * Default false positive rate of the base layers' {@linkplain #buildFilters(double) filters}.
+   */
+  public final static double DEFAULT_FILTER_FPP = 0.01;
+
+
+  private final BaseHashedObjectManager<T> top;
+  private final List<ObjectManager<T>> bases;
+  private final Set<String> topIds = ConcurrentHashMap.newKeySet();
+  /** The number of hex digits in a (full) ID. */
+  private final int hexIdLength;
+
+  /** Per-base filters, or {@code null} if not built. */
+  private volatile IdBloomFilter[] filters;
+
+
+  /**
+   * Creates an instance over the given layers.
+   *
+   * @param top     the writable top layer, whose IDs are loaded on construction
+   * @param bases   the read-only base layers, in lookup order (not empty)
+   */
+  public LayeredObjectManager(BaseHashedObjectManager<T> top, List<? extends ObjectManager<T>> bases)
+      throws UncheckedIOException {
+    this.top = Objects.requireNonNull(top, "top");
+    this.bases = List.copyOf(bases);
+    if (this.bases.isEmpty())
+      throw new IllegalArgumentException("empty bases");
+    if (this.bases.contains(top))
+      throw new IllegalArgumentException("top layer is also a base layer");
+    this.hexIdLength = 2 * top.getHashFunction().digestLength();
+
+    try (Stream<String> ids = top.streamIds()) {
+      ids.forEach(topIds::add);
+    }
+  }
+
+
+  /**
+   * Creates an instance with a single base layer.
+   */
+  public LayeredObjectManager(BaseHashedObjectManager<T> top, ObjectManager<T> base)
+      throws UncheckedIOException {
+    this(top, List.of(base));
+  }
+
+
+  public BaseHashedObjectManager<T> getTopLayer() {
+    return top;
+  }
+
+
+  /**
+   * Returns the base layers, in lookup order.
+   */
+  public List<ObjectManager<T>> getBaseLayers() {
+    return bases;
+  }
+
+
+  /**
+   * Returns the number of objects in the top layer.
+   */
+  public int topCount() {
+    return topIds.size();
+  }
+
+
+  /**
+   * Builds (or rebuilds) a Bloom filter for each base layer by streaming its IDs.
+   * Until this is invoked, every base is probed on lookup.
+   *
+   * @param falsePositiveRate target false positive rate per filter, in the range (0, 0.5]
+   *
+   * @see #DEFAULT_FILTER_FPP
+   */
+  public void buildFilters(double falsePositiveRate) throws UncheckedIOException {
+    IdBloomFilter[] built = new IdBloomFilter[bases.size()];
+    for (int index = 0; index < built.length; ++index) {
+      ObjectManager<T> base = bases.get(index);
+      long count;
+      try (Stream<String> ids = base.streamIds()) {
+        count = ids.count();
+      }
+      IdBloomFilter filter = new IdBloomFilter(Math.max(1, count), falsePositiveRate);
+      try (Stream<String> ids = base.streamIds()) {
+        ids.forEach(filter::add);
+      }
+      built[index] = filter;
+    }
+    this.filters = built;
+  }
+
+
+  /**
+   * Determines whether the given ID is in the top layer.
+   */
+  public boolean isInTop(String id) {
+    return topIds.contains(canonicalizeHex(id));
+  }
+
+
+  /**
+   * Returns the index of the first base holding the given (canonical) ID, or -1.
+   */
+  private int baseIndex(String hex) {
+    // the filters only take full-length IDs (the bases decide the others)
+    IdBloomFilter[] filters = hex.length() == hexIdLength ? this.filters : null;
+    for (int index = 0; index < bases.size(); ++index) {
+      if (filters != null && !filters[index].mightContain(hex))
+        continue;
+      if (bases.get(index).containsId(hex))
+        return index;
+    }
+    return -1;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * New objects are written to the top layer. An object already in any layer is
+   * not written again.
+   * </p>
+   */
+  @Override
+  public String write(T object) throws UncheckedIOException {
+    ByteBuffer buffer = top.toByteBuffer(object);
+    String id = top.signature(buffer);
+    if (topIds.contains(id) || baseIndex(id) != -1)
+      return id;
+
+    top.writeEncoded(object, buffer, id);
+    topIds.add(id);
+    return id;
+  }
+
+
+  @Override
+  public String getId(T object) {
+    return top.getId(object);
+  }
+
+
+  @Override
+  public boolean containsId(String id) {
+    String hex = canonicalizeHex(id);
+    return topIds.contains(hex) || baseIndex(hex) != -1;
+  }
+
+
+  @Override
+  public T read(String id) throws NotFoundException, UncheckedIOException {
+    String hex = canonicalizeHex(id);
+    if (topIds.contains(hex))
+      return top.read(hex);
+    int index = baseIndex(hex);
+    if (index == -1)
+      throw new NotFoundException(id);
+    return bases.get(index).read(hex);
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The IDs are partitioned by layer, and each layer is read in a single batch.
+   * </p>
+   */
+  @Override
+  public List<T> readAll(List<String> ids) throws UncheckedIOException {
+    final int count = ids.size();
+    final int layers = 1 + bases.size();
+    List<List<String>> batches = new ArrayList<>(layers);
+    List<List<Integer>> indexes = new ArrayList<>(layers);
+    for (int layer = 0; layer < layers; ++layer) {
+      batches.add(new ArrayList<>());
+      indexes.add(new ArrayList<>());
+    }
+    for (int index = 0; index < count; ++index) {
+      String hex = canonicalizeHex(ids.get(index));
+      int layer;
+      if (topIds.contains(hex))
+        layer = 0;
+      else if ((layer = baseIndex(hex) + 1) == 0)
+        continue;   // not found
+      batches.get(layer).add(hex);
+      indexes.get(layer).add(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    T[] objects = (T[]) new Object[count];
+    for (int layer = 0; layer < layers; ++layer) {
+      List<String> batch = batches.get(layer);
+      if (batch.isEmpty())
+        continue;
+      List<T> read = (layer == 0 ? top : bases.get(layer - 1)).readAll(batch);
+      List<Integer> batchIndexes = indexes.get(layer);
+      for (int index = 0; index < read.size(); ++index)
+        objects[batchIndexes.get(index)] = read.get(index);
+    }
+    return Arrays.asList(objects);
+  }
+
+
+  @Override
+  public Stream<String> streamIds() {
+    List<Iterator<String>> sources = new ArrayList<>(1 + bases.size());
+    sources.add(top.streamIds().iterator());
+    for (ObjectManager<T> base : bases)
+      sources.add(base.streamIds().iterator());
+    return MergedIds.stream(sources);
+  }
+
+
+  @Override
+  public Stream<String> streamIds(String idPrefix) {
+    List<Iterator<String>> sources = new ArrayList<>(1 + bases.size());
+    sources.add(top.streamIds(idPrefix).iterator());
+    for (ObjectManager<T> base : bases)
+      sources.add(base.streamIds(idPrefix).iterator());
+    return MergedIds.stream(sources);
+  }
+
+
+  @Override
+  public T readUsingPrefix(String idPrefix)
+      throws NotFoundException, IllegalArgumentException, UncheckedIOException {
+    if (idPrefix == null || idPrefix.isEmpty())
+      throw new IllegalArgumentException("empty idPrefix " + idPrefix);
+
+    String prefix = canonicalizeHex(idPrefix);
+    List<String> matches =
+        streamIds(prefix).takeWhile(id -> id.startsWith(prefix)).limit(2).toList();
+    if (matches.isEmpty())
+      throw new NotFoundException(idPrefix + "..");
+    if (matches.size() > 1)
+      throw new IllegalArgumentException("ambiguous (more than 1 result) for prefix " + idPrefix);
+    return read(matches.get(0));
+  }
+
+
+  @Override
+  public Stream<T> streamObjects() {
+    return streamIds().map(this::read);
+  }
+
+
+  @Override
+  public Stream<T> streamObjects(String idPrefix) {
+    return streamIds(idPrefix).map(this::read);
+  }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.canonicalizeHex;
+import static io.crums.util.IntegralStrings.toHex;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory object store with the same ID (hashing) and {@linkplain Codec}
+ * semantics as a {@linkplain BinaryObjectManager}, but no file system. Useful as
+ * a caching front, and as a baseline in benchmarks.
+ * <p>
+ * Encodings are stored off the Java heap, appended to direct buffer segments.
+ * The index is a concurrent skip list from hex ID to location, so ID streams
+ * are ordered (as the base class requires) and prefix lookups are logarithmic.
+ * Objects are decoded from read-only slices of their segments.
+ * </p>
+ * <p>
+ * Instances are thread-safe. Writers only contend on the brief reservation of
+ * space in the current segment: encoding, hashing, and copying happen outside
+ * any lock. When concurrent writers race to write the same new object, one wins
+ * and the other's copy is abandoned (counted in {@linkplain #allocatedBytes()}).
+ * There's no remove: memory is released only when the instance is garbage collected.
+ * </p>
+ */
+public class MemoryObjectManager<T> extends ObjectManager<T> {
+
+  /**
+   * Default segment size (16 MiB).
+   */
+  public final static int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * Minimum segment size.
+   */
+  public final static int MIN_SEGMENT_SIZE = 4096;
+
+  /**
+   * Maximum segment size.
+   */
+  public final static int MAX_SEGMENT_SIZE = 1 << 30;
+
+
+
+
+  private final Codec<T> codec;
+  private final HashFunction hashFunction;
+  private final int segmentSize;
+
+  private final ConcurrentSkipListMap<String, Loc> index = new ConcurrentSkipListMap<>();
+
+  private final Object allocLock = new Object();
+  // guarded by allocLock; read-only access (thru the volatile) otherwise
+  private volatile ByteBuffer[] segments = new ByteBuffer[0];
+  private int tailOffset;
+
+  private final AtomicLong allocatedBytes = new AtomicLong();
+
+
+  /**
+   * Creates an instance with the {@linkplain BaseHashedObjectManager#DEFAULT_HASH_ALGO
+   * default hash algo} and segment size.
+   *
+   * @param codec serialization interface for type {@code <T>}
+   */
+  public MemoryObjectManager(Codec<T> codec) {
+    this(codec, HashFunction.forName(BaseHashedObjectManager.DEFAULT_HASH_ALGO), DEFAULT_SEGMENT_SIZE);
+  }
+
+
+  /**
+   * @param codec         serialization interface for type {@code <T>}
+   * @param hashFunction  the hash function IDs are computed with
+   * @param segmentSize   the size of the off-heap segments encodings are appended to
+   *                      ({@linkplain #MIN_SEGMENT_SIZE} &le; {@code segmentSize} &le;
+   *                      {@linkplain #MAX_SEGMENT_SIZE}). Larger encodings get their
+   *                      own segment.
+   */
+  public MemoryObjectManager(Codec<T> codec, HashFunction hashFunction, int segmentSize) {
+    this.codec = Objects.requireNonNull(codec, "codec");
+    this.hashFunction = Objects.requireNonNull(hashFunction, "hashFunction");
+    this.segmentSize = segmentSize;
+    if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE)
+      throw new IllegalArgumentException("segmentSize " + segmentSize);
+    if (codec.maxBytes() > MAX_SEGMENT_SIZE)
+      throw new IllegalArgumentException("codec maxBytes " + codec.maxBytes());
+  }
+
+
+  public HashFunction getHashFunction() {
+    return hashFunction;
+  }
+
+
+  /**
+   * Returns the number of objects in the store.
+   */
+  public int size() {
+    return index.size();
+  }
+
+
+  /**
+   * Returns the number of off-heap bytes allocated for encodings (including
+   * any abandoned copies).
+   */
+  public long allocatedBytes() {
+    return allocatedBytes.get();
+  }
+
+
+  /**
+   * Returns the total capacity of the off-heap segments.
+   */
+  public long segmentBytes() {
+    long bytes = 0;
+    for (ByteBuffer segment : segments)
+      bytes += segment.capacity();
+    return bytes;
+  }
+
+
+
+  @Override
+  public String write(T object) {
+    ByteBuffer buffer = encode(object);
+    String id = signature(buffer);
+    if (index.containsKey(id))
+      return id;
+
+    final int length = buffer.remaining();
+    Loc loc = reserve(length);
+    segments[loc.segment].put(loc.offset, buffer, buffer.position(), length);
+    // the put (publishing the bytes) happens-before any reader's get
+    index.putIfAbsent(id, loc);
+    return id;
+  }
+
+
+  @Override
+  public String getId(T object) {
+    return signature(encode(object));
+  }
+
+
+  @Override
+  public boolean containsId(String id) {
+    return index.containsKey(canonicalizeHex(id));
+  }
+
+
+  @Override
+  public T read(String id) throws NotFoundException {
+    Loc loc = index.get(canonicalizeHex(id));
+    if (loc == null)
+      throw new NotFoundException(id);
+    return decode(loc);
+  }
+
+
+  /**
+   * Returns a read-only view of the stored encoding of the object with the given ID.
+   */
+  public ByteBuffer getBytes(String id) throws NotFoundException {
+    Loc loc = index.get(canonicalizeHex(id));
+    if (loc == null)
+      throw new NotFoundException(id);
+    return slice(loc);
+  }
+
+
+  @Override
+  public Stream<String> streamIds() {
+    return index.keySet().stream();
+  }
+
+
+  @Override
+  public Stream<String> streamIds(String idPrefix) {
+    return index.tailMap(canonical(idPrefix)).keySet().stream();
+  }
+
+
+  @Override
+  public T readUsingPrefix(String idPrefix) throws NotFoundException, IllegalArgumentException {
+    if (idPrefix == null || idPrefix.isEmpty())
+      throw new IllegalArgumentException("empty idPrefix " + idPrefix);
+
+    String prefix = canonicalizeHex(idPrefix);
+    Map.Entry<String, Loc> first = index.ceilingEntry(prefix);
+    if (first == null || !first.getKey().startsWith(prefix))
+      throw new NotFoundException(idPrefix + "..");
+    String next = index.higherKey(first.getKey());
+    if (next != null && next.startsWith(prefix))
+      throw new IllegalArgumentException("ambiguous (more than 1 result) for prefix " + idPrefix);
+    return decode(first.getValue());
+  }
+
+
+  @Override
+  public Stream<T> streamObjects() {
+    return index.values().stream().map(this::decode);
+  }
+
+
+  @Override
+  public Stream<T> streamObjects(String idPrefix) {
+    return index.tailMap(canonical(idPrefix)).values().stream().map(this::decode);
+  }
+
+
+
+
+  private static String canonical(String idPrefix) {
+    return idPrefix.isEmpty() ? idPrefix : canonicalizeHex(idPrefix);
+  }
+
+
+  private ByteBuffer encode(T object) {
+    ByteBuffer buffer = ByteBuffer.allocate(codec.maxBytes());
+    codec.write(object, buffer);
+    return buffer.flip();
+  }
+
+
+  private String signature(ByteBuffer buffer) {
+    HashFunction.Hasher hasher = ThreadLocalHashers.get(hashFunction);
+    hasher.update(buffer.duplicate());
+    return toHex(hasher.digest());
+  }
+
+
+  private ByteBuffer slice(Loc loc) {
+    return segments[loc.segment].slice(loc.offset, loc.length).asReadOnlyBuffer();
+  }
+
+
+  private T decode(Loc loc) {
+    return codec.read(slice(loc));
+  }
+
+
+  /**
+   * Reserves {@code length} bytes in the current segment (adding a new segment, if need be).
+   */
+  private Loc reserve(int length) {
+    synchronized (allocLock) {
+      ByteBuffer[] segs = segments;
+      int last = segs.length - 1;
+      if (last == -1 || segs[last].capacity() - tailOffset < length) {
+        ByteBuffer[] grown = new ByteBuffer[segs.length + 1];
+        System.arraycopy(segs, 0, grown, 0, segs.length);
+        grown[++last] = ByteBuffer.allocateDirect(Math.max(segmentSize, length));
+        segments = grown;
+        tailOffset = 0;
+      }
+      Loc loc = new Loc(last, tailOffset, length);
+      tailOffset += length;
+      allocatedBytes.addAndGet(length);
+      return loc;
+    }
+  }
+
+
+
+  /**
+   * Location of an encoding.
+   */
+  private final static class Loc {
+    final int segment;
+    final int offset;
+    final int length;
+
+    Loc(int segment, int offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Merges sorted ID iterators, dropping duplicates.
+ */
+final class MergedIds implements Iterator<String> {
+
+  private final PriorityQueue<Map.Entry<String, Iterator<String>>> heads =
+      new PriorityQueue<>(Map.Entry.comparingByKey());
+  private String last;
+
+  /**
+   * @param sources iterators over sorted (ascending) IDs
+   */
+  MergedIds(List<? extends Iterator<String>> sources) {
+    for (Iterator<String> source : sources)
+      push(source);
+  }
+
+
+  /**
+   * Returns the merged {@code sources} as an ordered, distinct stream.
+   *
+   * @param sources iterators over sorted (ascending) IDs
+   */
+  static Stream<String> stream(List<? extends Iterator<String>> sources) {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(
+            new MergedIds(sources),
+            Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+        false);
+  }
+
+
+  private void push(Iterator<String> source) {
+    if (source.hasNext())
+      heads.add(new AbstractMap.SimpleEntry<>(source.next(), source));
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!heads.isEmpty() && heads.peek().getKey().equals(last))
+      push(heads.poll().getValue());
+    return !heads.isEmpty();
+  }
+
+  @Override
+  public String next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    Map.Entry<String, Iterator<String>> head = heads.poll();
+    last = head.getKey();
+    push(head.getValue());
+    return last;
+  }
+
+}
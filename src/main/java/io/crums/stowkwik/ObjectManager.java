@@ -6,11 +6,14 @@ package io.crums.stowkwik;
 
 import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 /**
  * Base abstraction for a simple object store. It doesn't yet have a {@code remove()} method.
+ * (File-per-object stores do: see {@linkplain BaseHashedObjectManager#remove(String)}.)
  * 
  * @param <T> the type of data this instance manages. At minimum, this
  *            requires that {@linkplain Object#equals(Object) Object.equals}
@@ -55,6 +58,34 @@ public abstract class ObjectManager<T> {
   public abstract T read(String id) throws NotFoundException, UncheckedIOException;
   
   
+  /**
+   * Reads and returns the previously written objects with the given IDs, in order.
+   * IDs not found in the store are reported as {@code null} elements (rather than as
+   * {@linkplain NotFoundException}s). This base implementation reads the objects
+   * sequentially; implementations may do better.
+   * 
+   * @param ids the objects' IDs (not necessarily distinct)
+   * 
+   * @return a list of objects in the same order as {@code ids}; {@code null} elements
+   *         for those not found
+   * 
+   * @throws UncheckedIOException in the event of an I/O error
+   */
+  public List<T> readAll(List<String> ids) throws UncheckedIOException {
+    List<T> objects = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      T object;
+      try {
+        object = read(id);
+      } catch (NotFoundException nfx) {
+        object = null;
+      }
+      objects.add(object);
+    }
+    return objects;
+  }
+  
+  
   public boolean hasReader() {
     return false;
   }
@@ -200,6 +231,15 @@ public abstract class ObjectManager<T> {
             return readMapper.apply(u);
           }
           
+          @Override
+          public List<V> readAll(List<String> ids) {
+            List<U> us = manager.readAll(ids);
+            List<V> vs = new ArrayList<>(us.size());
+            for (U u : us)
+              vs.add(u == null ? null : readMapper.apply(u));
+            return vs;
+          }
+          
           @Override
           public V readUsingPrefix(String idPrefix) {
             U u = manager.readUsingPrefix(idPrefix);
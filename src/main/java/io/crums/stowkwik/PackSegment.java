@@ -0,0 +1,233 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.toHex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import io.crums.stowkwik.io.Channels;
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * A sealed (immutable) segment of a {@linkplain PackedObjectManager}: a data file of
+ * appended records, and a sorted index file that's memory-mapped for binary search.
+ * <p>
+ * Each data file record is laid out as
+ * <pre>
+ *   ID (digest length bytes) | payload length (4 bytes) | payload
+ * </pre>
+ * and each index entry (sorted by ID, unsigned) as
+ * <pre>
+ *   ID (digest length bytes) | payload offset (8 bytes) | payload length (4 bytes)
+ * </pre>
+ * </p>
+ */
+final class PackSegment {
+
+  /**
+   * Index entry bytes, after the ID.
+   */
+  final static int INDEX_LOC_BYTES = 12;
+
+  /**
+   * Record header bytes, after the ID.
+   */
+  final static int RECORD_LEN_BYTES = 4;
+
+
+  private final int seq;
+  private final File dataFile;
+  private final File indexFile;
+  private final int idLen;
+  private final int entryWidth;
+  private final ReopenableChannel data;
+  private final MappedByteBuffer index;
+  private final int count;
+
+
+  /**
+   * Opens an existing sealed segment.
+   *
+   * @param seq       the segment number
+   * @param dataFile  the data file
+   * @param indexFile the index file
+   * @param idLen     the digest (ID) length in bytes
+   */
+  PackSegment(int seq, File dataFile, File indexFile, int idLen) throws UncheckedIOException {
+    this.seq = seq;
+    this.dataFile = dataFile;
+    this.indexFile = indexFile;
+    this.idLen = idLen;
+    this.entryWidth = idLen + INDEX_LOC_BYTES;
+
+    try (FileChannel indexChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+
+      long size = indexChannel.size();
+      if (size % entryWidth != 0 || size / entryWidth > Integer.MAX_VALUE / entryWidth)
+        throw new CorruptionException("index size " + size + ": " + indexFile);
+      this.count = (int) (size / entryWidth);
+      this.index = indexChannel.map(MapMode.READ_ONLY, 0, size);
+
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on opening " + indexFile, iox);
+    }
+
+    try {
+      this.data = new ReopenableChannel(dataFile, StandardOpenOption.READ);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on opening " + dataFile, iox);
+    }
+  }
+
+
+  int seq() {
+    return seq;
+  }
+
+
+  File dataFile() {
+    return dataFile;
+  }
+
+
+  File indexFile() {
+    return indexFile;
+  }
+
+
+  /**
+   * Returns the number of objects in this segment.
+   */
+  int count() {
+    return count;
+  }
+
+
+  /**
+   * Returns the index of the entry with the given ID, or -1 if not found.
+   */
+  int find(byte[] id) {
+    int lo = 0;
+    int hi = count - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int comp = compareId(mid, id);
+      if (comp < 0)
+        lo = mid + 1;
+      else if (comp > 0)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -1;
+  }
+
+
+  /**
+   * Returns the index of the first entry whose ID is &ge; the given (possibly
+   * partial) ID; {@linkplain #count()}, if there is none.
+   */
+  int lowerBound(byte[] idPrefix) {
+    int lo = 0;
+    int hi = count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (compareId(mid, idPrefix) < 0)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+
+  private int compareId(int entry, byte[] id) {
+    int pos = entry * entryWidth;
+    int len = Math.min(idLen, id.length);
+    for (int k = 0; k < len; ++k) {
+      int comp = Byte.compareUnsigned(index.get(pos + k), id[k]);
+      if (comp != 0)
+        return comp;
+    }
+    return id.length < idLen ? 1 : 0;
+  }
+
+
+  byte[] id(int entry) {
+    byte[] id = new byte[idLen];
+    index.get(entry * entryWidth, id);
+    return id;
+  }
+
+
+  long offset(int entry) {
+    return index.getLong(entry * entryWidth + idLen);
+  }
+
+
+  int length(int entry) {
+    return index.getInt(entry * entryWidth + idLen + 8);
+  }
+
+
+  /**
+   * Returns a sorted view of this segment's IDs in hex.
+   */
+  List<String> ids() {
+    class Ids extends AbstractList<String> implements RandomAccess {
+      @Override
+      public String get(int entry) {
+        return toHex(id(entry));
+      }
+      @Override
+      public int size() {
+        return count;
+      }
+    }
+    return new Ids();
+  }
+
+
+  /**
+   * Reads the given entry's payload into the given buffer. The data file is reopened
+   * if another reader's interrupt closed it.
+   */
+  void readPayload(int entry, ByteBuffer buffer) throws IOException {
+    int length = length(entry);
+    if (buffer.remaining() < length)
+      throw new IllegalArgumentException(
+          "insufficient buffer space: " + buffer.remaining() + " < " + length);
+    final long offset = offset(entry);
+    final int start = buffer.position();
+    int limit = buffer.limit();
+    buffer.limit(start + length);
+    try {
+      int bytes = data.run(channel -> Channels.readFully(channel, offset, buffer.position(start)));
+      if (bytes != length)
+        throw new CorruptionException("truncated record " + toHex(id(entry)) + ": " + dataFile);
+    } finally {
+      buffer.limit(limit);
+    }
+  }
+
+
+  void close() {
+    try {
+      data.close();
+    } catch (IOException ignore) {  }
+  }
+
+}
@@ -0,0 +1,946 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import io.crums.stowkwik.io.Channels;
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * An object store that packs objects into segment files, instead of storing each in its own
+ * file. For small objects, this saves an inode, a directory entry, and an open/close per
+ * object. Objects are encoded with a {@linkplain Codec}, and identified by the hash of their
+ * encoding, exactly as in {@linkplain BinaryObjectManager}. (So an object's ID is the same
+ * in either type of store.)
+ * <h2>Layout</h2>
+ * <p>
+ * New objects are appended to the <em>active</em> segment, whose index is kept in memory.
+ * Once the active segment's size reaches the {@linkplain #getSegmentSize() segment size}, it's
+ * <em>sealed</em>: its index is written to a file of fixed-width entries sorted by ID
+ * (memory-mapped and binary-searched on lookup), and a new active segment is started.
+ * Sealed segments may be {@linkplain #compact() compacted} into one, so that lookups probe
+ * fewer indexes.
+ * </p>
+ * <p>
+ * On opening, the active segment's (in-memory) index is rebuilt by scanning it; a partial
+ * record at its end (as from a crash) is truncated. Appends are not forced to disk;
+ * use {@linkplain #flush()} for that.
+ * </p>
+ * <p>
+ * Instances are thread-safe. Writes are serialized; reads are lock-free, positional reads
+ * on already open channels. (A channel closed by an interrupted reader or writer is
+ * reopened for the others.)
+ * </p>
+ *
+ * @see PackSegment
+ */
+public class PackedObjectManager<T> extends ObjectManager<T> implements Closeable {
+
+  /**
+   * Default segment size. (64 MiB.)
+   */
+  public final static int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Recorded in the store's {@linkplain StoreMetadata metadata}.
+   */
+  final static String ID_SCHEME = "packed";
+
+  private final static String SEGMENT_PREFIX = "seg";
+  private final static String DATA_EXT = ".pack";
+  private final static String INDEX_EXT = ".idx";
+  private final static String TEMP_EXT = ".tmp";
+
+  private final static int MAX_RETRIES = 3;
+
+  private final static int COPY_BUFFER_SIZE = 1024 * 1024;
+
+
+  private final File dir;
+  private final String ext;
+  private final Codec<T> codec;
+  private final HashFunction hashFunction;
+  private final int segmentSize;
+  private final int idLen;
+  private final Pattern segmentPattern;
+
+  private final Object writeLock = new Object();
+  private final Object compactLock = new Object();
+  private final Object segmentsLock = new Object();
+  private final AtomicInteger nextSeq = new AtomicInteger();
+
+  /** Sealed segments, newest first. Copy-on-write. */
+  private volatile PackSegment[] sealed;
+  private volatile Active active;
+
+
+  /**
+   * Creates an instance with the {@linkplain BaseHashedObjectManager#DEFAULT_HASH_ALGO
+   * default hash algo} and {@linkplain #DEFAULT_SEGMENT_SIZE default segment size}.
+   *
+   * @param dir   store directory (created if it doesn't exist)
+   * @param ext   filename extension used by the store's files (multiple stores with
+   *              different extensions may share the same directory)
+   * @param codec serialization interface for type {@code <T>}
+   */
+  public PackedObjectManager(File dir, String ext, Codec<T> codec) {
+    this(dir, ext, codec, HashFunction.forName(BaseHashedObjectManager.DEFAULT_HASH_ALGO),
+        DEFAULT_SEGMENT_SIZE);
+  }
+
+
+  /**
+   * Full param constructor.
+   *
+   * @param dir           store directory (created if it doesn't exist)
+   * @param ext           filename extension used by the store's files
+   * @param codec         serialization interface for type {@code <T>}
+   * @param hashFunction  the hash function
+   * @param segmentSize   the size at which the active segment is sealed (&ge; 4096)
+   */
+  public PackedObjectManager(
+      File dir, String ext, Codec<T> codec, HashFunction hashFunction, int segmentSize)
+          throws UncheckedIOException {
+
+    this.dir = dir;
+    this.ext = ext;
+    this.codec = codec;
+    this.hashFunction = hashFunction;
+    this.segmentSize = segmentSize;
+
+    if (dir == null)
+      throw new IllegalArgumentException("null dir");
+    if (ext == null || ext.isEmpty())
+      throw new IllegalArgumentException("empty ext: '" + ext + "'");
+    if (codec == null)
+      throw new IllegalArgumentException("null codec");
+    if (hashFunction == null)
+      throw new IllegalArgumentException("null hashFunction");
+    if (segmentSize < 4096)
+      throw new IllegalArgumentException("segmentSize " + segmentSize);
+
+    this.idLen = hashFunction.digestLength();
+    this.segmentPattern = Pattern.compile(
+        SEGMENT_PREFIX + "(\\d{8})" + Pattern.quote(ext) + "(" + Pattern.quote(DATA_EXT) + "|" +
+        Pattern.quote(INDEX_EXT) + ")(" + Pattern.quote(TEMP_EXT) + ")?");
+
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory())
+      throw new IllegalArgumentException("failed to create directory " + dir);
+
+    StoreMetadata meta = StoreMetadata.load(dir, ext);
+    if (meta == null)
+      getMetadata().save(dir);
+    else
+      meta.checkCompatible(hashFunction.name(), ID_SCHEME);
+
+    try {
+      open();
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on opening store " + dir, iox);
+    }
+  }
+
+
+  private void open() throws IOException {
+    TreeMap<Integer, File> dataFiles = new TreeMap<>();
+    Set<Integer> indexed = new HashSet<>();
+
+    for (File file : dir.listFiles()) {
+      Matcher matcher = segmentPattern.matcher(file.getName());
+      if (!matcher.matches())
+        continue;
+      if (matcher.group(3) != null) {
+        // leftover from an interrupted seal or compaction
+        Files.delete(file.toPath());
+        continue;
+      }
+      int seq = Integer.parseInt(matcher.group(1));
+      if (DATA_EXT.equals(matcher.group(2)))
+        dataFiles.put(seq, file);
+      else
+        indexed.add(seq);
+    }
+
+    List<PackSegment> segments = new ArrayList<>();
+    Integer activeSeq = null;
+    for (var e : dataFiles.descendingMap().entrySet()) {
+      int seq = e.getKey();
+      if (indexed.remove(seq))
+        segments.add(new PackSegment(seq, e.getValue(), indexFile(seq, false), idLen));
+      else if (activeSeq == null)
+        activeSeq = seq;
+      else
+        throw new CorruptionException("more than one unsealed segment: " + e.getValue());
+    }
+    // orphaned indexes (data file renamed after its index in compaction)
+    for (int seq : indexed)
+      Files.delete(indexFile(seq, false).toPath());
+
+    this.sealed = segments.toArray(new PackSegment[segments.size()]);
+    this.nextSeq.set(dataFiles.isEmpty() ? 1 : dataFiles.lastKey() + 1);
+    this.active = activeSeq == null ? newActive() : recoverActive(activeSeq);
+  }
+
+
+  /**
+   * Returns the store's metadata.
+   */
+  public StoreMetadata getMetadata() {
+    return new StoreMetadata(hashFunction.name(), ext, 256, ID_SCHEME);
+  }
+
+
+  public File getRootDir() {
+    return dir;
+  }
+
+
+  public String getFileExtension() {
+    return ext;
+  }
+
+
+  public HashFunction getHashFunction() {
+    return hashFunction;
+  }
+
+
+  /**
+   * Returns the size at which the active segment is sealed.
+   */
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+
+  /**
+   * Returns the number of sealed segments.
+   */
+  public int getSealedSegmentCount() {
+    return sealed.length;
+  }
+
+
+
+
+  @Override
+  public String write(T object) throws UncheckedIOException {
+    ByteBuffer buffer = toByteBuffer(object);
+    String id = signature(buffer);
+    if (containsId(id))
+      return id;
+
+    synchronized (writeLock) {
+      if (!containsId(id))
+        append(Collections.singletonList(id), Collections.singletonList(buffer));
+    }
+    return id;
+  }
+
+
+  /**
+   * Writes the given objects in bulk, and returns their IDs in order. The objects are
+   * encoded and hashed first; those not already in the store are then appended in a
+   * single (gathering) write.
+   *
+   * @return the IDs of the {@code objects}, in the same order
+   */
+  public List<String> writeAll(List<T> objects) throws UncheckedIOException {
+    List<String> ids = new ArrayList<>(objects.size());
+    List<ByteBuffer> buffers = new ArrayList<>(objects.size());
+    for (T object : objects) {
+      ByteBuffer buffer = toByteBuffer(object);
+      ids.add(signature(buffer));
+      buffers.add(buffer);
+    }
+
+    synchronized (writeLock) {
+      List<String> newIds = new ArrayList<>();
+      List<ByteBuffer> newBuffers = new ArrayList<>();
+      Set<String> batch = new HashSet<>();
+      for (int index = 0; index < ids.size(); ++index) {
+        String id = ids.get(index);
+        if (batch.add(id) && !containsId(id)) {
+          newIds.add(id);
+          newBuffers.add(buffers.get(index));
+        }
+      }
+      if (!newIds.isEmpty())
+        append(newIds, newBuffers);
+    }
+    return ids;
+  }
+
+
+  /**
+   * Appends the given records to the active segment, sealing it if it's full.
+   * Invoked under the write lock.
+   */
+  private void append(List<String> ids, List<ByteBuffer> payloads) {
+    Active active = this.active;
+    int count = ids.size();
+    ByteBuffer[] srcs = new ByteBuffer[2 * count];
+    Loc[] locs = new Loc[count];
+    long pos = active.size;
+    for (int index = 0; index < count; ++index) {
+      ByteBuffer payload = payloads.get(index).duplicate();
+      ByteBuffer header = ByteBuffer.allocate(idLen + PackSegment.RECORD_LEN_BYTES);
+      header.put(hexToBytes(ids.get(index))).putInt(payload.remaining()).flip();
+      srcs[2 * index] = header;
+      srcs[2 * index + 1] = payload;
+      pos += header.remaining();
+      locs[index] = new Loc(pos, payload.remaining());
+      pos += payload.remaining();
+    }
+
+    final long start = active.size;
+    final long end = pos;
+    final int[] marks = new int[srcs.length];
+    for (int index = 0; index < srcs.length; ++index)
+      marks[index] = srcs[index].position();
+
+    try {
+      // repeatable, in case the channel is reopened midway
+      active.channel.run(channel -> {
+        for (int index = 0; index < srcs.length; ++index)
+          srcs[index].position(marks[index]);
+        channel.position(start);
+        long remaining = end - start;
+        int fails = 0;
+        while (remaining > 0) {
+          long bytes = channel.write(srcs);
+          if (bytes == 0 && ++fails > 1024)
+            throw new IOException("failed to append " + remaining + " remaining bytes");
+          remaining -= bytes;
+        }
+        return null;
+      });
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on appending to " + active.file, iox);
+    }
+
+    active.size = pos;
+    for (int index = 0; index < count; ++index)
+      active.index.put(ids.get(index), locs[index]);
+
+    if (active.size >= segmentSize)
+      sealImpl();
+  }
+
+
+  /**
+   * Seals the active segment (if not empty), and starts a new one.
+   */
+  public void seal() throws UncheckedIOException {
+    synchronized (writeLock) {
+      if (!active.index.isEmpty())
+        sealImpl();
+    }
+  }
+
+
+  private void sealImpl() {
+    Active active = this.active;
+    try {
+      active.channel.force();
+
+      List<String> ids = new ArrayList<>(active.index.keySet());
+      Collections.sort(ids);
+
+      File tmp = indexFile(active.seq, true);
+      try (IndexWriter writer = new IndexWriter(tmp)) {
+        for (String id : ids) {
+          Loc loc = active.index.get(id);
+          writer.add(hexToBytes(id), loc.offset, loc.length);
+        }
+      }
+      Files.move(tmp.toPath(), indexFile(active.seq, false).toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+      PackSegment segment =
+          new PackSegment(active.seq, active.file, indexFile(active.seq, false), idLen);
+
+      synchronized (segmentsLock) {
+        PackSegment[] current = this.sealed;
+        PackSegment[] next = new PackSegment[current.length + 1];
+        next[0] = segment;
+        System.arraycopy(current, 0, next, 1, current.length);
+        this.sealed = next;
+      }
+
+      // publish the new active segment only after the sealed one is visible
+      this.active = newActive();
+      active.channel.close();
+
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on sealing " + active.file, iox);
+    }
+  }
+
+
+  /**
+   * Compacts the sealed segments into a single segment, so that lookups probe
+   * fewer indexes. Writes (and reads) may proceed concurrently.
+   *
+   * @return the number of segments compacted (zero, if there were fewer than 2)
+   */
+  public int compact() throws UncheckedIOException {
+    synchronized (compactLock) {
+      PackSegment[] inputs = this.sealed;
+      if (inputs.length < 2)
+        return 0;
+
+      int seq = nextSeq.getAndIncrement();
+
+      File dataTmp = dataFile(seq, true);
+      File indexTmp = indexFile(seq, true);
+      try {
+        mergeSegments(inputs, dataTmp, indexTmp);
+
+        // index first: a data file w/o an index is taken to be the active segment
+        Files.move(indexTmp.toPath(), indexFile(seq, false).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(dataTmp.toPath(), dataFile(seq, false).toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+        PackSegment merged = new PackSegment(seq, dataFile(seq, false), indexFile(seq, false), idLen);
+
+        // segments sealed since we began are kept (they're at the head)
+        synchronized (segmentsLock) {
+          PackSegment[] current = this.sealed;
+          int fresh = current.length - inputs.length;
+          PackSegment[] next = new PackSegment[fresh + 1];
+          System.arraycopy(current, 0, next, 0, fresh);
+          next[fresh] = merged;
+          this.sealed = next;
+        }
+
+      } catch (IOException iox) {
+        dataTmp.delete();
+        indexTmp.delete();
+        throw new UncheckedIOException("on compacting " + dir, iox);
+      }
+
+      for (PackSegment input : inputs) {
+        input.close();
+        // data first: an index w/o its data file is discarded on opening
+        input.dataFile().delete();
+        input.indexFile().delete();
+      }
+      return inputs.length;
+    }
+  }
+
+
+  private void mergeSegments(PackSegment[] inputs, File dataOut, File indexOut) throws IOException {
+    ByteBuffer payload = ByteBuffer.allocate(codec.maxBytes());
+    ByteBuffer out = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+
+    try (FileChannel data = FileChannel.open(
+            dataOut.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+         IndexWriter index = new IndexWriter(indexOut)) {
+
+      long pos = 0;
+      PriorityQueue<Cursor> queue = new PriorityQueue<>();
+      for (PackSegment input : inputs)
+        if (input.count() > 0)
+          queue.add(new Cursor(input));
+
+      byte[] last = null;
+      while (!queue.isEmpty()) {
+        Cursor head = queue.poll();
+        byte[] id = head.id;
+        int entry = head.entry;
+        if (head.advance())
+          queue.add(head);
+        if (last != null && Arrays.equals(last, id))
+          continue;
+        last = id;
+
+        payload.clear();
+        head.segment.readPayload(entry, payload);
+        payload.flip();
+
+        if (out.remaining() < id.length + PackSegment.RECORD_LEN_BYTES + payload.remaining()) {
+          out.flip();
+          Channels.writeRemaining(data, out);
+          out.clear();
+        }
+        int length = payload.remaining();
+        out.put(id).putInt(length);
+        pos += id.length + PackSegment.RECORD_LEN_BYTES;
+        index.add(id, pos, length);
+        if (out.remaining() < length) {
+          out.flip();
+          Channels.writeRemaining(data, out);
+          out.clear();
+          Channels.writeRemaining(data, payload);
+        } else
+          out.put(payload);
+        pos += length;
+      }
+      out.flip();
+      Channels.writeRemaining(data, out);
+      data.force(false);
+    }
+  }
+
+
+  /**
+   * Merge cursor over a sealed segment's entries. (Compares by current ID.)
+   */
+  private static class Cursor implements Comparable<Cursor> {
+    final PackSegment segment;
+    int entry;
+    byte[] id;
+
+    Cursor(PackSegment segment) {
+      this.segment = segment;
+      this.id = segment.id(0);
+    }
+
+    boolean advance() {
+      if (++entry == segment.count())
+        return false;
+      id = segment.id(entry);
+      return true;
+    }
+
+    @Override
+    public int compareTo(Cursor other) {
+      return Arrays.compareUnsigned(id, other.id);
+    }
+  }
+
+
+  /**
+   * Forces appended objects to disk.
+   */
+  public void flush() throws UncheckedIOException {
+    synchronized (writeLock) {
+      try {
+        active.channel.force();
+      } catch (IOException iox) {
+        throw new UncheckedIOException("on flushing " + active.file, iox);
+      }
+    }
+  }
+
+
+  /**
+   * Closes the store's open files. The active segment is not sealed.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (compactLock) {
+      synchronized (writeLock) {
+        active.channel.close();
+        for (PackSegment segment : sealed)
+          segment.close();
+      }
+    }
+  }
+
+
+
+
+  @Override
+  public String getId(T object) {
+    return signature(toByteBuffer(object));
+  }
+
+
+  @Override
+  public boolean containsId(String id) {
+    String hex = canonicalizeHex(id);
+    if (hex.length() != 2 * idLen)
+      return false;
+    if (active.index.containsKey(hex))
+      return true;
+    byte[] bytes = hexToBytes(hex);
+    for (PackSegment segment : sealed)
+      if (segment.find(bytes) != -1)
+        return true;
+    return false;
+  }
+
+
+  @Override
+  public T read(String id) throws NotFoundException, UncheckedIOException {
+    ByteBuffer payload = loadPayload(canonicalizeHex(id));
+    if (payload == null)
+      throw new NotFoundException(id);
+    return codec.read(payload);
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The objects are read in storage order (by segment and offset), so that the reads
+   * are mostly sequential.
+   * </p>
+   */
+  @Override
+  public List<T> readAll(List<String> ids) throws UncheckedIOException {
+    final int count = ids.size();
+    Located[] located = new Located[count];
+    for (int index = 0; index < count; ++index)
+      located[index] = locate(canonicalizeHex(ids.get(index)), index);
+
+    Located[] sorted = located.clone();
+    Arrays.sort(sorted, (a, b) -> a == null ? (b == null ? 0 : 1) : b == null ? -1 : a.compareTo(b));
+
+    @SuppressWarnings("unchecked")
+    T[] objects = (T[]) new Object[count];
+    for (Located loc : sorted) {
+      if (loc == null)
+        break;
+      ByteBuffer payload = loadPayload(loc);
+      if (payload != null)
+        objects[loc.order] = codec.read(payload);
+    }
+    return Arrays.asList(objects);
+  }
+
+
+  private ByteBuffer loadPayload(String hex) {
+    return loadPayload(locate(hex, 0));
+  }
+
+
+  /**
+   * Loads the given located payload, re-locating it if its segment is concurrently
+   * sealed or compacted away.
+   */
+  private ByteBuffer loadPayload(Located loc) {
+    for (int attempt = 1; loc != null; ++attempt) {
+      try {
+        return loc.load();
+      } catch (ClosedByInterruptException cbix) {
+        throw new UncheckedIOException("interrupted on reading " + loc.hex, cbix);
+      } catch (ClosedChannelException ccx) {
+        if (attempt == MAX_RETRIES)
+          throw new UncheckedIOException("on reading " + loc.hex, ccx);
+        loc = locate(loc.hex, loc.order);
+      } catch (IOException iox) {
+        throw new UncheckedIOException("on reading " + loc.hex, iox);
+      }
+    }
+    return null;
+  }
+
+
+  private Located locate(String hex, int order) {
+    if (hex.length() != 2 * idLen)
+      return null;
+    Active active = this.active;
+    Loc loc = active.index.get(hex);
+    if (loc != null)
+      return new Located(hex, order, active, loc);
+    byte[] bytes = hexToBytes(hex);
+    for (PackSegment segment : sealed) {
+      int entry = segment.find(bytes);
+      if (entry != -1)
+        return new Located(hex, order, segment, entry);
+    }
+    return null;
+  }
+
+
+
+  @Override
+  public Stream<String> streamIds() {
+    return streamIds("");
+  }
+
+
+  @Override
+  public Stream<String> streamIds(String idPrefix) {
+    String prefix = idPrefix.isEmpty() ? "" : canonicalizeHex(idPrefix);
+
+    List<Iterator<String>> sources = new ArrayList<>();
+
+    List<String> activeIds = new ArrayList<>(active.index.keySet());
+    Collections.sort(activeIds);
+    int start = Collections.binarySearch(activeIds, prefix);
+    sources.add(activeIds.subList(start < 0 ? -1 - start : start, activeIds.size()).iterator());
+
+    byte[] lowerBound = hexToBytes((prefix.length() % 2 == 0) ? prefix : prefix + "0");
+    for (PackSegment segment : sealed) {
+      List<String> ids = segment.ids();
+      sources.add(ids.subList(segment.lowerBound(lowerBound), ids.size()).iterator());
+    }
+
+    return MergedIds.stream(sources);
+  }
+
+
+  @Override
+  public T readUsingPrefix(String idPrefix)
+      throws NotFoundException, IllegalArgumentException, UncheckedIOException {
+    if (idPrefix == null || idPrefix.isEmpty())
+      throw new IllegalArgumentException("empty idPrefix " + idPrefix);
+
+    String prefix = canonicalizeHex(idPrefix);
+    List<String> matches =
+        streamIds(prefix).takeWhile(id -> id.startsWith(prefix)).limit(2).toList();
+    if (matches.isEmpty())
+      throw new NotFoundException(idPrefix + "..");
+    if (matches.size() > 1)
+      throw new IllegalArgumentException("ambiguous (more than 1 result) for prefix " + idPrefix);
+    return read(matches.get(0));
+  }
+
+
+  @Override
+  public Stream<T> streamObjects() {
+    return streamIds().map(this::read);
+  }
+
+
+  @Override
+  public Stream<T> streamObjects(String idPrefix) {
+    return streamIds(idPrefix).map(this::read);
+  }
+
+
+
+
+  private ByteBuffer toByteBuffer(T object) {
+    ByteBuffer buffer = ByteBuffer.allocate(codec.maxBytes());
+    codec.write(object, buffer);
+    return buffer.flip();
+  }
+
+
+  /**
+   * Same as {@linkplain BaseHashedObjectManager#signature(ByteBuffer)}.
+   */
+  private String signature(ByteBuffer buffer) {
+    HashFunction.Hasher hasher = ThreadLocalHashers.get(hashFunction);
+    hasher.update(buffer.duplicate());
+    return toHex(hasher.digest());
+  }
+
+
+  private File dataFile(int seq, boolean temp) {
+    return segmentFile(seq, DATA_EXT, temp);
+  }
+
+
+  private File indexFile(int seq, boolean temp) {
+    return segmentFile(seq, INDEX_EXT, temp);
+  }
+
+
+  private File segmentFile(int seq, String type, boolean temp) {
+    return new File(
+        dir, SEGMENT_PREFIX + String.format("%08d", seq) + ext + type + (temp ? TEMP_EXT : ""));
+  }
+
+
+  private Active newActive() throws IOException {
+    int seq = nextSeq.getAndIncrement();
+    File file = dataFile(seq, false);
+    Files.createFile(file.toPath());
+    ReopenableChannel channel =
+        new ReopenableChannel(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    return new Active(seq, file, channel, 0, new ConcurrentHashMap<>());
+  }
+
+
+  /**
+   * Rebuilds the active segment's index by scanning it. A partial record at the end
+   * is truncated.
+   */
+  private Active recoverActive(int seq) throws IOException {
+    File file = dataFile(seq, false);
+    Map<String, Loc> index = new ConcurrentHashMap<>();
+    long pos = 0;
+
+    try (FileChannel channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+      final long size = channel.size();
+      final int headerLen = idLen + PackSegment.RECORD_LEN_BYTES;
+      ByteBuffer header = ByteBuffer.allocate(headerLen);
+      byte[] id = new byte[idLen];
+      while (pos + headerLen <= size) {
+        header.clear();
+        if (Channels.readFully(channel, pos, header) != headerLen)
+          break;
+        header.flip().get(id);
+        int length = header.getInt();
+        if (length < 0 || length > codec.maxBytes() || pos + headerLen + length > size)
+          break;
+        index.put(toHex(id), new Loc(pos + headerLen, length));
+        pos += headerLen + length;
+      }
+      if (pos < size)
+        channel.truncate(pos);
+    }
+
+    ReopenableChannel channel =
+        new ReopenableChannel(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    return new Active(seq, file, channel, pos, index);
+  }
+
+
+
+  /**
+   * Payload location in the active segment.
+   */
+  private final static class Loc {
+    final long offset;
+    final int length;
+
+    Loc(long offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+
+  /**
+   * The active (unsealed) segment. Its mutable state is guarded by the write lock.
+   */
+  private final static class Active {
+    final int seq;
+    final File file;
+    final ReopenableChannel channel;
+    final Map<String, Loc> index;
+    long size;
+
+    Active(int seq, File file, ReopenableChannel channel, long size, Map<String, Loc> index) {
+      this.seq = seq;
+      this.file = file;
+      this.channel = channel;
+      this.size = size;
+      this.index = index;
+    }
+  }
+
+
+  /**
+   * A located payload. Ordered by storage location.
+   */
+  private final static class Located implements Comparable<Located> {
+    final String hex;
+    final int order;
+    final PackSegment segment;
+    final int entry;
+    final Active active;
+    final Loc loc;
+
+    Located(String hex, int order, PackSegment segment, int entry) {
+      this.hex = hex;
+      this.order = order;
+      this.segment = segment;
+      this.entry = entry;
+      this.active = null;
+      this.loc = null;
+    }
+
+    Located(String hex, int order, Active active, Loc loc) {
+      this.hex = hex;
+      this.order = order;
+      this.segment = null;
+      this.entry = -1;
+      this.active = active;
+      this.loc = loc;
+    }
+
+    ByteBuffer load() throws IOException {
+      if (segment != null) {
+        ByteBuffer payload = ByteBuffer.allocate(segment.length(entry));
+        segment.readPayload(entry, payload);
+        return payload.flip();
+      }
+      ByteBuffer payload = ByteBuffer.allocate(loc.length);
+      int bytes = active.channel.run(channel -> Channels.readFully(channel, loc.offset, payload.clear()));
+      if (bytes != loc.length)
+        throw new CorruptionException("truncated record " + hex + ": " + active.file);
+      return payload.flip();
+    }
+
+    private int seq() {
+      return segment != null ? segment.seq() : active.seq;
+    }
+
+    private long offset() {
+      return segment != null ? segment.offset(entry) : loc.offset;
+    }
+
+    @Override
+    public int compareTo(Located other) {
+      int comp = Integer.compare(seq(), other.seq());
+      return comp != 0 ? comp : Long.compare(offset(), other.offset());
+    }
+  }
+
+
+  /**
+   * Writes index entries (in the order given) to a new file.
+   */
+  private final class IndexWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    IndexWriter(File file) throws IOException {
+      this.channel = FileChannel.open(
+          file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    void add(byte[] id, long offset, int length) throws IOException {
+      if (buffer.remaining() < idLen + PackSegment.INDEX_LOC_BYTES)
+        drain();
+      buffer.put(id).putLong(offset).putInt(length);
+    }
+
+    private void drain() throws IOException {
+      buffer.flip();
+      Channels.writeRemaining(channel, buffer);
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        drain();
+        channel.force(false);
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import io.crums.stowkwik.io.BoundedCache;
+
+/**
+ * A bounded cache of recently written object IDs. When installed on a
+ * {@linkplain BaseHashedObjectManager}, a repeat write of a recently written
+ * object returns as soon as its ID is computed (skipping the file system altogether),
+ * and {@linkplain BaseHashedObjectManager#containsId(String) containsId} on a recently
+ * written ID returns without touching the file system.
+ * <p>
+ * Optionally, an instance also remembers the <em>identity</em> of recently written
+ * objects. In that case, a repeat write of the <em>same instance</em> skips even
+ * encoding and hashing. Only turn this on if written objects are effectively immutable:
+ * mutating an object after it's written would otherwise return a stale ID on its next
+ * write. Note, until they're evicted, this also keeps strong references to those objects.
+ * </p>
+ * <p>
+ * Entries are evicted by count (LRU) and by age. Both caches are lock-striped.
+ * </p>
+ *
+ * @see BaseHashedObjectManager#setRecentIdCache(RecentIdCache)
+ */
+public class RecentIdCache {
+
+  /**
+   * Default maximum number of IDs cached.
+   */
+  public final static int DEFAULT_MAX_IDS = 16 * 1024;
+  /**
+   * Default maximum age of a cached ID. (1 minute.)
+   */
+  public final static long DEFAULT_MAX_AGE_MILLIS = 60_000;
+
+
+  private final BoundedCache<String, Boolean> ids;
+  private final BoundedCache<IdentityKey, String> identities;
+
+
+  /**
+   * Creates an instance with default settings that does not cache object identities.
+   */
+  public RecentIdCache() {
+    this(DEFAULT_MAX_IDS, DEFAULT_MAX_AGE_MILLIS, false);
+  }
+
+
+  /**
+   * @param maxIds          the maximum number of IDs cached
+   * @param maxAgeMillis    the maximum age (since last written) of a cached ID in milliseconds;
+   *                        zero means entries do not expire
+   * @param cacheIdentities if {@code true}, then object identities are also cached (see
+   *                        class comment)
+   */
+  public RecentIdCache(int maxIds, long maxAgeMillis, boolean cacheIdentities) {
+    this.ids = new BoundedCache<>(maxIds, maxAgeMillis);
+    this.identities = cacheIdentities ? new BoundedCache<>(maxIds, maxAgeMillis) : null;
+  }
+
+
+  /**
+   * Determines whether the given (canonical, lowercase) ID was recently written.
+   */
+  public boolean containsId(String id) {
+    return ids.containsKey(id);
+  }
+
+
+  /**
+   * Returns the ID of the given object instance, if it was recently written and
+   * identities are cached; {@code null}, otherwise. An identity whose ID has since
+   * been {@linkplain #evict(String) evicted} (e.g. because the object was removed
+   * from the store) is forgotten, and {@code null} is returned.
+   */
+  public String idOf(Object object) {
+    if (identities == null)
+      return null;
+    IdentityKey key = new IdentityKey(object);
+    String id = identities.get(key);
+    if (id != null && !ids.isCached(id)) {
+      identities.remove(key);
+      return null;
+    }
+    return id;
+  }
+
+
+  /**
+   * Determines whether the given (canonical) ID is still cached, without counting
+   * it as a lookup.
+   */
+  boolean isCached(String id) {
+    return ids.isCached(id);
+  }
+
+
+  /**
+   * Records the given object was written with the given ID.
+   */
+  public void objectWritten(Object object, String id) {
+    ids.put(id, Boolean.TRUE);
+    if (identities != null)
+      identities.put(new IdentityKey(object), id);
+  }
+
+
+  /**
+   * Forgets the given ID. Identity entries mapping to it are no longer returned by
+   * {@linkplain #idOf(Object)} (they're dropped lazily, on lookup).
+   */
+  public void evict(String id) {
+    ids.remove(id);
+  }
+
+
+  public void clear() {
+    ids.clear();
+    if (identities != null)
+      identities.clear();
+  }
+
+
+  public boolean cachesIdentities() {
+    return identities != null;
+  }
+
+
+  /**
+   * Returns the number of ID lookups that hit.
+   */
+  public long hits() {
+    return ids.hits();
+  }
+
+  /**
+   * Returns the number of ID lookups that missed.
+   */
+  public long misses() {
+    return ids.misses();
+  }
+
+  /**
+   * Returns the number of IDs evicted (by count or age).
+   */
+  public long evictions() {
+    return ids.evictions();
+  }
+
+  /**
+   * Returns the ID lookup hit rate.
+   */
+  public double hitRate() {
+    return ids.hitRate();
+  }
+
+  /**
+   * Returns the number of object identity lookups that hit.
+   */
+  public long identityHits() {
+    return identities == null ? 0 : identities.hits();
+  }
+
+  /**
+   * Returns the object identity lookup hit rate.
+   */
+  public double identityHitRate() {
+    return identities == null ? 0 : identities.hitRate();
+  }
+
+
+
+  @Override
+  public String toString() {
+    return
+        getClass().getSimpleName() + "[ids=" + ids.size() + ", hits=" + hits() +
+        ", misses=" + misses() + ", evictions=" + evictions() + "]";
+  }
+
+
+
+  /**
+   * Identity-based key.
+   */
+  private final static class IdentityKey {
+
+    private final Object object;
+
+    IdentityKey(Object object) {
+      this.object = object;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof IdentityKey && ((IdentityKey) o).object == object;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(object);
+    }
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+
+/**
+ * A file channel shared by many threads, that's reopened if it's closed by a thread
+ * interrupt. ({@code FileChannel}s are <em>interruptible</em>: if a thread blocked in
+ * an I/O operation on the channel is interrupted, the channel is closed for everyone.)
+ * <p>
+ * Operations are {@linkplain #run(ChannelOp) run} against the current channel. If the
+ * channel is found closed by another thread's interrupt, it's reopened and the
+ * operation is retried (so operations must be repeatable). The interrupted thread
+ * itself gets its {@code ClosedByInterruptException}. Once this instance is
+ * {@linkplain #close() closed}, operations fail with {@code ClosedChannelException}.
+ * </p>
+ */
+final class ReopenableChannel {
+
+  /**
+   * An operation on a file channel.
+   */
+  interface ChannelOp<R> {
+    R apply(FileChannel channel) throws IOException;
+  }
+
+
+  private final File file;
+  private final OpenOption[] options;
+
+  private volatile FileChannel channel;
+  private volatile boolean closed;
+
+
+  /**
+   * Opens the given file with the given options. (The options must not create or
+   * truncate the file, since they're reused on reopening.)
+   */
+  ReopenableChannel(File file, OpenOption... options) throws IOException {
+    this.file = file;
+    this.options = options.clone();
+    this.channel = FileChannel.open(file.toPath(), options);
+  }
+
+
+  File file() {
+    return file;
+  }
+
+
+  /**
+   * Runs the given (repeatable) operation against the current channel, and returns
+   * its result.
+   */
+  <R> R run(ChannelOp<R> op) throws IOException {
+    for (FileChannel current = channel; ; current = reopen(current)) {
+      try {
+        return op.apply(current);
+
+      } catch (ClosedByInterruptException cbix) {
+        reopen(current);    // (for the others)
+        throw cbix;
+
+      } catch (ClosedChannelException ccx) {
+        if (closed)
+          throw ccx;
+      }
+    }
+  }
+
+
+  /**
+   * Forces the file's content (not metadata) to storage.
+   */
+  void force() throws IOException {
+    run(channel -> {
+      channel.force(false);
+      return null;
+    });
+  }
+
+
+  /**
+   * Reopens the channel, if it's still the given {@code failed} one, and returns the
+   * current channel.
+   */
+  private synchronized FileChannel reopen(FileChannel failed) throws IOException {
+    if (closed)
+      throw new ClosedChannelException();
+    if (channel == failed && !failed.isOpen())
+      channel = FileChannel.open(file.toPath(), options);
+    return channel;
+  }
+
+
+  synchronized void close() throws IOException {
+    closed = true;
+    channel.close();
+  }
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.canonicalizeHex;
+
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Spreads objects across multiple stores (shards), typically rooted on different
+ * disks, so that I/O is not bound by a single file system. Each object is owned by
+ * exactly one shard, determined by its ID's leading 32 bits: the ID space is divided
+ * into equal, contiguous ranges, in shard order. Since IDs are hashes, objects are
+ * uniformly distributed.
+ * <p>
+ * Because the ranges are contiguous, the IDs of the shards, concatenated in shard order,
+ * are in sorted order. So {@linkplain #streamIds()} is ordered without a merge, and
+ * {@linkplain #streamIds(String)} starts at the shard owning the prefix. Where order
+ * doesn't matter, {@linkplain #streamIdsUnordered()} traverses the shards in parallel.
+ * </p>
+ * <p>
+ * The number of shards is fixed at construction; to change it, copy the objects to a
+ * new set of shards using {@linkplain #reshard(List, int)}.
+ * </p>
+ */
+public class ShardedObjectManager<T> extends ObjectManager<T> {
+
+  private final List<BaseHashedObjectManager<T>> shards;
+
+
+  /**
+   * Creates an instance over the given shards. The shards must use the same hash function
+   * and {@linkplain StoreMetadata#getIdScheme() ID scheme}, and have distinct root
+   * directories. Their order is significant: it must be the same
+   * every time the store is opened.
+   *
+   * @param shards  non-empty list of stores
+   */
+  public ShardedObjectManager(List<? extends BaseHashedObjectManager<T>> shards) {
+    if (shards == null || shards.isEmpty())
+      throw new IllegalArgumentException("empty shards: " + shards);
+
+    this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+
+    String algo = this.shards.get(0).getHashFunction().name();
+    String scheme = idScheme(this.shards.get(0));
+    Set<String> roots = new HashSet<>();
+    for (BaseHashedObjectManager<T> shard : this.shards) {
+      if (!shard.getHashFunction().name().equals(algo))
+        throw new IllegalArgumentException(
+            "hash algo mismatch: " + shard.getHashFunction().name() + " / " + algo);
+      if (!idScheme(shard).equals(scheme))
+        throw new IllegalArgumentException(
+            "ID scheme mismatch: '" + idScheme(shard) + "' / '" + scheme + "'");
+      String root = rootKey(shard);
+      if (!roots.add(root))
+        throw new IllegalArgumentException("duplicate shard " + root);
+    }
+  }
+
+
+  private static String idScheme(BaseHashedObjectManager<?> shard) {
+    return shard.getMetadata().getIdScheme();
+  }
+
+
+  private static String rootKey(BaseHashedObjectManager<?> shard) {
+    return shard.getRootDir().getAbsolutePath() + ":" + shard.getFileExtension();
+  }
+
+
+  /**
+   * Returns the shards, in order.
+   */
+  public List<BaseHashedObjectManager<T>> getShards() {
+    return shards;
+  }
+
+
+  public int getShardCount() {
+    return shards.size();
+  }
+
+
+  /**
+   * Returns the index of the shard that owns the given ID (or ID prefix).
+   */
+  public int shardIndex(String id) {
+    return shardIndex(id, shards.size());
+  }
+
+
+  /**
+   * Returns the shard that owns the given ID.
+   */
+  public BaseHashedObjectManager<T> getShard(String id) {
+    return shards.get(shardIndex(id));
+  }
+
+
+  /**
+   * Maps the leading 32 bits of the given hex to one of {@code n} equal ranges.
+   */
+  static int shardIndex(String hex, int n) {
+    hex = canonicalizeHex(hex);
+    if (hex.length() < 8)
+      hex = (hex + "00000000").substring(0, 8);
+    long lead = Long.parseLong(hex, 0, 8, 16);
+    return (int) ((lead * n) >>> 32);
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The object is encoded and hashed once, and then written to its owning shard.
+   * </p>
+   */
+  @Override
+  public String write(T object) throws UncheckedIOException {
+    BaseHashedObjectManager<T> first = shards.get(0);
+    ByteBuffer buffer = first.toByteBuffer(object);
+    String id = first.signature(buffer);
+    return getShard(id).writeEncoded(object, buffer, id);
+  }
+
+
+  @Override
+  public String getId(T object) {
+    return shards.get(0).getId(object);
+  }
+
+
+  @Override
+  public boolean containsId(String id) {
+    return getShard(id).containsId(id);
+  }
+
+
+  @Override
+  public T read(String id) throws NotFoundException, UncheckedIOException {
+    return getShard(id).read(id);
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The IDs are grouped by shard, and the shards are read concurrently (each
+   * using its own {@linkplain BaseHashedObjectManager#readAll(List) batch read}).
+   * </p>
+   */
+  @Override
+  public List<T> readAll(List<String> ids) throws UncheckedIOException {
+    final int n = shards.size();
+    @SuppressWarnings("unchecked")
+    List<String>[] shardIds = (List<String>[]) new List<?>[n];
+    int[] owners = new int[ids.size()];
+    for (int index = 0; index < ids.size(); ++index) {
+      String id = ids.get(index);
+      int owner = shardIndex(id);
+      owners[index] = owner;
+      if (shardIds[owner] == null)
+        shardIds[owner] = new ArrayList<>();
+      shardIds[owner].add(id);
+    }
+
+    @SuppressWarnings("unchecked")
+    List<T>[] shardObjects = (List<T>[]) new List<?>[n];
+    List<CompletableFuture<Void>> helping = new ArrayList<>();
+    int local = -1;
+    for (int s = 0; s < n; ++s) {
+      if (shardIds[s] == null)
+        continue;
+      if (local == -1) {
+        local = s;  // read by this thread, below
+        continue;
+      }
+      final int shard = s;
+      helping.add(CompletableFuture.runAsync(
+          () -> shardObjects[shard] = shards.get(shard).readAll(shardIds[shard]),
+          BaseHashedObjectManager.DefaultReadExecutor.INSTANCE));
+    }
+
+    RuntimeException rx = null;
+    if (local != -1) {
+      try {
+        shardObjects[local] = shards.get(local).readAll(shardIds[local]);
+      } catch (RuntimeException x) {
+        rx = x;
+      }
+    }
+    for (CompletableFuture<Void> helper : helping) {
+      try {
+        helper.join();
+      } catch (CompletionException cx) {
+        Throwable cause = cx.getCause();
+        if (cause instanceof Error)
+          throw (Error) cause;
+        if (rx == null)
+          rx = cause instanceof RuntimeException ? (RuntimeException) cause : cx;
+      }
+    }
+    if (rx != null)
+      throw rx;
+
+    @SuppressWarnings("unchecked")
+    T[] objects = (T[]) new Object[ids.size()];
+    int[] next = new int[n];
+    for (int index = 0; index < objects.length; ++index) {
+      int owner = owners[index];
+      objects[index] = shardObjects[owner].get(next[owner]++);
+    }
+    return Arrays.asList(objects);
+  }
+
+
+  /**
+   * Returns the first shard's {@linkplain ObjectManager#hasReader() hasReader()}.
+   * (The shards are expected to be configured alike.)
+   */
+  @Override
+  public boolean hasReader() {
+    return shards.get(0).hasReader();
+  }
+
+
+  @Override
+  public Reader getReader(String id) throws NotFoundException, UnsupportedOperationException {
+    return getShard(id).getReader(id);
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The shards are traversed in order, one after the other.
+   * </p>
+   */
+  @Override
+  public Stream<String> streamIds() {
+    return shards.stream().flatMap(ObjectManager::streamIds);
+  }
+
+
+  @Override
+  public Stream<String> streamIds(String idPrefix) {
+    int first = shardIndex(idPrefix);
+    return Stream.concat(
+        shards.get(first).streamIds(idPrefix),
+        shards.subList(first + 1, shards.size()).stream().flatMap(ObjectManager::streamIds));
+  }
+
+
+  /**
+   * Returns a parallel stream of all the IDs in the store, in no particular order.
+   * Each shard is traversed by a different thread.
+   */
+  public Stream<String> streamIdsUnordered() {
+    return shards.parallelStream().unordered().flatMap(ObjectManager::streamIds);
+  }
+
+
+  @Override
+  public T readUsingPrefix(String idPrefix)
+      throws NotFoundException, IllegalArgumentException, UncheckedIOException {
+    if (idPrefix == null || idPrefix.isEmpty())
+      throw new IllegalArgumentException("empty idPrefix " + idPrefix);
+
+    // a short prefix may span more than one shard
+    String prefix = canonicalizeHex(idPrefix);
+    List<String> matches =
+        streamIds(prefix).takeWhile(id -> id.startsWith(prefix)).limit(2).toList();
+    if (matches.isEmpty())
+      throw new NotFoundException(idPrefix + "..");
+    if (matches.size() > 1)
+      throw new IllegalArgumentException("ambiguous (more than 1 result) for prefix " + idPrefix);
+    return read(matches.get(0));
+  }
+
+
+  @Override
+  public Stream<T> streamObjects() {
+    return shards.stream().flatMap(ObjectManager::streamObjects);
+  }
+
+
+  @Override
+  public Stream<T> streamObjects(String idPrefix) {
+    int first = shardIndex(idPrefix);
+    return Stream.concat(
+        shards.get(first).streamObjects(idPrefix),
+        shards.subList(first + 1, shards.size()).stream().flatMap(ObjectManager::streamObjects));
+  }
+
+
+  /**
+   * Returns a parallel stream of all the objects in the store, in no particular order.
+   * Each shard is traversed by a different thread.
+   */
+  public Stream<T> streamObjectsUnordered() {
+    return shards.parallelStream().unordered().flatMap(ObjectManager::streamObjects);
+  }
+
+
+
+  /**
+   * Copies this store's objects to a new set of shards, and returns a sharded store
+   * over them. Objects are copied from each source shard in parallel; objects already
+   * in their target shard (as when resuming an interrupted reshard) are skipped. The
+   * source shards are left as is; once the returned store is in use, they may be
+   * discarded.
+   * <p>
+   * The targets must not share a root directory (and file extension) with any of this
+   * store's shards: a shared shard would retain the objects it no longer owns. Nor
+   * may a target be a {@linkplain FileManager#isMoveOnWrite() move-on-write}
+   * {@linkplain FileManager}, since it would move the source shards' files (which
+   * also leaves an interrupted reshard nothing to resume from).
+   * </p>
+   * <p>
+   * Objects written to this store while resharding may or may not be copied; writes
+   * should be directed to the returned store only after this method returns.
+   * </p>
+   *
+   * @param targets     the new shards (same hash function and ID scheme as this store's)
+   * @param parallelism the maximum number of concurrent copy threads (&ge; 1)
+   *
+   * @return a new instance over {@code targets}
+   */
+  public ShardedObjectManager<T> reshard(
+      List<? extends BaseHashedObjectManager<T>> targets, int parallelism)
+          throws UncheckedIOException {
+
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism " + parallelism);
+
+    ShardedObjectManager<T> resharded = new ShardedObjectManager<>(targets);
+    if (!resharded.shards.get(0).getHashFunction().name().equals(
+        shards.get(0).getHashFunction().name()))
+      throw new IllegalArgumentException("hash algo mismatch");
+    if (!idScheme(resharded.shards.get(0)).equals(idScheme(shards.get(0))))
+      throw new IllegalArgumentException("ID scheme mismatch");
+
+    Set<String> sourceRoots = new HashSet<>();
+    for (BaseHashedObjectManager<T> shard : shards)
+      sourceRoots.add(rootKey(shard));
+    for (BaseHashedObjectManager<T> target : resharded.shards) {
+      if (sourceRoots.contains(rootKey(target)))
+        throw new IllegalArgumentException("target is also a source shard: " + rootKey(target));
+      if (target instanceof FileManager && ((FileManager) target).isMoveOnWrite())
+        throw new IllegalArgumentException("move-on-write target: " + rootKey(target));
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.submit(() ->
+        IntStream.range(0, shards.size()).parallel().forEach(s -> {
+          BaseHashedObjectManager<T> source = shards.get(s);
+          source.streamIds().forEach(id -> {
+            BaseHashedObjectManager<T> target = resharded.getShard(id);
+            if (!target.containsId(id)) {
+              // (the ID is known: only encode)
+              T object = source.read(id);
+              target.writeEncoded(object, target.toByteBuffer(object), id);
+            }
+          });
+        })).join();
+    } finally {
+      pool.shutdown();
+    }
+    return resharded;
+  }
+
+}
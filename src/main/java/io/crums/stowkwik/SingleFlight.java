@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls keyed by the same string (an object ID, typically)
+ * into a single in-flight call. The first caller for a given key (the leader)
+ * runs the call; concurrent callers with the same key wait for, and share, the
+ * leader's result (or exception). Once the leader returns, the key is forgotten,
+ * so a subsequent call runs afresh.
+ * <p>
+ * The in-flight table is striped so that calls with different keys seldom
+ * contend on the same lock.
+ * </p>
+ *
+ * @param <V> the result type
+ */
+final class SingleFlight<V> {
+
+  private final static int DEFAULT_STRIPES = 64;
+
+
+  private final Stripe<V>[] stripes;
+
+
+  SingleFlight() {
+    this(DEFAULT_STRIPES);
+  }
+
+  /**
+   * @param stripes number of lock stripes (a power of 2)
+   */
+  @SuppressWarnings("unchecked")
+  SingleFlight(int stripes) {
+    if (stripes < 1 || Integer.bitCount(stripes) != 1)
+      throw new IllegalArgumentException("stripes " + stripes);
+    this.stripes = (Stripe<V>[]) new Stripe<?>[stripes];
+    for (int index = stripes; index-- > 0; )
+      this.stripes[index] = new Stripe<>();
+  }
+
+
+  /**
+   * Runs the given {@code call} unless another call with the same {@code key}
+   * is in flight, in which case its result is awaited and returned instead.
+   *
+   * @param key   the coalescing key
+   * @param call  the call (invoked at most once, by this thread)
+   */
+  V run(String key, Supplier<V> call) {
+    Stripe<V> stripe = stripes[key.hashCode() & (stripes.length - 1)];
+
+    CompletableFuture<V> flight;
+    boolean leader;
+    synchronized (stripe) {
+      flight = stripe.inFlight.get(key);
+      leader = flight == null;
+      if (leader) {
+        flight = new CompletableFuture<>();
+        stripe.inFlight.put(key, flight);
+      }
+    }
+
+    if (!leader)
+      return await(flight);
+
+    try {
+      V result = call.get();
+      flight.complete(result);
+      return result;
+
+    } catch (RuntimeException | Error x) {
+      flight.completeExceptionally(x);
+      throw x;
+
+    } finally {
+      synchronized (stripe) {
+        stripe.inFlight.remove(key);
+      }
+    }
+  }
+
+
+  /**
+   * Returns the number of calls currently in flight. (Diagnostic.)
+   */
+  int inFlight() {
+    int count = 0;
+    for (Stripe<V> stripe : stripes) {
+      synchronized (stripe) {
+        count += stripe.inFlight.size();
+      }
+    }
+    return count;
+  }
+
+
+  private V await(CompletableFuture<V> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException cx) {
+      Throwable cause = cx.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw cx;
+    }
+  }
+
+
+  private final static class Stripe<V> {
+    final Map<String, CompletableFuture<V>> inFlight = new HashMap<>();
+  }
+
+}
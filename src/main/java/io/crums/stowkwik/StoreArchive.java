@@ -0,0 +1,178 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.hexToBytes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import io.crums.stowkwik.io.Channels;
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * Single-file, immutable archive of a store. Meant for distributing read-only
+ * datasets: one file transfers (and scans) much faster than millions of small ones.
+ * Archives are written by {@linkplain #export(BaseHashedObjectManager, File) export},
+ * and read thru an {@linkplain ArchiveObjectManager}.
+ * <h2>Format</h2>
+ * <p>
+ * All numbers are big endian.
+ * </p>
+ * <pre>
+ *   HEADER (64 bytes):
+ *     magic                 8 bytes   "STOWARC1"
+ *     version               4 bytes
+ *     ID length             4 bytes   (digest length)
+ *     object count          8 bytes
+ *     index offset          8 bytes   (= 64)
+ *     data offset           8 bytes
+ *     max object length     4 bytes
+ *     hash algo            20 bytes   ASCII, zero padded
+ *
+ *   INDEX (object count entries, sorted by ID, unsigned):
+ *     ID                    ID length bytes
+ *     object offset         8 bytes   (relative to data offset)
+ *     object length         4 bytes
+ *
+ *   DATA:
+ *     the objects' stored contents, in ID order (no delimiters)
+ * </pre>
+ */
+public final class StoreArchive {
+
+  private StoreArchive() {  }
+
+  public final static int VERSION = 1;
+
+  final static byte[] MAGIC = "STOWARC1".getBytes(StandardCharsets.US_ASCII);
+
+  final static int HEADER_BYTES = 64;
+
+  /** Index entry bytes, after the ID. */
+  final static int INDEX_LOC_BYTES = 12;
+
+  final static int MAX_ALGO_BYTES = 20;
+
+  /**
+   * Maximum size of a single object in an archive.
+   */
+  public final static int MAX_OBJECT_BYTES = 1 << 30;
+
+
+
+  /**
+   * Exports the given store to a new archive file. The store should not be modified
+   * while it's being exported. The archive is first written to a temporary file
+   * (alongside the data region, in another temporary file), and then renamed.
+   *
+   * @param store   the store (whose files contain the objects' encodings, and whose
+   *                IDs are simply the hashes of those encodings)
+   * @param archive the archive file (must not exist)
+   *
+   * @return the number of objects archived
+   */
+  public static long export(BaseHashedObjectManager<?> store, File archive)
+      throws IllegalArgumentException, UncheckedIOException {
+
+    if (archive.exists())
+      throw new IllegalArgumentException("archive already exists: " + archive);
+    if (!store.idScheme().isEmpty())
+      throw new IllegalArgumentException(
+          "unsupported ID scheme '" + store.idScheme() + "': " + store.getRootDir());
+
+    final String algo = store.getHashFunction().name();
+    final byte[] algoBytes = algo.getBytes(StandardCharsets.US_ASCII);
+    if (algoBytes.length > MAX_ALGO_BYTES)
+      throw new IllegalArgumentException("hash algo name too long: " + algo);
+    final int idLength = store.getHashFunction().digestLength();
+
+    File dataTmp = new File(archive.getPath() + ".data.tmp");
+    File tmp = new File(archive.getPath() + ".tmp");
+
+    try {
+      ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+      DataOutputStream index = new DataOutputStream(indexBytes);
+      long count = 0;
+      long pos = 0;
+      int maxLength = 0;
+
+      try (FileChannel data = FileChannel.open(
+              dataTmp.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+           Stream<String> ids = store.streamIds()) {
+
+        String last = null;
+        for (Iterator<String> i = ids.iterator(); i.hasNext(); ) {
+          String id = i.next();
+          if (id.equals(last))
+            continue;   // (the same object at 2 depths in the tree)
+          last = id;
+
+          long length = store.transferTo(id, data);
+          if (length > MAX_OBJECT_BYTES)
+            throw new IllegalArgumentException(
+                "object " + id + " too big for archive (" + length + " bytes)");
+
+          index.write(hexToBytes(id));
+          index.writeLong(pos);
+          index.writeInt((int) length);
+
+          pos += length;
+          maxLength = Math.max(maxLength, (int) length);
+          ++count;
+          if (indexBytes.size() > Integer.MAX_VALUE - HEADER_BYTES - idLength - INDEX_LOC_BYTES)
+            throw new IllegalArgumentException("too many objects to archive: " + count);
+        }
+        data.force(false);
+      }
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      header.put(MAGIC).putInt(VERSION).putInt(idLength).putLong(count)
+          .putLong(HEADER_BYTES).putLong(HEADER_BYTES + indexBytes.size())
+          .putInt(maxLength).put(algoBytes);
+      header.clear();
+
+      try (FileChannel out = FileChannel.open(
+              tmp.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+           FileChannel data = FileChannel.open(dataTmp.toPath(), StandardOpenOption.READ)) {
+
+        Channels.writeRemaining(out, header);
+        Channels.writeRemaining(out, ByteBuffer.wrap(indexBytes.toByteArray()));
+        long dataStart = out.position();
+        for (long copied = 0; copied < pos; ) {
+          long bytes = data.transferTo(copied, pos - copied, out);
+          if (bytes <= 0)
+            throw new CorruptionException("failed to copy data region from " + dataTmp);
+          copied += bytes;
+          out.position(dataStart + copied);
+        }
+        out.force(false);
+      }
+      Files.move(tmp.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      return count;
+
+    } catch (IOException iox) {
+      tmp.delete();
+      throw new UncheckedIOException("on exporting " + store.getRootDir() + " to " + archive, iox);
+    } catch (RuntimeException x) {
+      tmp.delete();
+      throw x;
+    } finally {
+      dataTmp.delete();
+    }
+  }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Properties;
+
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * A store's self-description, persisted in a small properties file under its root
+ * directory. Its purpose is to make opening an existing store cheap: instead of
+ * sampling (reading and rehashing) an existing object to check the store's hash
+ * algorithm, and priming the root directory, opening a store that has this file
+ * costs a single file read.
+ * <p>
+ * Since multiple stores (with different extensions) may share the same root
+ * directory, the metadata file's name includes the store's extension. E.g. for
+ * extension {@code .obj}, the file is {@code stow.obj.meta}.
+ * </p>
+ *
+ * @see BaseHashedObjectManager#verify()
+ */
+public final class StoreMetadata {
+
+  /**
+   * Metadata filename prefix.
+   */
+  public final static String FILE_PREFIX = "stow";
+  /**
+   * Metadata filename extension.
+   */
+  public final static String FILE_EXT = ".meta";
+
+  /**
+   * Current layout version (the <em>nest-more-as-you-grow</em> hex path layout).
+   */
+  public final static int LAYOUT_VERSION = 1;
+
+
+  final static String HASH = "hash";
+  final static String EXT = "ext";
+  final static String LAYOUT = "layout";
+  final static String MAX_FILES_PER_DIR = "maxFilesPerDir";
+  final static String ID_SCHEME = "idScheme";
+  final static String DICTIONARY = "dictionary";
+
+
+  private final String hashAlgo;
+  private final String ext;
+  private final int layoutVersion;
+  private final int maxFilesPerDir;
+  private final String idScheme;
+  private final String dictionary;
+
+
+  /**
+   * Creates a current-layout instance.
+   *
+   * @param hashAlgo        the {@linkplain HashFunction#name() hash function name}
+   * @param ext             the store's filename extension
+   * @param maxFilesPerDir  the hex path branching threshold
+   * @param idScheme        ID scheme parameters, if IDs are not straight hashes of an
+   *                        object's encoding; the empty string, otherwise
+   */
+  public StoreMetadata(String hashAlgo, String ext, int maxFilesPerDir, String idScheme) {
+    this(hashAlgo, ext, LAYOUT_VERSION, maxFilesPerDir, idScheme, "");
+  }
+
+
+  private StoreMetadata(
+      String hashAlgo, String ext, int layoutVersion, int maxFilesPerDir, String idScheme,
+      String dictionary) {
+    this.hashAlgo = Objects.requireNonNull(hashAlgo, "hashAlgo");
+    this.ext = Objects.requireNonNull(ext, "ext");
+    this.layoutVersion = layoutVersion;
+    this.maxFilesPerDir = maxFilesPerDir;
+    this.idScheme = idScheme == null ? "" : idScheme;
+    this.dictionary = dictionary == null ? "" : dictionary;
+  }
+
+
+  /**
+   * Returns a copy of this instance with the given current compression dictionary.
+   *
+   * @param dictionary  the dictionary's (hex) ID, or the empty string, if none
+   *
+   * @see CompressingObjectManager
+   */
+  public StoreMetadata withDictionary(String dictionary) {
+    return new StoreMetadata(hashAlgo, ext, layoutVersion, maxFilesPerDir, idScheme, dictionary);
+  }
+
+
+  public String getHashAlgo() {
+    return hashAlgo;
+  }
+
+  public String getExtension() {
+    return ext;
+  }
+
+  public int getLayoutVersion() {
+    return layoutVersion;
+  }
+
+  public int getMaxFilesPerDir() {
+    return maxFilesPerDir;
+  }
+
+  /**
+   * Returns the ID scheme parameters, or the empty string if IDs are
+   * straight hashes.
+   */
+  public String getIdScheme() {
+    return idScheme;
+  }
+
+  /**
+   * Returns the (hex) ID of the store's current compression dictionary, or the empty
+   * string if there is none. Unlike the ID scheme, this may change over the store's
+   * life, and is not checked on opening.
+   */
+  public String getDictionary() {
+    return dictionary;
+  }
+
+
+  /**
+   * Checks that a store with the given hash algorithm and ID scheme can
+   * be opened under this metadata.
+   *
+   * @throws IllegalArgumentException if there's a mismatch
+   */
+  public void checkCompatible(String hashAlgo, String idScheme) throws IllegalArgumentException {
+    if (layoutVersion > LAYOUT_VERSION)
+      throw new IllegalArgumentException(
+          "unsupported layout version " + layoutVersion + " (ext " + ext + ")");
+    if (!this.hashAlgo.equalsIgnoreCase(hashAlgo))
+      throw new IllegalArgumentException(
+          "hash algo " + hashAlgo + " does not match that recorded for existing data (" +
+          this.hashAlgo + ")");
+    if (!this.idScheme.equals(idScheme == null ? "" : idScheme))
+      throw new IllegalArgumentException(
+          "ID scheme '" + idScheme + "' does not match that recorded for existing data ('" +
+          this.idScheme + "')");
+  }
+
+
+  /**
+   * Writes this instance to its file under the given root directory. The file is
+   * replaced atomically, where supported.
+   */
+  public void save(File dir) throws UncheckedIOException {
+    Properties props = new Properties();
+    props.setProperty(HASH, hashAlgo);
+    props.setProperty(EXT, ext);
+    props.setProperty(LAYOUT, Integer.toString(layoutVersion));
+    props.setProperty(MAX_FILES_PER_DIR, Integer.toString(maxFilesPerDir));
+    if (!idScheme.isEmpty())
+      props.setProperty(ID_SCHEME, idScheme);
+    if (!dictionary.isEmpty())
+      props.setProperty(DICTIONARY, dictionary);
+
+    File file = metadataFile(dir, ext);
+    File tmp = new File(dir, file.getName() + ".tmp" + ProcessHandle.current().pid());
+    try {
+      try (OutputStream out = new FileOutputStream(tmp)) {
+        props.store(out, "stowkwik store metadata");
+      }
+      try {
+        Files.move(
+            tmp.toPath(), file.toPath(),
+            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException amnsx) {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException iox) {
+      tmp.delete();
+      throw new UncheckedIOException("on writing " + file, iox);
+    }
+  }
+
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this)
+      return true;
+    if (!(o instanceof StoreMetadata))
+      return false;
+    StoreMetadata other = (StoreMetadata) o;
+    return
+        hashAlgo.equals(other.hashAlgo) && ext.equals(other.ext) &&
+        layoutVersion == other.layoutVersion && maxFilesPerDir == other.maxFilesPerDir &&
+        idScheme.equals(other.idScheme) && dictionary.equals(other.dictionary);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(hashAlgo, ext, layoutVersion, maxFilesPerDir, idScheme, dictionary);
+  }
+
+  @Override
+  public String toString() {
+    return
+        "[" + HASH + "=" + hashAlgo + ", " + EXT + "=" + ext + ", " + LAYOUT + "=" + layoutVersion +
+        ", " + MAX_FILES_PER_DIR + "=" + maxFilesPerDir +
+        (idScheme.isEmpty() ? "" : ", " + ID_SCHEME + "=" + idScheme) +
+        (dictionary.isEmpty() ? "" : ", " + DICTIONARY + "=" + dictionary) + "]";
+  }
+
+
+
+  // ---S-T-A-T-I-C---
+
+
+  /**
+   * Returns the path to the metadata file for a store with the given root directory
+   * and extension. The file may or may not exist.
+   */
+  public static File metadataFile(File dir, String ext) {
+    if (ext == null || ext.isEmpty())
+      throw new IllegalArgumentException("empty ext: '" + ext + "'");
+    return new File(dir, FILE_PREFIX + ext + FILE_EXT);
+  }
+
+
+  /**
+   * Loads and returns the metadata for the store with the given root directory and
+   * extension, or {@code null} if there is none.
+   *
+   * @throws CorruptionException if the file is malformed
+   */
+  public static StoreMetadata load(File dir, String ext)
+      throws UncheckedIOException, CorruptionException {
+
+    File file = metadataFile(dir, ext);
+    if (!file.isFile())
+      return null;
+
+    Properties props = new Properties();
+    try (InputStream in = new FileInputStream(file)) {
+      props.load(in);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on reading " + file, iox);
+    }
+
+    String hashAlgo = props.getProperty(HASH);
+    String recordedExt = props.getProperty(EXT);
+    if (hashAlgo == null || hashAlgo.isEmpty() || !ext.equals(recordedExt))
+      throw new CorruptionException(file.toString());
+    try {
+      int layout = Integer.parseInt(props.getProperty(LAYOUT, "-1"));
+      int maxFilesPerDir = Integer.parseInt(props.getProperty(MAX_FILES_PER_DIR, "-1"));
+      if (layout < 1 || maxFilesPerDir < 256)
+        throw new CorruptionException(file.toString());
+      return new StoreMetadata(
+          hashAlgo, recordedExt, layout, maxFilesPerDir,
+          props.getProperty(ID_SCHEME, ""), props.getProperty(DICTIONARY, ""));
+
+    } catch (NumberFormatException nfx) {
+      throw new CorruptionException(file.toString(), nfx);
+    }
+  }
+
+}
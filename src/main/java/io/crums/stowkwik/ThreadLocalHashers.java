@@ -0,0 +1,44 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import io.crums.stowkwik.HashFunction.Hasher;
+
+/**
+ * Per-thread, reusable {@linkplain Hasher}s. Testing shows about a 10% improvement in
+ * speed when reusing digests.
+ * <p>
+ * Hashers are keyed by {@linkplain HashFunction} instance (not name: 2 functions may
+ * share a name, but not their hashers). Keys are weakly referenced, so that a thread
+ * does not pin the functions of stores no longer in use.
+ * </p>
+ */
+final class ThreadLocalHashers {
+
+  private ThreadLocalHashers() {  }   // static only
+
+
+  private final static ThreadLocal<Map<HashFunction, Hasher>> hashers =
+      ThreadLocal.withInitial(() -> new WeakHashMap<>(4));
+
+
+  /**
+   * Returns this thread's (reset) hasher for the given function.
+   */
+  static Hasher get(HashFunction function) {
+    Map<HashFunction, Hasher> map = hashers.get();
+    Hasher hasher = map.get(function);
+    if (hasher == null) {
+      hasher = function.newHasher();
+      map.put(function, hasher);
+    } else
+      hasher.reset();
+    return hasher;
+  }
+
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static io.crums.util.IntegralStrings.canonicalizeHex;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.crums.stowkwik.log.PlainTextWriteLog;
+import io.crums.stowkwik.log.PlainTextWriteLogReader;
+import io.crums.stowkwik.log.PlainTextWriteLogReader.LogEntry;
+import io.crums.stowkwik.log.WriteLog;
+import io.crums.stowkwik.log.WriteLogs;
+
+/**
+ * A 2-tier store: new objects are written to a <em>hot</em> store (on fast storage), and
+ * later {@linkplain #migrateOlderThan(Instant) migrated} by age to a <em>cold</em> store
+ * (e.g. a {@linkplain PackedObjectManager} on a slower mount). Reads go to whichever tier
+ * holds the object.
+ * <p>
+ * Writes to the hot tier are recorded in its plain text {@linkplain WriteLogs write log},
+ * whose timestamps determine an object's age. (Objects already in the hot store but not
+ * in its write log are never migrated.)
+ * </p>
+ * <h2>Membership</h2>
+ * <p>
+ * The IDs of the hot tier's objects are kept in memory (they're loaded on construction),
+ * so a lookup goes straight to the tier that holds the object: the cold tier is only
+ * consulted for objects not in the hot tier, and the hot tier is never probed for cold
+ * objects. Since the hot tier is meant to hold only recent objects, this membership set
+ * is small compared to the store.
+ * </p>
+ * <p>
+ * Migration copies an object to the cold tier before removing it from the hot one, so
+ * that it's always readable; a read that races a migration is retried in the cold tier.
+ * </p>
+ */
+public class TieredObjectManager<T> extends ObjectManager<T> implements Closeable {
+
+  private final BaseHashedObjectManager<T> hot;
+  private final ObjectManager<T> cold;
+  private final File logFile;
+  private final WriteLog log;
+  private final Set<String> hotIds = ConcurrentHashMap.newKeySet();
+
+  private final Object migrateLock = new Object();
+  /**
+   * The number of log entries already scanned for migration (guarded by {@code migrateLock}).
+   */
+  private int migratedEntries;
+
+
+  /**
+   * Creates an instance over the given tiers. Both tiers must derive IDs the same way
+   * (same hash function and encoding).
+   *
+   * @param hot   the hot store, whose write log is opened (or created) on construction
+   * @param cold  the cold store
+   */
+  public TieredObjectManager(BaseHashedObjectManager<T> hot, ObjectManager<T> cold)
+      throws UncheckedIOException {
+    this.hot = Objects.requireNonNull(hot, "hot");
+    this.cold = Objects.requireNonNull(cold, "cold");
+    if (hot == cold)
+      throw new IllegalArgumentException("hot and cold tiers are the same instance");
+
+    this.logFile = WriteLogs.declarePlainTextLogFile(hot.getRootDir(), hot.getFileExtension());
+    try (Stream<String> ids = hot.streamIds()) {
+      ids.forEach(hotIds::add);
+    }
+    this.log = WriteLogs.newPlainTextWriteLog(hot);
+  }
+
+
+  public BaseHashedObjectManager<T> getHotTier() {
+    return hot;
+  }
+
+
+  public ObjectManager<T> getColdTier() {
+    return cold;
+  }
+
+
+  /**
+   * Returns the number of objects in the hot tier.
+   */
+  public int hotCount() {
+    return hotIds.size();
+  }
+
+
+  /**
+   * Determines whether the object with the given ID is in the hot tier.
+   */
+  public boolean isHot(String id) {
+    return hotIds.contains(canonicalizeHex(id));
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * New objects are written to the hot tier, and logged. An object already in
+   * either tier is not written again (in particular, a cold object is not re-heated).
+   * </p>
+   */
+  @Override
+  public String write(T object) throws UncheckedIOException {
+    ByteBuffer buffer = hot.toByteBuffer(object);
+    String id = hot.signature(buffer);
+    if (hotIds.contains(id) || cold.containsId(id))
+      return id;
+
+    hot.writeEncoded(object, buffer, id);
+    if (hotIds.add(id))
+      log.objectWritten(id);
+    return id;
+  }
+
+
+  @Override
+  public String getId(T object) {
+    return hot.getId(object);
+  }
+
+
+  @Override
+  public boolean containsId(String id) {
+    return isHot(id) || cold.containsId(id);
+  }
+
+
+  @Override
+  public T read(String id) throws NotFoundException, UncheckedIOException {
+    String hex = canonicalizeHex(id);
+    if (hotIds.contains(hex)) {
+      try {
+        return hot.read(hex);
+      } catch (NotFoundException migrated) {  }
+    }
+    return cold.read(hex);
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The IDs are partitioned by tier, and each tier is read in a single batch.
+   * </p>
+   */
+  @Override
+  public List<T> readAll(List<String> ids) throws UncheckedIOException {
+    final int count = ids.size();
+    List<String> hotBatch = new ArrayList<>();
+    List<Integer> hotIndexes = new ArrayList<>();
+    List<String> coldBatch = new ArrayList<>();
+    List<Integer> coldIndexes = new ArrayList<>();
+    for (int index = 0; index < count; ++index) {
+      String hex = canonicalizeHex(ids.get(index));
+      if (hotIds.contains(hex)) {
+        hotBatch.add(hex);
+        hotIndexes.add(index);
+      } else {
+        coldBatch.add(hex);
+        coldIndexes.add(index);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    T[] objects = (T[]) new Object[count];
+    if (!hotBatch.isEmpty()) {
+      List<T> hotObjects = hot.readAll(hotBatch);
+      for (int index = 0; index < hotObjects.size(); ++index) {
+        T object = hotObjects.get(index);
+        if (object == null) {
+          // migrated since
+          coldBatch.add(hotBatch.get(index));
+          coldIndexes.add(hotIndexes.get(index));
+        } else
+          objects[hotIndexes.get(index)] = object;
+      }
+    }
+    if (!coldBatch.isEmpty()) {
+      List<T> coldObjects = cold.readAll(coldBatch);
+      for (int index = 0; index < coldObjects.size(); ++index)
+        objects[coldIndexes.get(index)] = coldObjects.get(index);
+    }
+    return Arrays.asList(objects);
+  }
+
+
+
+  /**
+   * Migrates objects written more than the given {@code age} ago to the cold tier.
+   *
+   * @return the number of objects migrated
+   * @see #migrateOlderThan(Instant)
+   */
+  public int migrate(Duration age) throws UncheckedIOException {
+    return migrateOlderThan(Instant.now().minus(age));
+  }
+
+
+  /**
+   * Migrates objects (logged as) written before the given {@code cutoff} to the cold
+   * tier. Each object is first written to the cold tier, then removed from the hot
+   * one. Since the write log is in time order, only the log's prefix up to the
+   * {@code cutoff} is read; and since entries in that prefix are done with, a
+   * following invocation resumes where this one left off (so only the first in a
+   * series of migrations reads the log from its beginning).
+   *
+   * @param cutoff  objects written before this instant (at second resolution) are migrated
+   *
+   * @return the number of objects migrated
+   */
+  public int migrateOlderThan(Instant cutoff) throws UncheckedIOException {
+    synchronized (migrateLock) {
+      if (!logFile.isFile() || hotIds.isEmpty())
+        return 0;
+
+      List<String> old;
+      int end;
+      try (PlainTextWriteLogReader reader = new PlainTextWriteLogReader(logFile)) {
+        LogEntry key = PlainTextWriteLogReader.searchKey(PlainTextWriteLog.timestamp(cutoff));
+        end = Collections.binarySearch(reader, key);
+        if (end < 0)
+          end = -1 - end;
+        else {
+          // (binary search may land anywhere in a run of equal timestamps)
+          while (end > 0 && reader.get(end - 1).compareTo(key) == 0)
+            --end;
+        }
+        if (end <= migratedEntries)
+          return 0;
+        old = reader.subList(migratedEntries, end).stream()
+            .map(e -> e.hex).filter(hotIds::contains).collect(Collectors.toList());
+      } catch (IOException iox) {
+        throw new UncheckedIOException("on reading " + logFile, iox);
+      }
+
+      int count = 0;
+      for (String id : old) {
+        if (!hotIds.contains(id))
+          continue;  // (logged twice)
+        T object;
+        try {
+          object = hot.read(id);
+        } catch (NotFoundException gone) {
+          hotIds.remove(id);
+          continue;
+        }
+        String coldId = cold.write(object);
+        if (!id.equals(coldId))
+          throw new IllegalStateException(
+              "cold tier ID " + coldId + " does not match hot tier ID " + id);
+        hotIds.remove(id);
+        hot.remove(id);
+        ++count;
+      }
+      migratedEntries = end;
+      return count;
+    }
+  }
+
+
+
+  @Override
+  public Stream<String> streamIds() {
+    return MergedIds.stream(List.of(hot.streamIds().iterator(), cold.streamIds().iterator()));
+  }
+
+
+  @Override
+  public Stream<String> streamIds(String idPrefix) {
+    return MergedIds.stream(
+        List.of(hot.streamIds(idPrefix).iterator(), cold.streamIds(idPrefix).iterator()));
+  }
+
+
+  @Override
+  public T readUsingPrefix(String idPrefix)
+      throws NotFoundException, IllegalArgumentException, UncheckedIOException {
+    if (idPrefix == null || idPrefix.isEmpty())
+      throw new IllegalArgumentException("empty idPrefix " + idPrefix);
+
+    String prefix = canonicalizeHex(idPrefix);
+    List<String> matches =
+        streamIds(prefix).takeWhile(id -> id.startsWith(prefix)).limit(2).toList();
+    if (matches.isEmpty())
+      throw new NotFoundException(idPrefix + "..");
+    if (matches.size() > 1)
+      throw new IllegalArgumentException("ambiguous (more than 1 result) for prefix " + idPrefix);
+    return read(matches.get(0));
+  }
+
+
+  @Override
+  public Stream<T> streamObjects() {
+    return streamIds().map(this::read);
+  }
+
+
+  @Override
+  public Stream<T> streamObjects(String idPrefix) {
+    return streamIds(idPrefix).map(this::read);
+  }
+
+
+  /**
+   * Closes the hot tier's write log. The tiers themselves are not closed.
+   */
+  @Override
+  public void close() throws IOException {
+    log.close();
+  }
+
+}
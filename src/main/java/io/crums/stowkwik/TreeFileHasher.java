@@ -0,0 +1,224 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.crums.stowkwik.HashFunction.Hasher;
+
+/**
+ * Computes the Merkle tree hash of a file's contents, hashing its fixed-size chunks
+ * in parallel. The tree is shaped as in RFC 6962: the contents are divided into
+ * {@code n} chunks, each chunk is a leaf, and
+ * <pre>
+ *   leaf(chunk)     = H(0x00 || chunk)
+ *   tree(c[0..1))   = leaf(c[0])
+ *   tree(c[0..n))   = H(0x01 || tree(c[0..k)) || tree(c[k..n)))
+ * </pre>
+ * where {@code k} is the largest power of 2 less than {@code n}. The result is
+ * independent of the degree of parallelism. Chunks are read using positional reads
+ * on a shared {@code FileChannel}, in a fork-join pool. Since the reads block, the
+ * pool is not the common pool, by default.
+ *
+ * @see FileManager#FileManager(File, String, HashFunction, boolean, int)
+ */
+class TreeFileHasher {
+
+  /**
+   * Minimum chunk size. (4 KiB.)
+   */
+  final static int MIN_CHUNK_SIZE = 4 * 1024;
+
+  private final static byte LEAF_PREFIX = 0;
+  private final static byte NODE_PREFIX = 1;
+
+  private final static int READ_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Per-thread read buffers. Heap buffers, as in {@linkplain FileManager}: hashers
+   * digest these in place (direct buffers are first copied into a temp array).
+   */
+  private final static ThreadLocal<ByteBuffer> readBuffers =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocate(READ_BUFFER_SIZE));
+
+
+  private final HashFunction hashFunction;
+  private final int chunkSize;
+  private volatile ForkJoinPool pool;
+
+
+  /**
+   * Creates an instance using the {@linkplain DefaultPool default pool}.
+   *
+   * @param hashFunction the hash function
+   * @param chunkSize    the leaf chunk size (&ge; {@linkplain #MIN_CHUNK_SIZE})
+   */
+  TreeFileHasher(HashFunction hashFunction, int chunkSize) {
+    this(hashFunction, chunkSize, null);
+  }
+
+
+  /**
+   * @param pool the pool chunks are hashed in; or {@code null}, for the default
+   */
+  TreeFileHasher(HashFunction hashFunction, int chunkSize, ForkJoinPool pool) {
+    this.hashFunction = hashFunction;
+    this.chunkSize = chunkSize;
+    if (hashFunction == null)
+      throw new IllegalArgumentException("null hashFunction");
+    if (chunkSize < MIN_CHUNK_SIZE)
+      throw new IllegalArgumentException("chunkSize " + chunkSize);
+    setPool(pool);
+  }
+
+
+  int chunkSize() {
+    return chunkSize;
+  }
+
+
+  ForkJoinPool getPool() {
+    return pool;
+  }
+
+
+  /**
+   * @param pool the pool chunks are hashed in; or {@code null}, for the default
+   */
+  void setPool(ForkJoinPool pool) {
+    this.pool = pool == null ? DefaultPool.INSTANCE : pool;
+  }
+
+
+  /**
+   * Returns the Merkle tree hash of the given file's contents.
+   */
+  byte[] hash(File file) throws UncheckedIOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+      long size = channel.size();
+      long chunks = Math.max(1, (size + chunkSize - 1) / chunkSize);
+
+      TreeTask root = new TreeTask(channel, size, 0, chunks);
+
+      return chunks == 1 ? root.compute() : pool.invoke(root);
+
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on hashing " + file, iox);
+    } catch (UncheckedIOException uiox) {
+      throw new UncheckedIOException("on hashing " + file, uiox.getCause());
+    }
+  }
+
+
+
+  private Hasher hasher() {
+    return ThreadLocalHashers.get(hashFunction);
+  }
+
+
+  private byte[] leaf(FileChannel channel, long size, long chunk) throws IOException {
+    Hasher hasher = hasher();
+    hasher.update(new byte[] { LEAF_PREFIX }, 0, 1);
+
+    long pos = chunk * chunkSize;
+    long end = Math.min(size, pos + chunkSize);
+
+    ByteBuffer buffer = readBuffers.get();
+    while (pos < end) {
+      buffer.clear();
+      if (end - pos < buffer.capacity())
+        buffer.limit((int) (end - pos));
+      int bytes = channel.read(buffer, pos);
+      if (bytes == -1)
+        throw new IOException("file truncated while hashing at offset " + pos);
+      pos += bytes;
+      buffer.flip();
+      hasher.update(buffer);
+    }
+    return hasher.digest();
+  }
+
+
+  private byte[] node(byte[] left, byte[] right) {
+    Hasher hasher = hasher();
+    hasher.update(new byte[] { NODE_PREFIX }, 0, 1);
+    hasher.update(left, 0, left.length);
+    hasher.update(right, 0, right.length);
+    return hasher.digest();
+  }
+
+
+
+  /**
+   * Lazily created default pool, shared by all instances. Bounded by the number of
+   * processors, with daemon threads.
+   */
+  static class DefaultPool {
+
+    final static ForkJoinPool INSTANCE = new ForkJoinPool(
+        Runtime.getRuntime().availableProcessors(),
+        new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+          @Override
+          public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread =
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("stowkwik-hash-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        },
+        null, false);
+  }
+
+
+
+  @SuppressWarnings("serial")
+  private class TreeTask extends RecursiveTask<byte[]> {
+
+    private final FileChannel channel;
+    private final long size;
+    private final long lo;
+    private final long hi;
+
+    TreeTask(FileChannel channel, long size, long lo, long hi) {
+      this.channel = channel;
+      this.size = size;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected byte[] compute() {
+      long count = hi - lo;
+      if (count == 1) {
+        try {
+          return leaf(channel, size, lo);
+        } catch (IOException iox) {
+          throw new UncheckedIOException(iox);
+        }
+      }
+
+      long k = Long.highestOneBit(count - 1);
+      TreeTask left = new TreeTask(channel, size, lo, lo + k);
+      TreeTask right = new TreeTask(channel, size, lo + k, hi);
+      right.fork();
+      byte[] l = left.compute();
+      byte[] r = right.join();
+      return node(l, r);
+    }
+  }
+
+}
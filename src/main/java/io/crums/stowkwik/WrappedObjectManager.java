@@ -5,6 +5,7 @@ package io.crums.stowkwik;
 
 import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Stream;
 
@@ -47,6 +48,12 @@ public class WrappedObjectManager<T> extends ObjectManager<T> {
   }
 
 
+  @Override
+  public List<T> readAll(List<String> ids) throws UncheckedIOException {
+    return base.readAll(ids);
+  }
+
+
   @Override
   public boolean hasReader() {
     return base.hasReader();
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.io;
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small, lock-striped LRU cache bounded by entry count and (optionally) by entry age.
+ * Each stripe is an access-ordered {@code LinkedHashMap} guarded by its own lock, so
+ * the count bound is enforced per stripe (and is therefore approximate in aggregate).
+ * Expired entries are evicted lazily, on lookup.
+ * <p>
+ * Hit, miss and eviction counts are maintained for diagnostics.
+ * </p>
+ *
+ * @param <K> key type (with value-based {@code equals} and a well distributed {@code hashCode})
+ * @param <V> value type
+ */
+public class BoundedCache<K, V> {
+
+  private final static int MAX_STRIPES = 16;
+
+
+  private final Stripe<K, V>[] stripes;
+  private final long maxAgeNanos;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+
+  /**
+   * Creates an instance bounded only by count.
+   *
+   * @param maxEntries the maximum number of entries (&ge; 1)
+   */
+  public BoundedCache(int maxEntries) {
+    this(maxEntries, 0);
+  }
+
+  /**
+   * @param maxEntries   the maximum number of entries (&ge; 1)
+   * @param maxAgeMillis the maximum age of an entry in milliseconds; if zero, then
+   *                     entries do not expire
+   */
+  @SuppressWarnings("unchecked")
+  public BoundedCache(int maxEntries, long maxAgeMillis) {
+    if (maxEntries < 1)
+      throw new IllegalArgumentException("maxEntries " + maxEntries);
+    if (maxAgeMillis < 0)
+      throw new IllegalArgumentException("maxAgeMillis " + maxAgeMillis);
+
+    this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+
+    // keep at least 16 entries per stripe
+    int count = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, maxEntries / 16)));
+    int perStripe = (maxEntries + count - 1) / count;
+
+    this.stripes = (Stripe<K, V>[]) new Stripe<?, ?>[count];
+    for (int index = count; index-- > 0; )
+      stripes[index] = new Stripe<>(perStripe);
+  }
+
+
+  /**
+   * Returns the cached value, or {@code null} if not cached (or expired).
+   */
+  public V get(K key) {
+    Stripe<K, V> stripe = stripe(key);
+    V value;
+    synchronized (stripe) {
+      Node<V> node = stripe.map.get(key);
+      if (node == null)
+        value = null;
+      else if (isExpired(node)) {
+        stripe.map.remove(key);
+        evictions.increment();
+        value = null;
+      } else
+        value = node.value;
+    }
+    (value == null ? misses : hits).increment();
+    return value;
+  }
+
+
+  /**
+   * Determines whether the given {@code key} is cached (and not expired).
+   */
+  public boolean containsKey(K key) {
+    return get(key) != null;
+  }
+
+
+  /**
+   * Determines whether the given {@code key} is cached (and not expired), without
+   * counting the lookup in the hit and miss statistics. (For consistency checks
+   * that aren't a use of the cache.)
+   */
+  public boolean isCached(K key) {
+    Stripe<K, V> stripe = stripe(key);
+    synchronized (stripe) {
+      Node<V> node = stripe.map.get(key);
+      if (node == null)
+        return false;
+      if (isExpired(node)) {
+        stripe.map.remove(key);
+        evictions.increment();
+        return false;
+      }
+      return true;
+    }
+  }
+
+
+  /**
+   * Caches the given entry, resetting its age if already present.
+   *
+   * @param value not {@code null}
+   */
+  public void put(K key, V value) {
+    if (value == null)
+      throw new IllegalArgumentException("null value");
+    Node<V> node = new Node<>(value, maxAgeNanos == 0 ? 0 : System.nanoTime());
+    Stripe<K, V> stripe = stripe(key);
+    synchronized (stripe) {
+      stripe.map.put(key, node);
+      if (stripe.evicted) {
+        stripe.evicted = false;
+        evictions.increment();
+      }
+    }
+  }
+
+
+  /**
+   * Removes the given entry, if present.
+   *
+   * @return the removed value, or {@code null} if not cached
+   */
+  public V remove(K key) {
+    Stripe<K, V> stripe = stripe(key);
+    synchronized (stripe) {
+      Node<V> node = stripe.map.remove(key);
+      return node == null ? null : node.value;
+    }
+  }
+
+
+  public void clear() {
+    for (Stripe<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        stripe.map.clear();
+      }
+    }
+  }
+
+
+  /**
+   * Returns the number of cached entries (including any yet-to-be-evicted
+   * expired ones).
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.map.size();
+      }
+    }
+    return size;
+  }
+
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of entries evicted either because the count bound was
+   * breached, or because they expired. (Explicit removals are not counted.)
+   */
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the ratio of hits to lookups, or zero if there have been no lookups.
+   */
+  public double hitRate() {
+    long h = hits();
+    long lookups = h + misses();
+    return lookups == 0 ? 0 : ((double) h) / lookups;
+  }
+
+
+  private boolean isExpired(Node<V> node) {
+    return maxAgeNanos != 0 && System.nanoTime() - node.birthNanos > maxAgeNanos;
+  }
+
+
+  private Stripe<K, V> stripe(K key) {
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return stripes[hash & (stripes.length - 1)];
+  }
+
+
+
+  private final static class Node<V> {
+    final V value;
+    final long birthNanos;
+
+    Node(V value, long birthNanos) {
+      this.value = value;
+      this.birthNanos = birthNanos;
+    }
+  }
+
+
+  private final static class Stripe<K, V> {
+
+    final LinkedHashMap<K, Node<V>> map;
+    boolean evicted;
+
+    @SuppressWarnings("serial")
+    Stripe(final int capacity) {
+      this.map = new LinkedHashMap<>(Math.min(capacity, 1024) * 4 / 3 + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Node<V>> eldest) {
+          return evicted = size() > capacity;
+        }
+      };
+    }
+  }
+
+}
@@ -6,11 +6,18 @@ package io.crums.stowkwik.io;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
 
 import io.crums.stowkwik.NotFoundException;
 
@@ -22,28 +29,96 @@ public class Channels {
   
   private final static int MAX_CONSEC_FAILS = 1024;
   
+  /**
+   * File extension of temporary files written (in the target directory) before
+   * they're moved into place.
+   */
+  private final static String TEMP_EXT = ".tmp";
+  
   private Channels() { }
   
   
-  @SuppressWarnings("resource")
-  public static void writeToNewFile(File file, ByteBuffer buffer) throws UncheckedIOException {
-    if (file.exists())
-      throw new IllegalArgumentException("attempt to write to existing file " + file);
+  /**
+   * Writes the remaining contents of the given {@code buffer} to a new {@code file}.
+   * The contents are first written to a temporary file in the same directory, which
+   * is then {@linkplain #moveToNewFile(Path, Path) moved into place}. So the file
+   * only ever appears fully written, and it's created atomically (if there are
+   * concurrent attempts to create the same file, across processes even, only one
+   * succeeds). A failed write leaves no file behind.
+   * 
+   * @throws IllegalArgumentException if {@code file} already exists
+   */
+  public static void writeToNewFile(File file, ByteBuffer buffer)
+      throws IllegalArgumentException, UncheckedIOException {
     
     if (buffer == null)
       throw new IllegalArgumentException("null buffer");  // ..so we don't create the file
     
-    try (ClosingStack resources = new ClosingStack()) {
-      FileChannel stream = new FileOutputStream(file).getChannel();
-      resources.push(stream);
-      
-      writeRemaining(stream, buffer);
+    Path target = file.toPath().toAbsolutePath();
+    Path tmp = null;
+    try {
+      tmp = newTempFile(target.getParent());
+      try (FileChannel stream = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        writeRemaining(stream, buffer);
+      }
+      moveToNewFile(tmp, target);
       
+    } catch (FileAlreadyExistsException fax) {
+      throw new IllegalArgumentException("attempt to write to existing file " + file);
     } catch (IOException iox) {
       throw new UncheckedIOException(iox);
+    } finally {
+      if (tmp != null)
+        tmp.toFile().delete();
     }
   }
   
+  
+  /**
+   * Creates and returns a new, empty temporary file in the given directory. Unlike
+   * {@code Files.createTempFile}, the file gets default permissions (as if it were
+   * created in place). Its name is never hexadecimal, so it's not mistaken for a
+   * stored object.
+   */
+  private static Path newTempFile(Path dir) throws IOException {
+    while (true) {
+      Path tmp = dir.resolve(
+          "_" + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_EXT);
+      try {
+        return Files.createFile(tmp);
+      } catch (FileAlreadyExistsException collision) {  }
+    }
+  }
+  
+  
+  /**
+   * Moves the given {@code tmp} file to the given (new) {@code file} path, failing if
+   * the path already exists. Where the file system supports hard links, this is
+   * atomic: {@code file} is created as a link to {@code tmp} (which is then deleted).
+   * Otherwise, {@code tmp} is moved without replacing an existing file (still failing
+   * if the file exists, but not atomically).
+   * 
+   * @param tmp   the file moved (on the same file system as {@code file})
+   * @param file  the new path
+   * 
+   * @throws FileAlreadyExistsException if {@code file} already exists
+   */
+  public static void moveToNewFile(Path tmp, Path file) throws IOException {
+    boolean linked;
+    try {
+      Files.createLink(file, tmp);
+      linked = true;
+    } catch (FileAlreadyExistsException fax) {
+      throw fax;
+    } catch (IOException | UnsupportedOperationException x) {
+      linked = false;
+    }
+    if (linked)
+      Files.delete(tmp);
+    else
+      Files.move(tmp, file);
+  }
+  
   public static void writeRemaining(FileChannel file, ByteBuffer buffer) throws IOException {
     int fails = 0;
     while (fails < MAX_CONSEC_FAILS && buffer.hasRemaining()) {
@@ -59,6 +134,103 @@ public class Channels {
   
   
   
+  /**
+   * Writes the remaining bytes in the given {@code buffer} to the given {@code file}
+   * starting at position {@code pos}. The file channel's position is not modified.
+   */
+  public static void writeRemaining(FileChannel file, long pos, ByteBuffer buffer) throws IOException {
+    int fails = 0;
+    while (fails < MAX_CONSEC_FAILS && buffer.hasRemaining()) {
+      int bytes = file.write(buffer, pos);
+      if (bytes == 0)
+        ++fails;
+      else {
+        fails = 0;
+        pos += bytes;
+      }
+    }
+    if (buffer.hasRemaining())
+      throw new IOException("failed (" + fails + " times) to write remaining " + buffer.remaining() + " bytes");
+  }
+  
+  
+  
+  /**
+   * Transfers {@code count} bytes from the given {@code file} starting at position {@code pos}
+   * to the given channel using {@linkplain FileChannel#transferTo(long, long, WritableByteChannel)}.
+   * Where the OS supports it (e.g. {@code sendfile} on Linux), the bytes are copied directly
+   * by the kernel, without passing thru user space. The file channel's position is not modified.
+   * 
+   * @throws IOException if the file is shorter than expected, or if no bytes are transferred
+   *         repeatedly (e.g. a non-blocking {@code out} channel whose buffers remain full)
+   */
+  public static void transferFully(FileChannel file, long pos, long count, WritableByteChannel out)
+      throws IOException {
+    
+    final long end = pos + count;
+    int fails = 0;
+    while (pos < end) {
+      long bytes = file.transferTo(pos, end - pos, out);
+      if (bytes == 0) {
+        if (pos >= file.size())
+          throw new IOException("file truncated at offset " + pos + "; expected " + end + " bytes");
+        if (++fails >= MAX_CONSEC_FAILS)
+          throw new IOException(
+              "failed (" + fails + " times) to transfer remaining " + (end - pos) + " bytes");
+      } else {
+        fails = 0;
+        pos += bytes;
+      }
+    }
+  }
+  
+  
+  /**
+   * Reads bytes from the given {@code file} starting at position {@code pos} into the
+   * remaining space of the given {@code buffer}, until either the buffer is full, or the
+   * end of file is reached. The file channel's position is not modified.
+   * 
+   * @return the number of bytes read
+   */
+  public static int readFully(FileChannel file, long pos, ByteBuffer buffer) throws IOException {
+    final int start = buffer.position();
+    int fails = 0;
+    while (buffer.hasRemaining()) {
+      int bytes = file.read(buffer, pos);
+      if (bytes == -1)
+        break;
+      if (bytes == 0) {
+        if (++fails >= MAX_CONSEC_FAILS)
+          throw new IOException(
+              "failed (" + fails + " times) to read remaining " + buffer.remaining() +
+              " bytes at offset " + pos);
+      } else {
+        fails = 0;
+        pos += bytes;
+      }
+    }
+    return buffer.position() - start;
+  }
+  
+  
+  /**
+   * Memory-maps the given file's contents, read-only. The mapping remains valid after
+   * this method returns (until the returned buffer is garbage collected).
+   */
+  public static MappedByteBuffer mapReadOnly(File file) throws UncheckedIOException {
+    if (!file.isFile())
+      throw new NotFoundException(file.toString());
+    
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      
+      return channel.map(MapMode.READ_ONLY, 0, channel.size());
+      
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on mapping " + file, iox);
+    }
+  }
+  
+  
   @SuppressWarnings("resource")
   public static void readFully(File file, ByteBuffer buffer) throws UncheckedIOException {
     if (!file.isFile())
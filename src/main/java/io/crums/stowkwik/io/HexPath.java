@@ -7,6 +7,10 @@ package io.crums.stowkwik.io;
 import static io.crums.util.IntegralStrings.*;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A hexadecimal directory scheme used to partition hex-based filenames
@@ -28,6 +32,8 @@ public class HexPath {
   protected final FilenameScheme convention;
   protected final int maxFilesPerDir;
   
+  private volatile BoundedCache<String, File> resolved;
+  
   
 
 
@@ -84,7 +90,108 @@ public class HexPath {
   
   
   
+  /**
+   * Sets the maximum number of entries in the resolved-path cache. The cache maps
+   * hex values to the paths they were last found (or written) at, so that a hot
+   * value resolves without any file system calls. Cached paths are <em>not</em>
+   * validated on lookup: a user of {@linkplain #findCached(String)} that fails to
+   * open a cached path should {@linkplain #evictCached(String) evict} it, and
+   * fall back to {@linkplain #find(String)}.
+   * 
+   * @param maxEntries the maximum number of cached paths; or zero, to disable the cache
+   *                   (a new instance has no cache; stores enable one by default)
+   */
+  public void setCacheSize(int maxEntries) {
+    if (maxEntries < 0)
+      throw new IllegalArgumentException("maxEntries " + maxEntries);
+    this.resolved = maxEntries == 0 ? null : new BoundedCache<>(maxEntries);
+  }
+  
+  
+  /**
+   * Returns the resolved-path cache, if enabled. (Exposed for diagnostics.)
+   * 
+   * @return possibly {@code null}
+   * @see #setCacheSize(int)
+   */
+  public BoundedCache<String, File> getCache() {
+    return resolved;
+  }
+  
+  
+  /**
+   * Returns the cached path for the given hex value, without validating it
+   * (no file system calls).
+   * 
+   * @return the last known path, or {@code null} if not cached
+   * @see #setCacheSize(int)
+   */
+  public File findCached(String hex) {
+    BoundedCache<String, File> cache = resolved;
+    return cache == null ? null : cache.get(canonicalizeHex(hex));
+  }
+  
+  
+  /**
+   * Records the given path for the hex value in the resolved-path cache (if enabled).
+   * 
+   * @param file an existing file (not validated)
+   */
+  public void cachePath(String hex, File file) {
+    BoundedCache<String, File> cache = resolved;
+    if (cache != null)
+      cache.put(canonicalizeHex(hex), file);
+  }
+  
+  
+  /**
+   * Evicts the given hex value from the resolved-path cache (if enabled and present).
+   */
+  public void evictCached(String hex) {
+    BoundedCache<String, File> cache = resolved;
+    if (cache != null)
+      cache.remove(canonicalizeHex(hex));
+  }
+  
+  
+  /**
+   * Finds and returns the file for the given hex value. If found, it's recorded
+   * in the {@linkplain #setCacheSize(int) resolved-path cache} (if enabled).
+   * 
+   * @return the file, or {@code null} if not found
+   */
   public File find(String hex) {
+    return find(hex, null);
+  }
+  
+  
+  /**
+   * Finds the files for the given hex values in bulk. Equivalent to invoking
+   * {@linkplain #find(String)} on each, except that subdirectory lookups are
+   * shared across the batch (so, for example, the top level subdirectories are
+   * each checked at most once), and that paths in the {@linkplain #setCacheSize(int)
+   * resolved-path cache} are returned as is (unvalidated).
+   * 
+   * @param hexes the hexadecimal values (not necessarily distinct)
+   * 
+   * @return a new list of files in the same order as {@code hexes}, with {@code null}
+   *         elements for those not found
+   */
+  public List<File> findAll(List<String> hexes) {
+    Map<File, Boolean> subdirs = new HashMap<>();
+    List<File> files = new ArrayList<>(hexes.size());
+    for (String hex : hexes) {
+      File file = findCached(hex);
+      files.add(file == null ? find(hex, subdirs) : file);
+    }
+    return files;
+  }
+  
+  
+  /**
+   * @param subdirs  subdirectory existence memo; may be {@code null}
+   */
+  private File find(String hex, Map<File, Boolean> subdirs) {
     hex = canonicalizeHex(hex);
     String subhex = hex;
     
@@ -94,7 +201,7 @@ public class HexPath {
     File hdir = root;
     while (subhex.length() > 2) {
       
-      File subdir = subdirOrNull(hdir, subhex);
+      File subdir = subdirs == null ? subdirOrNull(hdir, subhex) : subdirOrNull(hdir, subhex, subdirs);
       if (subdir == null)
         break;
       
@@ -106,8 +213,11 @@ public class HexPath {
     
     while (true) {
       File file = new File(hdir, convention.toFilename(subhex));
-      if (file.exists())
-        return ensureFile(file);
+      if (file.exists()) {
+        ensureFile(file);
+        cachePath(hex, file);
+        return file;
+      }
       if (subhex.equals(hex))
         break;
       
@@ -218,6 +328,7 @@ public class HexPath {
         throw new IllegalStateException("rename " + file + " --> " + suggestedPath + " failed");
       }
       file = suggestedPath;
+      cachePath(hex, file);
     }
     return file;
     
@@ -275,6 +386,16 @@ public class HexPath {
     return null;
   }
   
+  private File subdirOrNull(File hdir, String hex, Map<File, Boolean> subdirs) {
+    File subdir = new File(hdir, hex.substring(0, 2));
+    Boolean exists = subdirs.get(subdir);
+    if (exists == null) {
+      exists = subdirOrNull(hdir, hex) != null;
+      subdirs.put(subdir, exists);
+    }
+    return exists ? subdir : null;
+  }
+  
   private void makeDirectory(File subdir) {
       if (!subdir.mkdirs() && !subdir.isDirectory())
         throw new IllegalArgumentException("failed to create directory " + subdir);
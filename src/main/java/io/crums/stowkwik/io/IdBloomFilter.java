@@ -0,0 +1,143 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.io;
+
+
+import static io.crums.util.IntegralStrings.hexToBytes;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over IDs (hash digests). Since IDs are already hashes, no further
+ * hashing is needed: the probe positions are derived from the ID's leading 8 bytes
+ * (by double hashing). Like {@linkplain OffHeapIdSet}, it's sized on construction and
+ * does not grow; adding more IDs than it was sized for raises its false positive rate.
+ * <p>
+ * Instances are thread-safe: {@linkplain #add(byte[])} sets bits atomically.
+ * </p>
+ */
+public final class IdBloomFilter {
+
+  private final static long GOLDEN = 0x9e3779b97f4a7c15L;
+
+  private final AtomicLongArray bits;
+  private final long bitMask;
+  private final int probes;
+
+
+  /**
+   * Creates an empty instance.
+   *
+   * @param expectedIds         the expected number of IDs (&ge; 1)
+   * @param falsePositiveRate   the target false positive rate, in the range (0, 0.5]
+   */
+  public IdBloomFilter(long expectedIds, double falsePositiveRate) {
+    if (expectedIds < 1)
+      throw new IllegalArgumentException("expectedIds " + expectedIds);
+    if (!(falsePositiveRate > 0 && falsePositiveRate <= 0.5))
+      throw new IllegalArgumentException("falsePositiveRate " + falsePositiveRate);
+
+    double ln2 = Math.log(2);
+    double optimalBits = -expectedIds * Math.log(falsePositiveRate) / (ln2 * ln2);
+    long bitCount = Long.highestOneBit(Math.max(64, (long) Math.ceil(optimalBits)) - 1) << 1;
+    if (bitCount >= (1L << 37))
+      throw new IllegalArgumentException(
+          "too big: expectedIds " + expectedIds + ", falsePositiveRate " + falsePositiveRate);
+
+    this.bits = new AtomicLongArray((int) (bitCount >>> 6));
+    this.bitMask = bitCount - 1;
+    this.probes = (int) Math.max(1, Math.min(16, Math.round(bitCount * ln2 / expectedIds)));
+  }
+
+
+  /**
+   * Returns the number of bits in the filter (a power of 2).
+   */
+  public long bitCount() {
+    return bitMask + 1;
+  }
+
+
+  /**
+   * Returns the number of bits probed per ID.
+   */
+  public int probes() {
+    return probes;
+  }
+
+
+  /**
+   * Adds the given hex ID.
+   */
+  public void add(String hex) {
+    add(hexToBytes(hex));
+  }
+
+
+  /**
+   * Adds the given ID.
+   *
+   * @param id at least 8 bytes long
+   */
+  public void add(byte[] id) {
+    long h1 = lead(id);
+    long h2 = step(h1);
+    for (int p = 0; p < probes; ++p, h1 += h2) {
+      long bit = h1 & bitMask;
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long value = bits.get(word);
+      while ((value & mask) == 0) {
+        long witness = bits.compareAndExchange(word, value, value | mask);
+        if (witness == value)
+          break;
+        value = witness;
+      }
+    }
+  }
+
+
+  /**
+   * Determines whether the given hex ID <em>may</em> have been added. If not,
+   * then it definitely was not added.
+   */
+  public boolean mightContain(String hex) {
+    return mightContain(hexToBytes(hex));
+  }
+
+
+  /**
+   * Determines whether the given ID <em>may</em> have been added. If not,
+   * then it definitely was not added.
+   *
+   * @param id at least 8 bytes long
+   */
+  public boolean mightContain(byte[] id) {
+    long h1 = lead(id);
+    long h2 = step(h1);
+    for (int p = 0; p < probes; ++p, h1 += h2) {
+      long bit = h1 & bitMask;
+      if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+        return false;
+    }
+    return true;
+  }
+
+
+  private static long lead(byte[] id) {
+    if (id.length < 8)
+      throw new IllegalArgumentException("id length " + id.length);
+    long lead = 0;
+    for (int index = 0; index < 8; ++index)
+      lead = (lead << 8) | (id[index] & 0xff);
+    return lead;
+  }
+
+
+  /** Odd step, so that probes don't cycle early. */
+  private static long step(long h1) {
+    return Long.rotateLeft(h1 * GOLDEN, 29) | 1;
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.io;
+
+
+import static io.crums.util.IntegralStrings.hexToBytes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent, add-only set of fixed-width IDs (hash digests) stored off the Java heap,
+ * in direct buffers. It's sized on construction and does not grow: it's meant for
+ * one-shot, large bookkeeping (e.g. marking reachable objects) where a heap-based set
+ * of strings would incur too much memory and GC overhead.
+ * <p>
+ * The set is an open-addressing (linear probing) table. Each slot holds an 8-byte
+ * tag derived from the ID's leading bytes, followed by the full ID. Slots are claimed
+ * with a compare-and-set on the tag, so {@linkplain #add(byte[])} is lock-free.
+ * Since IDs are hashes, their leading bytes are already uniformly distributed.
+ * </p>
+ */
+public final class OffHeapIdSet {
+
+  private final static VarHandle TAG =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  /** Tag value of a slot being written. */
+  private final static long BUSY = -1;
+
+  /** Maximum bytes per direct buffer. */
+  private final static int MAX_CHUNK_BYTES = 1 << 30;
+
+
+  private final int idLength;
+  private final int slotWidth;
+  private final long slots;
+  private final long maxSize;
+  private final int chunkShift;
+  private final long chunkMask;
+  private final ByteBuffer[] chunks;
+
+  private final LongAdder size = new LongAdder();
+
+
+  /**
+   * Creates an empty instance.
+   *
+   * @param idLength    the byte length of the IDs (&ge; 8)
+   * @param maxIds      the maximum number of IDs the set will hold (&ge; 1). Twice this
+   *                    many slots are allocated (rounded up to a power of 2)
+   */
+  public OffHeapIdSet(int idLength, long maxIds) {
+    if (idLength < 8)
+      throw new IllegalArgumentException("idLength " + idLength);
+    if (maxIds < 1 || maxIds > (1L << 40))
+      throw new IllegalArgumentException("maxIds " + maxIds);
+
+    this.idLength = idLength;
+    this.slotWidth = 8 + ((idLength + 7) & ~7);
+    this.slots = Long.highestOneBit(2 * maxIds - 1) << 1;
+    this.maxSize = slots - slots / 4;   // keep the load factor under 3/4
+
+    long slotsPerChunk = Long.highestOneBit(MAX_CHUNK_BYTES / slotWidth);
+    if (slotsPerChunk > slots)
+      slotsPerChunk = slots;
+    this.chunkShift = Long.numberOfTrailingZeros(slotsPerChunk);
+    this.chunkMask = slotsPerChunk - 1;
+
+    int chunkCount = (int) (slots / slotsPerChunk);
+    this.chunks = new ByteBuffer[chunkCount];
+    int chunkBytes = (int) (slotsPerChunk * slotWidth);
+    for (int index = 0; index < chunkCount; ++index)
+      chunks[index] = ByteBuffer.allocateDirect(chunkBytes + 8).alignedSlice(8);
+  }
+
+
+  /**
+   * Returns the byte length of the IDs.
+   */
+  public int idLength() {
+    return idLength;
+  }
+
+
+  /**
+   * Returns the number of IDs in the set.
+   */
+  public long size() {
+    return size.sum();
+  }
+
+
+  /**
+   * Returns the number of off-heap bytes allocated.
+   */
+  public long allocatedBytes() {
+    return slots * slotWidth;
+  }
+
+
+  /**
+   * Adds the given hex ID to the set.
+   *
+   * @see #add(byte[])
+   */
+  public boolean add(String hex) {
+    return add(hexToBytes(hex));
+  }
+
+
+  /**
+   * Adds the given ID to the set.
+   *
+   * @return {@code true} iff the ID was not already in the set
+   * @throws IllegalStateException if the set is full
+   */
+  public boolean add(byte[] id) throws IllegalStateException {
+    checkLength(id);
+    final long tag = tag(id);
+    for (long slot = firstSlot(tag), probes = 0; probes < slots; slot = (slot + 1) & (slots - 1), ++probes) {
+      ByteBuffer chunk = chunks[(int) (slot >>> chunkShift)];
+      int offset = (int) ((slot & chunkMask) * slotWidth);
+      while (true) {
+        long current = (long) TAG.getVolatile(chunk, offset);
+        if (current == 0) {
+          if (size.sum() >= maxSize)
+            throw new IllegalStateException("set full: " + size.sum() + " IDs");
+          if (!TAG.compareAndSet(chunk, offset, 0L, BUSY))
+            continue;
+          chunk.put(offset + 8, id);
+          TAG.setVolatile(chunk, offset, tag);
+          size.increment();
+          return true;
+        }
+        if (current == BUSY) {
+          Thread.onSpinWait();
+          continue;
+        }
+        if (current == tag && sameId(chunk, offset + 8, id))
+          return false;
+        break;
+      }
+    }
+    throw new IllegalStateException("set full: " + size.sum() + " IDs");
+  }
+
+
+  /**
+   * Determines whether the given hex ID is in the set.
+   */
+  public boolean contains(String hex) {
+    return contains(hexToBytes(hex));
+  }
+
+
+  /**
+   * Determines whether the given ID is in the set.
+   */
+  public boolean contains(byte[] id) {
+    checkLength(id);
+    final long tag = tag(id);
+    for (long slot = firstSlot(tag), probes = 0; probes < slots; slot = (slot + 1) & (slots - 1), ++probes) {
+      ByteBuffer chunk = chunks[(int) (slot >>> chunkShift)];
+      int offset = (int) ((slot & chunkMask) * slotWidth);
+      long current;
+      while ((current = (long) TAG.getVolatile(chunk, offset)) == BUSY)
+        Thread.onSpinWait();
+      if (current == 0)
+        return false;
+      if (current == tag && sameId(chunk, offset + 8, id))
+        return true;
+    }
+    return false;
+  }
+
+
+
+  private void checkLength(byte[] id) {
+    if (id.length != idLength)
+      throw new IllegalArgumentException("id length " + id.length + " != " + idLength);
+  }
+
+
+  /**
+   * Returns a positive (never 0 or {@linkplain #BUSY}) tag for the given ID.
+   */
+  private static long tag(byte[] id) {
+    long lead = 0;
+    for (int index = 0; index < 8; ++index)
+      lead = (lead << 8) | (id[index] & 0xff);
+    return (lead & Long.MAX_VALUE) | 1;
+  }
+
+
+  private long firstSlot(long tag) {
+    return (tag * 0x9E3779B97F4A7C15L >>> 20) & (slots - 1);
+  }
+
+
+  private boolean sameId(ByteBuffer chunk, int offset, byte[] id) {
+    for (int index = 0; index < id.length; ++index)
+      if (chunk.get(offset + index) != id[index])
+        return false;
+    return true;
+  }
+
+}
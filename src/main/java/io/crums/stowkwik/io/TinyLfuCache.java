@@ -0,0 +1,403 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.io;
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * A lock-striped, size-bounded cache with frequency-aware (W-TinyLFU) eviction. Each
+ * stripe keeps a small LRU <em>window</em> (about 1% of its capacity) in front of a
+ * larger LRU <em>main</em> region. A new entry goes into the window; when the window
+ * overflows, its least recent entry becomes a <em>candidate</em> for the main region,
+ * and is admitted only if it's been looked up more often than the main region's least
+ * recent entry (its <em>victim</em>). Lookup frequencies are approximated by a small
+ * count-min sketch of 4-bit counters that are periodically halved, so that the sketch
+ * tracks recent (rather than all-time) popularity.
+ * <p>
+ * The upshot is that, under skewed access, a burst of one-off lookups doesn't flush
+ * popular entries from the cache (as it would under plain LRU).
+ * </p>
+ * <p>
+ * The cache is bounded by total entry <em>weight</em>: either one per entry (a count
+ * bound), or as given by a {@linkplain ToIntFunction weigher}. As with
+ * {@linkplain BoundedCache}, the bound is enforced per stripe, so it's approximate in
+ * aggregate. Hit, miss and eviction counts are maintained for diagnostics.
+ * </p>
+ *
+ * @param <K> key type (with value-based {@code equals} and a well distributed {@code hashCode})
+ * @param <V> value type
+ *
+ * @see BoundedCache
+ */
+public class TinyLfuCache<K, V> {
+
+  private final static int MAX_STRIPES = 16;
+
+  /**
+   * Window region size, in percent of a stripe's capacity.
+   */
+  private final static int WINDOW_PERCENT = 1;
+
+
+  private final Stripe<K, V>[] stripes;
+  private final ToIntFunction<? super V> weigher;
+  private final long maxWeight;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+
+  /**
+   * Creates an instance bounded by count.
+   *
+   * @param maxEntries the maximum number of entries (&ge; 1)
+   */
+  public TinyLfuCache(int maxEntries) {
+    this(maxEntries, v -> 1, maxEntries);
+  }
+
+
+  /**
+   * Creates an instance bounded by total weight.
+   *
+   * @param maxWeight       the maximum total weight (&ge; 1)
+   * @param weigher         returns the (positive) weight of a value; e.g. its estimated
+   *                        size in bytes. Values weighing more than (about) a stripe's
+   *                        capacity are not cached.
+   * @param expectedEntries the expected number of entries when the cache is full
+   *                        (&ge; 1). Used to size the frequency sketch.
+   */
+  @SuppressWarnings("unchecked")
+  public TinyLfuCache(long maxWeight, ToIntFunction<? super V> weigher, int expectedEntries) {
+    if (maxWeight < 1)
+      throw new IllegalArgumentException("maxWeight " + maxWeight);
+    if (weigher == null)
+      throw new IllegalArgumentException("null weigher");
+    if (expectedEntries < 1)
+      throw new IllegalArgumentException("expectedEntries " + expectedEntries);
+
+    this.weigher = weigher;
+    this.maxWeight = maxWeight;
+
+    // keep at least 16 (expected) entries per stripe
+    int count = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, expectedEntries / 16)));
+    long perStripe = (maxWeight + count - 1) / count;
+    int entriesPerStripe = (expectedEntries + count - 1) / count;
+
+    this.stripes = (Stripe<K, V>[]) new Stripe<?, ?>[count];
+    for (int index = count; index-- > 0; )
+      stripes[index] = new Stripe<>(perStripe, entriesPerStripe);
+  }
+
+
+  /**
+   * Returns the cached value, or {@code null} if not cached. The lookup is
+   * recorded (in the frequency sketch) either way.
+   */
+  public V get(K key) {
+    Stripe<K, V> stripe = stripe(key);
+    V value;
+    synchronized (stripe) {
+      stripe.sketch.increment(key.hashCode());
+      Node<V> node = stripe.window.get(key);
+      if (node == null)
+        node = stripe.main.get(key);
+      value = node == null ? null : node.value;
+    }
+    (value == null ? misses : hits).increment();
+    return value;
+  }
+
+
+  /**
+   * Returns the cached value, or {@code null} if not cached, without recording
+   * the lookup in either the frequency sketch or the hit/miss statistics.
+   */
+  public V peek(K key) {
+    Stripe<K, V> stripe = stripe(key);
+    synchronized (stripe) {
+      Node<V> node = stripe.window.get(key);
+      if (node == null)
+        node = stripe.main.get(key);
+      return node == null ? null : node.value;
+    }
+  }
+
+
+  /**
+   * Caches the given entry, replacing any existing value. The entry may be
+   * evicted right away if it's less popular than the entries it would displace,
+   * or if it weighs more than a stripe's capacity.
+   *
+   * @param value not {@code null}
+   */
+  public void put(K key, V value) {
+    if (value == null)
+      throw new IllegalArgumentException("null value");
+    int weight = weigher.applyAsInt(value);
+    if (weight < 1)
+      throw new IllegalArgumentException("weight " + weight + " for " + key);
+
+    Stripe<K, V> stripe = stripe(key);
+    int evicted;
+    synchronized (stripe) {
+      evicted = stripe.put(key, new Node<>(value, weight));
+    }
+    if (evicted != 0)
+      evictions.add(evicted);
+  }
+
+
+  /**
+   * Removes the given entry, if present.
+   *
+   * @return the removed value, or {@code null} if not cached
+   */
+  public V remove(K key) {
+    Stripe<K, V> stripe = stripe(key);
+    synchronized (stripe) {
+      Node<V> node = stripe.remove(key);
+      return node == null ? null : node.value;
+    }
+  }
+
+
+  public void clear() {
+    for (Stripe<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        stripe.window.clear();
+        stripe.main.clear();
+        stripe.windowWeight = stripe.mainWeight = 0;
+      }
+    }
+  }
+
+
+  /**
+   * Returns the number of cached entries.
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.window.size() + stripe.main.size();
+      }
+    }
+    return size;
+  }
+
+
+  /**
+   * Returns the total weight of the cached entries.
+   */
+  public long weight() {
+    long weight = 0;
+    for (Stripe<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        weight += stripe.windowWeight + stripe.mainWeight;
+      }
+    }
+    return weight;
+  }
+
+
+  /**
+   * Returns the maximum total weight (or count) this instance was configured with.
+   */
+  public long maxWeight() {
+    return maxWeight;
+  }
+
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of entries evicted (or denied admission) in order to
+   * stay within bounds. (Explicit removals are not counted.)
+   */
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the ratio of hits to lookups, or zero if there have been no lookups.
+   */
+  public double hitRate() {
+    long h = hits();
+    long lookups = h + misses();
+    return lookups == 0 ? 0 : ((double) h) / lookups;
+  }
+
+
+  private Stripe<K, V> stripe(K key) {
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return stripes[hash & (stripes.length - 1)];
+  }
+
+
+
+  private final static class Node<V> {
+    final V value;
+    final int weight;
+
+    Node(V value, int weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+
+  /**
+   * Not thread-safe; guarded by its own monitor.
+   */
+  private final static class Stripe<K, V> {
+
+    final LinkedHashMap<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    final LinkedHashMap<K, Node<V>> main = new LinkedHashMap<>(16, 0.75f, true);
+    final FrequencySketch sketch;
+    final long windowMax;
+    final long mainMax;
+    long windowWeight;
+    long mainWeight;
+
+    Stripe(long maxWeight, int expectedEntries) {
+      this.windowMax = Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+      this.mainMax = Math.max(1, maxWeight - windowMax);
+      this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+
+    /**
+     * @return the number of entries evicted
+     */
+    int put(K key, Node<V> node) {
+      remove(key);
+      if (node.weight > mainMax)
+        return 0;
+
+      window.put(key, node);
+      windowWeight += node.weight;
+
+      int evicted = 0;
+      while (windowWeight > windowMax) {
+        Iterator<Map.Entry<K, Node<V>>> eldest = window.entrySet().iterator();
+        Map.Entry<K, Node<V>> candidate = eldest.next();
+        eldest.remove();
+        windowWeight -= candidate.getValue().weight;
+        evicted += admit(candidate.getKey(), candidate.getValue());
+      }
+      return evicted;
+    }
+
+
+    /**
+     * Admits the given candidate to the main region if it's more popular than the
+     * victim(s) it would displace.
+     *
+     * @return the number of entries evicted (including the candidate, if not admitted)
+     */
+    private int admit(K key, Node<V> candidate) {
+      int evicted = 0;
+      int frequency = sketch.frequency(key.hashCode());
+      while (mainWeight + candidate.weight > mainMax) {
+        Iterator<Map.Entry<K, Node<V>>> eldest = main.entrySet().iterator();
+        if (!eldest.hasNext())
+          return evicted + 1;
+        Map.Entry<K, Node<V>> victim = eldest.next();
+        if (frequency <= sketch.frequency(victim.getKey().hashCode()))
+          return evicted + 1;
+        eldest.remove();
+        mainWeight -= victim.getValue().weight;
+        ++evicted;
+      }
+      main.put(key, candidate);
+      mainWeight += candidate.weight;
+      return evicted;
+    }
+
+
+    Node<V> remove(K key) {
+      Node<V> node = window.remove(key);
+      if (node != null)
+        windowWeight -= node.weight;
+      else if ((node = main.remove(key)) != null)
+        mainWeight -= node.weight;
+      return node;
+    }
+  }
+
+
+  /**
+   * Count-min sketch of 4-bit (saturating) counters, 4 rows deep. The counters are
+   * halved every {@code 10 x width} increments.
+   */
+  final static class FrequencySketch {
+
+    private final static int MAX_COUNT = 15;
+    private final static int[] SEEDS = { 0x97cb3127, 0xb4f88c4f, 0x6fa4b96b, 0xe2c4a3f1 };
+
+    private final byte[][] rows;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+      int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+      this.rows = new byte[SEEDS.length][width];
+      this.mask = width - 1;
+      this.sampleSize = 10 * width;
+    }
+
+
+    int frequency(int hash) {
+      int frequency = MAX_COUNT;
+      for (int row = 0; row < rows.length; ++row)
+        frequency = Math.min(frequency, rows[row][index(hash, row)]);
+      return frequency;
+    }
+
+
+    void increment(int hash) {
+      boolean incremented = false;
+      for (int row = 0; row < rows.length; ++row) {
+        int index = index(hash, row);
+        if (rows[row][index] < MAX_COUNT) {
+          ++rows[row][index];
+          incremented = true;
+        }
+      }
+      if (incremented && ++additions == sampleSize)
+        halve();
+    }
+
+
+    private void halve() {
+      for (byte[] row : rows)
+        for (int index = row.length; index-- > 0; )
+          row[index] >>= 1;
+      additions /= 2;
+    }
+
+
+    private int index(int hash, int row) {
+      int h = hash * SEEDS[row];
+      h ^= h >>> 17;
+      return h & mask;
+    }
+  }
+
+}
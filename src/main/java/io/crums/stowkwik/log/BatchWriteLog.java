@@ -0,0 +1,33 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import java.io.UncheckedIOException;
+
+/**
+ * A {@linkplain WriteLog} that can append many entries in one write.
+ *
+ * @see GroupCommitWriteLog
+ */
+public interface BatchWriteLog extends WriteLog {
+
+  /**
+   * Appends the first {@code count} entries of the given arrays, in order, in as few
+   * writes as possible. Logged times are non-decreasing: an entry whose time is earlier
+   * than that of the previously logged entry is logged with the previous entry's time.
+   *
+   * @param timeMillis  the entries' times (UTC millis)
+   * @param ids         the entries' hex IDs
+   * @param count       the number of entries
+   */
+  void objectsWritten(long[] timeMillis, String[] ids, int count) throws UncheckedIOException;
+
+
+  /**
+   * Forces the log to storage.
+   */
+  void force() throws UncheckedIOException;
+
+}
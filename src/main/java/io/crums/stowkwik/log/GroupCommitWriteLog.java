@@ -0,0 +1,321 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A group-commit {@linkplain WriteLog}. Writers enqueue entries into a bounded,
+ * lock-free ring; a single flusher thread drains the ring and appends the entries
+ * to an underlying {@linkplain BatchWriteLog} in batches: one write (and optionally,
+ * one {@linkplain BatchWriteLog#force() force}) per batch. So writer threads don't
+ * serialize on the log.
+ * <p>
+ * A batch is written once it reaches the {@code maxBatch} size, or once its oldest
+ * entry is {@code interval} old, whichever comes first. A writer that needs its
+ * entry to be durable (e.g. before acknowledging a write to a remote client) can
+ * wait for it: see {@linkplain #objectWrittenDurably(String)}. A waiting writer
+ * causes the pending batch to be written right away.
+ * </p>
+ * <p>
+ * Entry times are taken when they're enqueued. If the ring is full, writers wait
+ * for the flusher to catch up. If the underlying log fails, the failure is
+ * reported to every subsequent (and waiting) writer.
+ * </p>
+ */
+public class GroupCommitWriteLog implements WriteLog {
+
+  /**
+   * Default ring capacity.
+   */
+  public final static int DEFAULT_CAPACITY = 8192;
+
+  /**
+   * Default maximum batch size.
+   */
+  public final static int DEFAULT_MAX_BATCH = 1024;
+
+  /**
+   * Default interval.
+   */
+  public final static Duration DEFAULT_INTERVAL = Duration.ofMillis(10);
+
+  private final static long FULL_RING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private final static long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+
+  private final BatchWriteLog log;
+  private final int mask;
+  private final int maxBatch;
+  private final long intervalMillis;
+  private final boolean forceBatches;
+
+  // the ring: slot i is free for sequence number s iff seqs[i] == s;
+  // it holds (published) entry s iff seqs[i] == s + 1
+  private final AtomicLongArray seqs;
+  private final String[] ids;
+  private final long[] times;
+
+  private final AtomicLong tail = new AtomicLong();
+  /** Sequence number of the next entry to be drained (written by the flusher only). */
+  private volatile long head;
+  /** Entries with sequence numbers less than this have been written. */
+  private volatile long committed;
+
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final Object commitMonitor = new Object();
+
+  private volatile boolean closing;
+  private volatile RuntimeException failure;
+
+  private final Thread flusher;
+
+
+  /**
+   * Creates an instance with default settings, whose batches are not forced.
+   *
+   * @param log the underlying log (closed when this instance is closed)
+   */
+  public GroupCommitWriteLog(BatchWriteLog log) {
+    this(log, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH, DEFAULT_INTERVAL, false);
+  }
+
+
+  /**
+   * Creates an instance and starts its flusher thread.
+   *
+   * @param log           the underlying log (closed when this instance is closed)
+   * @param capacity      the ring's capacity (a power of 2)
+   * @param maxBatch      the maximum number of entries per write (&le; {@code capacity})
+   * @param interval      the maximum time an entry waits to be written (absent
+   *                      a durability waiter)
+   * @param forceBatches  if {@code true}, then every batch is {@linkplain
+   *                      BatchWriteLog#force() forced} to storage
+   */
+  public GroupCommitWriteLog(
+      BatchWriteLog log, int capacity, int maxBatch, Duration interval, boolean forceBatches) {
+
+    this.log = Objects.requireNonNull(log, "log");
+    if (capacity < 2 || Integer.bitCount(capacity) != 1)
+      throw new IllegalArgumentException("capacity " + capacity);
+    if (maxBatch < 1 || maxBatch > capacity)
+      throw new IllegalArgumentException("maxBatch " + maxBatch);
+    if (interval.isNegative())
+      throw new IllegalArgumentException("interval " + interval);
+
+    this.mask = capacity - 1;
+    this.maxBatch = maxBatch;
+    this.intervalMillis = interval.toMillis();
+    this.forceBatches = forceBatches;
+    this.seqs = new AtomicLongArray(capacity);
+    for (int index = 0; index < capacity; ++index)
+      seqs.set(index, index);
+    this.ids = new String[capacity];
+    this.times = new long[capacity];
+
+    this.flusher = new Thread(this::flushLoop, "wlog-group-commit");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+
+  /**
+   * Enqueues the entry and returns without waiting for it to be written.
+   */
+  @Override
+  public void objectWritten(String id) throws UncheckedIOException {
+    append(id);
+  }
+
+
+  /**
+   * Enqueues the entry, and waits until it's written (and if so configured, forced).
+   */
+  public void objectWrittenDurably(String id) throws UncheckedIOException {
+    awaitCommitted(append(id));
+  }
+
+
+  /**
+   * Enqueues the entry and returns its sequence number.
+   *
+   * @return the sequence number to {@linkplain #awaitCommitted(long) wait} on
+   */
+  public long append(String id) throws UncheckedIOException {
+    Objects.requireNonNull(id, "id");
+    final long now = System.currentTimeMillis();
+    while (true) {
+      checkState();
+      long seq = tail.get();
+      int slot = (int) seq & mask;
+      long slotSeq = seqs.get(slot);
+      if (slotSeq == seq) {
+        if (tail.compareAndSet(seq, seq + 1)) {
+          ids[slot] = id;
+          times[slot] = now;
+          seqs.set(slot, seq + 1);   // publish
+          long pending = seq + 1 - head;
+          if (pending == 1 || pending >= maxBatch)
+            LockSupport.unpark(flusher);
+          return seq;
+        }
+      } else if (slotSeq < seq) {
+        // full: wait for the flusher to drain
+        LockSupport.unpark(flusher);
+        LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+      }
+      // else another writer claimed seq: retry
+    }
+  }
+
+
+  /**
+   * Waits until the entry with the given sequence number is written (and if so
+   * configured, forced).
+   *
+   * @param seq as returned by {@linkplain #append(String)}
+   */
+  public void awaitCommitted(long seq) throws UncheckedIOException {
+    if (committed > seq)
+      return;
+    waiters.incrementAndGet();
+    try {
+      LockSupport.unpark(flusher);
+      synchronized (commitMonitor) {
+        while (committed <= seq) {
+          checkFailure();
+          if (!flusher.isAlive())
+            throw new IllegalStateException("log closed before entry " + seq + " committed");
+          commitMonitor.wait(100);
+        }
+      }
+    } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting on entry " + seq, ix);
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+
+  /**
+   * Waits until every entry enqueued so far is written.
+   */
+  public void flush() throws UncheckedIOException {
+    long last = tail.get() - 1;
+    if (last >= 0)
+      awaitCommitted(last);
+  }
+
+
+  /**
+   * Returns the number of entries written so far.
+   */
+  public long committedCount() {
+    return committed;
+  }
+
+
+  /**
+   * Writes any pending entries, stops the flusher, and closes the underlying log.
+   * Writers should be done before the log is closed: an entry enqueued concurrently
+   * with closing may be dropped.
+   */
+  @Override
+  public void close() throws IOException {
+    closing = true;
+    LockSupport.unpark(flusher);
+    boolean interrupted = false;
+    while (flusher.isAlive()) {
+      try {
+        flusher.join();
+      } catch (InterruptedException ix) {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+    log.close();
+    checkFailure();
+  }
+
+
+
+  private void checkState() {
+    checkFailure();
+    if (closing)
+      throw new IllegalStateException("log closed");
+  }
+
+
+  private void checkFailure() {
+    RuntimeException x = failure;
+    if (x instanceof UncheckedIOException)
+      throw new UncheckedIOException(x.getMessage(), ((UncheckedIOException) x).getCause());
+    if (x != null)
+      throw new IllegalStateException("write log failed: " + x, x);
+  }
+
+
+  private void flushLoop() {
+    final long[] batchTimes = new long[maxBatch];
+    final String[] batchIds = new String[maxBatch];
+    try {
+      while (true) {
+        long h = head;
+        int slot = (int) h & mask;
+        boolean ready = seqs.get(slot) == h + 1;
+        if (!ready) {
+          if (closing && tail.get() == h)
+            break;
+          // empty, or the head entry is being written: its writer unparks us
+          LockSupport.parkNanos(IDLE_PARK_NANOS);
+          continue;
+        }
+        long pending = tail.get() - h;
+        if (pending < maxBatch && waiters.get() == 0 && !closing) {
+          long wait = times[slot] + intervalMillis - System.currentTimeMillis();
+          if (wait > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(wait));
+            continue;
+          }
+        }
+
+        int count = 0;
+        for (; count < maxBatch && seqs.get(slot = (int) (h + count) & mask) == h + count + 1; ++count) {
+          batchTimes[count] = times[slot];
+          batchIds[count] = ids[slot];
+          ids[slot] = null;
+          seqs.set(slot, h + count + mask + 1);   // free the slot
+        }
+        head = h + count;
+
+        log.objectsWritten(batchTimes, batchIds, count);
+        if (forceBatches)
+          log.force();
+        committed = h + count;
+        if (waiters.get() > 0) {
+          synchronized (commitMonitor) {
+            commitMonitor.notifyAll();
+          }
+        }
+      }
+    } catch (RuntimeException x) {
+      failure = x;
+      synchronized (commitMonitor) {
+        commitMonitor.notifyAll();
+      }
+    }
+  }
+
+}
@@ -5,10 +5,18 @@ package io.crums.stowkwik.log;
 
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+import io.crums.stowkwik.io.Channels;
+import io.crums.stowkwik.io.CorruptionException;
 
 /**
  * Logs writes in plain text. Example output:
@@ -23,44 +31,120 @@ import java.time.Instant;
  * 
  * @see PlainTextWriteLogReader
  */
-public class PlainTextWriteLog implements WriteLog {
+public class PlainTextWriteLog implements BatchWriteLog {
   
   public final static char TIME_HASH_DELIMIT = ' ';
   public final static char ENTRY_END = '\n';
   
+  /**
+   * Maximum (sane) entry width. Bounds the tail read on opening an existing log.
+   */
+  private final static int MAX_ENTRY_WIDTH = 1024;
+  
   
   
-  private final FileWriter writer;
+  private final File file;
+  private final FileChannel channel;
+  private long lastTime;
   
 
   /**
+   * Opens the given log file for appending, or creates it if it doesn't exist.
+   * Entries are logged in time order: if the file exists, new entries are timestamped
+   * no earlier than its last entry (even if the clock has since moved back).
    * 
+   * @throws CorruptionException if the last entry in an existing file is malformed
    */
-  public PlainTextWriteLog(File file) throws IOException {
-    this.writer = new FileWriter(file, true);
+  public PlainTextWriteLog(File file) throws IOException, CorruptionException {
+    this.file = file;
+    this.lastTime = file.exists() ? lastLoggedTime(file) : 0;
+    this.channel = FileChannel.open(
+        file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
   }
 
   
-  @Override
-  public synchronized void objectWritten(String id) {
+  /**
+   * Returns the time (in UTC millis) of the last complete entry in the given log file,
+   * or zero, if there is none.
+   */
+  private static long lastLoggedTime(File file) throws IOException, CorruptionException {
+    String tail;
+    long size;
+    try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      size = in.size();
+      ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, MAX_ENTRY_WIDTH));
+      Channels.readFully(in, size - buffer.capacity(), buffer);
+      tail = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+    }
     
-    String now = Instant.now().toString();
+    // (a partial entry after the last ENTRY_END is ignored)
+    int end = tail.lastIndexOf(ENTRY_END);
+    if (end == -1) {
+      if (size > tail.length())
+        throw new CorruptionException("no entry in the last " + tail.length() + " bytes of " + file);
+      return 0;
+    }
+    int start = tail.lastIndexOf(ENTRY_END, end - 1) + 1;
+    if (start == 0 && size > tail.length())
+      throw new CorruptionException("last entry overflows " + MAX_ENTRY_WIDTH + " bytes in " + file);
+    int delimit = tail.indexOf(TIME_HASH_DELIMIT, start);
+    if (delimit == -1 || delimit > end)
+      throw new CorruptionException("malformed last entry in " + file);
     try {
-      
-      writer.write(now, 0, now.length() - 8);
-      writer.write(ENTRY_END);
-      writer.write(id);
-      writer.write(ENTRY_END);
-      writer.flush();
-      
+      return Instant.parse(tail.substring(start, delimit) + 'Z').toEpochMilli();
+    } catch (DateTimeParseException dtpx) {
+      throw new CorruptionException("malformed last entry timestamp in " + file, dtpx);
+    }
+  }
+
+  
+  @Override
+  public void objectWritten(String id) {
+    objectsWritten(new long[] { System.currentTimeMillis() }, new String[] { id }, 1);
+  }
+  
+  
+  @Override
+  public synchronized void objectsWritten(long[] timeMillis, String[] ids, int count) {
+    StringBuilder entries = new StringBuilder(count * 64);
+    long time = lastTime;
+    for (int index = 0; index < count; ++index) {
+      time = Math.max(timeMillis[index], time);
+      entries.append(timestamp(Instant.ofEpochMilli(time)))
+          .append(TIME_HASH_DELIMIT).append(ids[index]).append(ENTRY_END);
+    }
+    try {
+      Channels.writeRemaining(
+          channel, ByteBuffer.wrap(entries.toString().getBytes(StandardCharsets.US_ASCII)));
     } catch (IOException iox) {
-      throw new UncheckedIOException("while writing '" + id + "'", iox);
+      throw new UncheckedIOException("while logging " + count + " entries to " + file, iox);
     }
+    lastTime = time;
+  }
+  
+  
+  @Override
+  public void force() throws UncheckedIOException {
+    try {
+      channel.force(false);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on forcing " + file, iox);
+    }
+  }
+
+  /**
+   * Returns the logged (fixed width, UTC) representation of the given instant,
+   * truncated to the second. E.g. {@code 2019-11-15T23:04:04}. Timestamps in this
+   * format sort lexicographically in time order.
+   */
+  public static String timestamp(Instant instant) {
+    String iso = instant.truncatedTo(ChronoUnit.SECONDS).toString();
+    return iso.substring(0, iso.length() - 1);  // sans the 'Z'
   }
 
   @Override
   public void close() throws IOException {
-    writer.close();
+    channel.close();
   }
   
   
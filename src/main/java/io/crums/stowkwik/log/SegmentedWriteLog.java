@@ -0,0 +1,378 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import io.crums.io.FileUtils;
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * A write log split into {@linkplain TableWriteLog table log} segments, rotated by
+ * size or age. A small text <em>segment directory</em> records each sealed segment's
+ * first and last timestamps, so that a reader looking for entries from a given time
+ * on goes straight to the right segment (see {@linkplain SegmentedWriteLogReader}).
+ * Old segments can be {@linkplain #detachBefore(long) detached} (for archiving) or
+ * {@linkplain #deleteBefore(long) deleted}, independently of the others.
+ * <h2>Layout</h2>
+ * <pre>
+ *   dir/
+ *     segments.dir        the segment directory
+ *     seg00000000.tbl     sealed segments..
+ *     seg00000001.tbl
+ *     seg00000002.tbl     the active segment (the last)
+ * </pre>
+ * <p>
+ * The directory's first line names the active segment; each subsequent line
+ * describes a sealed segment: its sequence number, first and last times (UTC millis),
+ * and entry count, space separated. The directory is rewritten (to a temporary file,
+ * then renamed) whenever a segment is sealed or detached.
+ * </p>
+ * <p>
+ * Logged times are non-decreasing across segments. A batch of entries is never split
+ * across segments, so a segment may exceed the maximum size by up to one batch.
+ * </p>
+ */
+public class SegmentedWriteLog implements BatchWriteLog {
+
+  /**
+   * Default maximum segment size (64 MiB).
+   */
+  public final static long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * Name of the segment directory file.
+   */
+  public final static String DIRECTORY_FILE = "segments.dir";
+
+  final static String ACTIVE = "active";
+  final static String SEGMENT_PREFIX = "seg";
+
+
+  /**
+   * A sealed segment's directory entry.
+   */
+  public final static class Segment {
+
+    /** Sequence number. */
+    public final int seq;
+    /** The segment's log file. */
+    public final File file;
+    /** Time (UTC millis) of the segment's first entry. */
+    public final long firstMillis;
+    /** Time (UTC millis) of the segment's last entry. */
+    public final long lastMillis;
+    /** Number of entries in the segment. */
+    public final long count;
+
+    Segment(int seq, File file, long firstMillis, long lastMillis, long count) {
+      this.seq = seq;
+      this.file = file;
+      this.firstMillis = firstMillis;
+      this.lastMillis = lastMillis;
+      this.count = count;
+    }
+
+    @Override
+    public String toString() {
+      return seq + " " + firstMillis + " " + lastMillis + " " + count;
+    }
+  }
+
+
+  /**
+   * Returns the file for the segment with the given sequence number.
+   */
+  static File segmentFile(File dir, int seq) {
+    return new File(dir, SEGMENT_PREFIX + String.format("%08d", seq) + WriteLogs.WLOG_TABLE_EXT);
+  }
+
+
+  /**
+   * Loads the segment directory, and returns the active segment's sequence number.
+   * The sealed segments are added to the given list (in order).
+   *
+   * @return the active segment's sequence number, or -1, if there's no directory file
+   */
+  static int loadDirectory(File dir, List<Segment> sealed) throws UncheckedIOException {
+    File file = new File(dir, DIRECTORY_FILE);
+    if (!file.isFile())
+      return -1;
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on reading " + file, iox);
+    }
+    try {
+      if (lines.isEmpty() || !lines.get(0).startsWith(ACTIVE + " "))
+        throw new CorruptionException("malformed segment directory: " + file);
+      int active = Integer.parseInt(lines.get(0).substring(ACTIVE.length() + 1));
+      int lastSeq = -1;
+      for (String line : lines.subList(1, lines.size())) {
+        String[] fields = line.split(" ");
+        if (fields.length != 4)
+          throw new CorruptionException("malformed segment directory entry '" + line + "': " + file);
+        int seq = Integer.parseInt(fields[0]);
+        if (seq <= lastSeq || seq >= active)
+          throw new CorruptionException("segment " + seq + " out of sequence: " + file);
+        lastSeq = seq;
+        sealed.add(new Segment(
+            seq, segmentFile(dir, seq),
+            Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+      }
+      return active;
+    } catch (NumberFormatException nfx) {
+      throw new CorruptionException("malformed segment directory " + file + ": " + nfx.getMessage());
+    }
+  }
+
+
+
+  private final File dir;
+  private final int idLength;
+  private final List<Segment> sealed = new ArrayList<>();
+
+  private long maxSegmentBytes = DEFAULT_MAX_SEGMENT_BYTES;
+  private long maxSegmentAgeMillis;
+
+  private int activeSeq;
+  private TableWriteLog active;
+  private long activeFirst;
+  private long lastTime;
+
+
+  /**
+   * Opens the segmented log in the given directory, or creates it if it doesn't exist.
+   *
+   * @param dir       the log directory
+   * @param idLength  the byte length of the logged IDs
+   */
+  public SegmentedWriteLog(File dir, int idLength) throws UncheckedIOException, CorruptionException {
+    this.dir = Objects.requireNonNull(dir, "dir");
+    this.idLength = idLength;
+    FileUtils.ensureDir(dir);
+
+    int seq = loadDirectory(dir, sealed);
+    if (seq == -1) {
+      seq = 0;
+      saveDirectory(seq);
+    }
+    this.activeSeq = seq;
+    if (!sealed.isEmpty())
+      lastTime = sealed.get(sealed.size() - 1).lastMillis;
+    openActive();
+  }
+
+
+  private void openActive() throws UncheckedIOException {
+    File file = segmentFile(dir, activeSeq);
+    try {
+      this.active = new TableWriteLog(file, idLength);
+      if (active.count() != 0) {
+        try (TableWriteLogReader reader = new TableWriteLogReader(file)) {
+          activeFirst = reader.timeMillis(0);
+        }
+        lastTime = Math.max(lastTime, active.lastTime());
+      }
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on opening segment " + file, iox);
+    }
+  }
+
+
+  public File getDir() {
+    return dir;
+  }
+
+
+  public int getIdLength() {
+    return idLength;
+  }
+
+
+  /**
+   * Sets the size at which the active segment is rotated.
+   *
+   * @param bytes &ge; 4096 (defaults to {@linkplain #DEFAULT_MAX_SEGMENT_BYTES})
+   */
+  public synchronized void setMaxSegmentBytes(long bytes) {
+    if (bytes < 4096)
+      throw new IllegalArgumentException("bytes " + bytes);
+    this.maxSegmentBytes = bytes;
+  }
+
+
+  public synchronized long getMaxSegmentBytes() {
+    return maxSegmentBytes;
+  }
+
+
+  /**
+   * Sets the age (measured from its first entry) at which the active segment is rotated.
+   *
+   * @param age non-negative; zero (the default) means segments are not rotated by age
+   */
+  public synchronized void setMaxSegmentAge(Duration age) {
+    if (age.isNegative())
+      throw new IllegalArgumentException("age " + age);
+    this.maxSegmentAgeMillis = age.toMillis();
+  }
+
+
+  public synchronized Duration getMaxSegmentAge() {
+    return Duration.ofMillis(maxSegmentAgeMillis);
+  }
+
+
+  /**
+   * Returns the sealed segments, in order.
+   */
+  public synchronized List<Segment> sealedSegments() {
+    return List.copyOf(sealed);
+  }
+
+
+  /**
+   * Returns the active segment's sequence number.
+   */
+  public synchronized int activeSeq() {
+    return activeSeq;
+  }
+
+
+
+  @Override
+  public void objectWritten(String id) throws UncheckedIOException {
+    objectsWritten(new long[] { System.currentTimeMillis() }, new String[] { id }, 1);
+  }
+
+
+  @Override
+  public synchronized void objectsWritten(long[] timeMillis, String[] ids, int count)
+      throws UncheckedIOException {
+    if (count == 0)
+      return;
+    long[] times = new long[count];
+    long time = lastTime;
+    for (int index = 0; index < count; ++index)
+      times[index] = time = Math.max(timeMillis[index], time);
+
+    if (active.count() != 0) {
+      long batchBytes = (long) count * TableWriteLog.recordWidth(idLength);
+      if (active.size() + batchBytes > maxSegmentBytes ||
+          maxSegmentAgeMillis != 0 && times[0] - activeFirst >= maxSegmentAgeMillis)
+        rotateImpl();
+    }
+    if (active.count() == 0)
+      activeFirst = times[0];
+    active.objectsWritten(times, ids, count);
+    lastTime = time;
+  }
+
+
+  /**
+   * Seals the active segment (if it's not empty) and starts a new one.
+   *
+   * @return {@code true} iff a segment was sealed
+   */
+  public synchronized boolean rotate() throws UncheckedIOException {
+    if (active.count() == 0)
+      return false;
+    rotateImpl();
+    return true;
+  }
+
+
+  private void rotateImpl() throws UncheckedIOException {
+    active.force();
+    Segment segment = new Segment(
+        activeSeq, active.getFile(), activeFirst, active.lastTime(), active.count());
+    try {
+      active.close();
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on closing segment " + active.getFile(), iox);
+    }
+    sealed.add(segment);
+    ++activeSeq;
+    saveDirectory(activeSeq);
+    openActive();
+  }
+
+
+  /**
+   * Removes the sealed segments whose entries all predate the given time from the
+   * directory, and returns them. Their files are left in place, for the caller to
+   * archive (move) or delete.
+   *
+   * @param timeMillis UTC millis
+   *
+   * @return the detached segments, in order
+   */
+  public synchronized List<Segment> detachBefore(long timeMillis) throws UncheckedIOException {
+    int count = 0;
+    while (count < sealed.size() && sealed.get(count).lastMillis < timeMillis)
+      ++count;
+    if (count == 0)
+      return List.of();
+    List<Segment> detached = List.copyOf(sealed.subList(0, count));
+    sealed.subList(0, count).clear();
+    saveDirectory(activeSeq);
+    return detached;
+  }
+
+
+  /**
+   * Detaches and deletes the sealed segments whose entries all predate the given time.
+   *
+   * @return the number of segments deleted
+   * @see #detachBefore(long)
+   */
+  public int deleteBefore(long timeMillis) throws UncheckedIOException {
+    List<Segment> detached = detachBefore(timeMillis);
+    for (Segment segment : detached)
+      segment.file.delete();
+    return detached.size();
+  }
+
+
+  @Override
+  public synchronized void force() throws UncheckedIOException {
+    active.force();
+  }
+
+
+  @Override
+  public synchronized void close() throws IOException {
+    active.close();
+  }
+
+
+  private void saveDirectory(int activeSeq) throws UncheckedIOException {
+    StringBuilder contents = new StringBuilder(32 * (sealed.size() + 1));
+    contents.append(ACTIVE).append(' ').append(activeSeq).append('\n');
+    for (Segment segment : sealed)
+      contents.append(segment).append('\n');
+
+    File file = new File(dir, DIRECTORY_FILE);
+    File tmp = new File(dir, DIRECTORY_FILE + ".tmp");
+    try {
+      Files.write(tmp.toPath(), contents.toString().getBytes(StandardCharsets.US_ASCII));
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on saving segment directory " + file, iox);
+    }
+  }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.crums.stowkwik.io.CorruptionException;
+import io.crums.stowkwik.log.SegmentedWriteLog.Segment;
+import io.crums.stowkwik.log.TableWriteLogReader.Entry;
+
+/**
+ * Reads a {@linkplain SegmentedWriteLog segmented write log}. A lookup by time first
+ * selects the segment from the segment directory (by binary search over the sealed
+ * segments' last timestamps), and then binary searches inside that segment. Segments
+ * are opened (mapped) lazily, as they're needed.
+ * <p>
+ * The log may be appended to (and rotated) while it's being read: invoke
+ * {@linkplain #update()} to pick up the changes.
+ * </p>
+ */
+public class SegmentedWriteLogReader implements Channel {
+
+
+  /**
+   * Immutable directory snapshot, swapped on update.
+   */
+  private final static class View {
+    final List<Segment> sealed;
+    final int activeSeq;
+
+    View(List<Segment> sealed, int activeSeq) {
+      this.sealed = sealed;
+      this.activeSeq = activeSeq;
+    }
+  }
+
+
+  private final File dir;
+  private final Map<Integer, TableWriteLogReader> readers = new HashMap<>();
+
+  private volatile View view;
+  private boolean closed;
+
+
+  /**
+   * Opens the segmented log in the given directory for reading.
+   */
+  public SegmentedWriteLogReader(File dir) throws UncheckedIOException, CorruptionException {
+    this.dir = Objects.requireNonNull(dir, "dir");
+    this.view = loadView();
+  }
+
+
+  public File getDir() {
+    return dir;
+  }
+
+
+  private View loadView() {
+    List<Segment> sealed = new ArrayList<>();
+    int active = SegmentedWriteLog.loadDirectory(dir, sealed);
+    if (active == -1)
+      throw new IllegalArgumentException("no segment directory in " + dir);
+    return new View(List.copyOf(sealed), active);
+  }
+
+
+  /**
+   * Reloads the segment directory, and maps any new entries in opened segments.
+   * Readers of detached segments are closed.
+   */
+  public synchronized void update() throws UncheckedIOException {
+    checkOpen();
+    View v = loadView();
+    this.view = v;
+    int firstSeq = v.sealed.isEmpty() ? v.activeSeq : v.sealed.get(0).seq;
+    readers.entrySet().removeIf(e -> {
+      if (e.getKey() >= firstSeq)
+        return false;
+      try {
+        e.getValue().close();
+      } catch (IOException ignore) {  }
+      return true;
+    });
+    // (a segment that was active when opened may have since been appended to, and sealed)
+    for (TableWriteLogReader reader : readers.values())
+      reader.update();
+  }
+
+
+  /**
+   * Returns the sealed segments, in order.
+   */
+  public List<Segment> sealedSegments() {
+    return view.sealed;
+  }
+
+
+  /**
+   * Returns the active segment's sequence number.
+   */
+  public int activeSeq() {
+    return view.activeSeq;
+  }
+
+
+  /**
+   * Returns the total number of (visible) entries.
+   */
+  public long count() {
+    View v = this.view;
+    long count = 0;
+    for (Segment segment : v.sealed)
+      count += segment.count;
+    TableWriteLogReader active = activeReader(v);
+    return active == null ? count : count + active.count();
+  }
+
+
+  /**
+   * Returns the entries logged at or after the given time, in order.
+   *
+   * @param timeMillis UTC millis
+   * @see #streamFrom(long)
+   */
+  public List<Entry> listFrom(long timeMillis) throws UncheckedIOException {
+    try (Stream<Entry> entries = streamFrom(timeMillis)) {
+      return entries.collect(Collectors.toList());
+    }
+  }
+
+
+  /**
+   * Streams the entries logged at or after the given time, in order.
+   *
+   * @param timeMillis UTC millis
+   */
+  public Stream<Entry> streamFrom(long timeMillis) throws UncheckedIOException {
+    View v = this.view;
+    // first sealed segment whose last entry is at or after timeMillis
+    int lo = 0;
+    int hi = v.sealed.size();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (v.sealed.get(mid).lastMillis < timeMillis)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    List<Integer> seqs = new ArrayList<>(v.sealed.size() - lo + 1);
+    for (int index = lo; index < v.sealed.size(); ++index)
+      seqs.add(v.sealed.get(index).seq);
+    seqs.add(v.activeSeq);
+
+    Iterator<Entry> entries = new Iterator<>() {
+      int segIndex = -1;
+      TableWriteLogReader reader;
+      long index;
+      long end;
+
+      @Override
+      public boolean hasNext() {
+        while (index == end) {
+          if (++segIndex == seqs.size())
+            return false;
+          reader = reader(seqs.get(segIndex));
+          if (reader == null) {
+            end = index = 0;
+            continue;
+          }
+          end = reader.count();
+          index = segIndex == 0 ? reader.indexOf(timeMillis) : 0;
+        }
+        return true;
+      }
+
+      @Override
+      public Entry next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        return reader.get(index++);
+      }
+    };
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(
+            entries, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE),
+        false);
+  }
+
+
+  private TableWriteLogReader activeReader(View v) {
+    return reader(v.activeSeq);
+  }
+
+
+  /**
+   * Returns the reader for the given segment, opening it if need be; {@code null}
+   * if it's the active segment, and its file is not yet created.
+   */
+  private synchronized TableWriteLogReader reader(int seq) throws UncheckedIOException {
+    checkOpen();
+    TableWriteLogReader reader = readers.get(seq);
+    if (reader == null) {
+      File file = SegmentedWriteLog.segmentFile(dir, seq);
+      if (seq == view.activeSeq && !file.isFile())
+        return null;
+      try {
+        reader = new TableWriteLogReader(file);
+      } catch (IOException iox) {
+        throw new UncheckedIOException("on opening segment " + file, iox);
+      }
+      readers.put(seq, reader);
+    }
+    return reader;
+  }
+
+
+  private void checkOpen() {
+    if (closed)
+      throw new IllegalStateException("closed: " + dir);
+  }
+
+
+  @Override
+  public synchronized boolean isOpen() {
+    return !closed;
+  }
+
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed)
+      return;
+    closed = true;
+    for (TableWriteLogReader reader : readers.values())
+      reader.close();
+    readers.clear();
+  }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import static io.crums.util.IntegralStrings.hexToBytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+import io.crums.stowkwik.io.Channels;
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * Logs writes in a binary table of fixed-width records, about half the size of the
+ * {@linkplain PlainTextWriteLog plain text} log. The file begins with a header,
+ * followed by the records. All numbers are big endian.
+ * <pre>
+ *   HEADER (16 bytes):
+ *     magic            8 bytes   "STOWWLOG"
+ *     version          4 bytes
+ *     ID length        4 bytes   (digest length)
+ *
+ *   RECORD:
+ *     time             6 bytes   UTC millis (unsigned; good till the year 10889)
+ *     ID               ID length bytes
+ *     CRC-32C          4 bytes   (of the above)
+ * </pre>
+ * <p>
+ * Record times are non-decreasing (even if the system clock is set back), so the
+ * log can be binary searched by time. On opening, a partial record at the end of
+ * the file (as from a crash) is truncated.
+ * </p>
+ *
+ * @see TableWriteLogReader
+ */
+public class TableWriteLog implements BatchWriteLog {
+
+  public final static int VERSION = 1;
+
+  final static byte[] MAGIC = "STOWWLOG".getBytes(StandardCharsets.US_ASCII);
+
+  final static int HEADER_BYTES = 16;
+  final static int TIME_BYTES = 6;
+  final static int CRC_BYTES = 4;
+
+  final static long MAX_TIME = (1L << 48) - 1;
+
+
+  /**
+   * Returns the width of a record for IDs of the given byte length.
+   */
+  public static int recordWidth(int idLength) {
+    return TIME_BYTES + idLength + CRC_BYTES;
+  }
+
+
+  /**
+   * Reads and validates the header of the given log file, and returns its ID length.
+   */
+  static int readHeader(FileChannel channel, File file) throws IOException, CorruptionException {
+    if (channel.size() < HEADER_BYTES)
+      throw new CorruptionException("missing log header: " + file);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    if (Channels.readFully(channel, 0, header) != HEADER_BYTES)
+      throw new CorruptionException("missing log header: " + file);
+    header.flip();
+    byte[] magic = new byte[MAGIC.length];
+    header.get(magic);
+    if (!Arrays.equals(magic, MAGIC))
+      throw new CorruptionException("not a table write log: " + file);
+    int version = header.getInt();
+    if (version > VERSION)
+      throw new CorruptionException("unsupported log version " + version + ": " + file);
+    int idLength = header.getInt();
+    if (idLength < 1 || idLength > 1024)
+      throw new CorruptionException("illegal ID length " + idLength + ": " + file);
+    return idLength;
+  }
+
+
+  /**
+   * Returns the CRC-32C of a record's leading bytes (all but its checksum).
+   */
+  static int checksum(ByteBuffer record, int offset, int length) {
+    return checksum(new CRC32C(), record.duplicate(), offset, length);
+  }
+
+
+  /**
+   * Returns the CRC-32C of the given range, using the given (reset) {@code crc} and
+   * {@code work} buffer (whose position and limit are modified).
+   */
+  static int checksum(CRC32C crc, ByteBuffer work, int offset, int length) {
+    crc.reset();
+    crc.update(work.limit(offset + length).position(offset));
+    return (int) crc.getValue();
+  }
+
+
+
+  private final File file;
+  private final FileChannel channel;
+  private final int idLength;
+  private final ByteBuffer record;
+
+  private long size;
+  private long lastTime;
+
+
+  /**
+   * Opens the given log file, or creates it if it doesn't exist.
+   *
+   * @param file      the log file
+   * @param idLength  the byte length of the logged IDs. If the file exists, it
+   *                  must have been created with the same ID length.
+   */
+  public TableWriteLog(File file, int idLength) throws IOException, CorruptionException {
+    if (idLength < 1 || idLength > 1024)
+      throw new IllegalArgumentException("idLength " + idLength);
+    this.file = file;
+    this.idLength = idLength;
+    this.record = ByteBuffer.allocate(recordWidth(idLength));
+    this.channel = FileChannel.open(
+        file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+    try {
+      long fileSize = channel.size();
+      if (fileSize == 0) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.put(MAGIC).putInt(VERSION).putInt(idLength).flip();
+        Channels.writeRemaining(channel, 0, header);
+        fileSize = HEADER_BYTES;
+      } else {
+        int loggedLength = readHeader(channel, file);
+        if (loggedLength != idLength)
+          throw new IllegalArgumentException(
+              "idLength " + idLength + " does not match logged ID length " + loggedLength + ": " + file);
+        long whole = HEADER_BYTES + (fileSize - HEADER_BYTES) / record.capacity() * record.capacity();
+        if (whole != fileSize) {
+          channel.truncate(whole);
+          fileSize = whole;
+        }
+        if (fileSize > HEADER_BYTES) {
+          ByteBuffer last = ByteBuffer.allocate(TIME_BYTES);
+          Channels.readFully(channel, fileSize - record.capacity(), last);
+          this.lastTime = readTime(last.flip(), 0);
+        }
+      }
+      this.size = fileSize;
+    } catch (IOException | RuntimeException x) {
+      channel.close();
+      throw x;
+    }
+  }
+
+
+  public File getFile() {
+    return file;
+  }
+
+
+  public int getIdLength() {
+    return idLength;
+  }
+
+
+  /**
+   * Returns the size of the log file, in bytes.
+   */
+  public synchronized long size() {
+    return size;
+  }
+
+
+  /**
+   * Returns the number of entries logged.
+   */
+  public synchronized long count() {
+    return (size - HEADER_BYTES) / record.capacity();
+  }
+
+
+  /**
+   * Returns the time (UTC millis) of the last logged entry, or 0, if empty.
+   */
+  public synchronized long lastTime() {
+    return lastTime;
+  }
+
+
+  @Override
+  public void objectWritten(String id) {
+    objectsWritten(new long[] { System.currentTimeMillis() }, new String[] { id }, 1);
+  }
+
+
+  @Override
+  public synchronized void objectsWritten(long[] timeMillis, String[] ids, int count) {
+    final int width = record.capacity();
+    ByteBuffer batch = count == 1 ? record.clear() : ByteBuffer.allocate(count * width);
+    long time = lastTime;
+    for (int index = 0; index < count; ++index) {
+      byte[] digest = hexToBytes(ids[index]);
+      if (digest.length != idLength)
+        throw new IllegalArgumentException("ID length mismatch: " + ids[index]);
+      time = Math.max(timeMillis[index], time);
+      int start = batch.position();
+      putTime(batch, time);
+      batch.put(digest);
+      batch.putInt(checksum(batch, start, width - CRC_BYTES));
+    }
+    batch.flip();
+    try {
+      Channels.writeRemaining(channel, size, batch);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("while logging " + count + " entries to " + file, iox);
+    }
+    size += (long) count * width;
+    lastTime = time;
+  }
+
+
+  /**
+   * Forces the log to storage.
+   */
+  @Override
+  public void force() throws UncheckedIOException {
+    try {
+      channel.force(false);
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on forcing " + file, iox);
+    }
+  }
+
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+
+
+  static void putTime(ByteBuffer buffer, long millis) {
+    if (millis < 0 || millis > MAX_TIME)
+      throw new IllegalArgumentException("time out of bounds: " + millis);
+    buffer.putShort((short) (millis >>> 32)).putInt((int) millis);
+  }
+
+
+  static long readTime(ByteBuffer buffer, int offset) {
+    return
+        ((buffer.getShort(offset) & 0xffffL) << 32) |
+        (buffer.getInt(offset + 2) & 0xffffffffL);
+  }
+
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import static io.crums.util.IntegralStrings.toHex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+import io.crums.stowkwik.io.CorruptionException;
+
+/**
+ * Reads a {@linkplain TableWriteLog table write log}. The log is memory-mapped, so
+ * reads are positional and lock-free; the accessors that return primitives (or copy
+ * into a caller's array) don't allocate, nor does {@linkplain #indexOf(long) binary
+ * searching} by time. The log may be appended to while it's being read: invoke
+ * {@linkplain #update()} to pick up new records.
+ * <p>
+ * Records are mapped in 1 GB chunks (of whole records), so the number of records
+ * is not limited by the size of a single mapping.
+ * </p>
+ */
+public class TableWriteLogReader implements Channel {
+
+  /**
+   * A log entry.
+   */
+  public final static class Entry {
+
+    /** UTC millis. */
+    public final long timeMillis;
+    /** Hexadecimal ID. */
+    public final String hex;
+
+    private Entry(long timeMillis, String hex) {
+      this.timeMillis = timeMillis;
+      this.hex = hex;
+    }
+
+    public Instant time() {
+      return Instant.ofEpochMilli(timeMillis);
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(timeMillis) ^ hex.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this)
+        return true;
+      else if (!(obj instanceof Entry))
+        return false;
+      Entry other = (Entry) obj;
+      return timeMillis == other.timeMillis && hex.equals(other.hex);
+    }
+
+    @Override
+    public String toString() {
+      return time() + " " + hex;
+    }
+  }
+
+
+  /**
+   * Allocation-free entry callback.
+   *
+   * @see TableWriteLogReader#forEach(long, Visitor)
+   */
+  @FunctionalInterface
+  public interface Visitor {
+    /**
+     * Visits the entry at the given {@code index}.
+     *
+     * @param index       the entry's index
+     * @param timeMillis  the entry's time (UTC millis)
+     * @param id          the entry's ID. The array is reused across invocations.
+     */
+    void visit(long index, long timeMillis, byte[] id);
+  }
+
+
+  private final static int CHUNK_BYTES = 1 << 30;
+
+
+  /**
+   * Immutable mapped state, swapped on update.
+   */
+  private final static class View {
+    final ByteBuffer[] chunks;
+    final long count;
+
+    View(ByteBuffer[] chunks, long count) {
+      this.chunks = chunks;
+      this.count = count;
+    }
+  }
+
+
+  private final File path;
+  private final FileChannel file;
+  private final int idLength;
+  private final int recordWidth;
+  private final long recordsPerChunk;
+
+  private volatile View view;
+
+
+  /**
+   * Opens the given log file for reading.
+   */
+  public TableWriteLogReader(File logFile) throws IOException, CorruptionException {
+    this.path = Objects.requireNonNull(logFile);
+    this.file = FileChannel.open(path.toPath(), StandardOpenOption.READ);
+    try {
+      this.idLength = TableWriteLog.readHeader(file, path);
+      this.recordWidth = TableWriteLog.recordWidth(idLength);
+      this.recordsPerChunk = CHUNK_BYTES / recordWidth;
+      this.view = new View(new ByteBuffer[0], 0);
+      updateView();
+    } catch (IOException | RuntimeException x) {
+      file.close();
+      throw x;
+    }
+  }
+
+
+  public File getFile() {
+    return path;
+  }
+
+
+  /**
+   * Returns the byte length of the logged IDs.
+   */
+  public int getIdLength() {
+    return idLength;
+  }
+
+
+  /**
+   * Maps any records appended since the last update.
+   *
+   * @return {@code true} iff there are new records
+   */
+  public boolean update() throws UncheckedIOException {
+    try {
+      synchronized (file) {
+        return updateView();
+      }
+    } catch (IOException iox) {
+      throw new UncheckedIOException("on updating " + path, iox);
+    }
+  }
+
+
+  private boolean updateView() throws IOException {
+    View current = this.view;
+    long count = (file.size() - TableWriteLog.HEADER_BYTES) / recordWidth;
+    if (count <= current.count)
+      return false;
+
+    int chunkCount = (int) ((count + recordsPerChunk - 1) / recordsPerChunk);
+    ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+    // full chunks don't change
+    int reused = current.count == 0 ? 0 : (int) (current.count / recordsPerChunk);
+    System.arraycopy(current.chunks, 0, chunks, 0, Math.min(reused, chunkCount));
+    for (int k = reused; k < chunkCount; ++k) {
+      long first = k * recordsPerChunk;
+      long records = Math.min(recordsPerChunk, count - first);
+      chunks[k] = file.map(
+          MapMode.READ_ONLY,
+          TableWriteLog.HEADER_BYTES + first * recordWidth,
+          records * recordWidth);
+    }
+    this.view = new View(chunks, count);
+    return true;
+  }
+
+
+  /**
+   * Returns the number of (mapped) entries.
+   */
+  public long count() {
+    return view.count;
+  }
+
+
+  /**
+   * Returns the time (UTC millis) of the entry at the given index.
+   */
+  public long timeMillis(long index) {
+    View v = checkedView(index);
+    return TableWriteLog.readTime(chunk(v, index), offset(index));
+  }
+
+
+  /**
+   * Copies the ID of the entry at the given index into the given array.
+   *
+   * @param index the entry's index
+   * @param id    array of length &ge; {@linkplain #getIdLength()}
+   */
+  public void copyId(long index, byte[] id) {
+    View v = checkedView(index);
+    chunk(v, index).get(offset(index) + TableWriteLog.TIME_BYTES, id, 0, idLength);
+  }
+
+
+  /**
+   * Returns the entry at the given index, after verifying its checksum.
+   *
+   * @throws CorruptionException if the checksum doesn't match
+   */
+  public Entry get(long index) throws CorruptionException {
+    View v = checkedView(index);
+    verify(v, index);
+    byte[] id = new byte[idLength];
+    ByteBuffer chunk = chunk(v, index);
+    int offset = offset(index);
+    chunk.get(offset + TableWriteLog.TIME_BYTES, id);
+    return new Entry(TableWriteLog.readTime(chunk, offset), toHex(id));
+  }
+
+
+  /**
+   * Returns the index of the first entry logged at or after the given time, or
+   * {@linkplain #count()}, if there's no such entry.
+   *
+   * @param timeMillis UTC millis
+   */
+  public long indexOf(long timeMillis) {
+    View v = this.view;
+    long lo = 0;
+    long hi = v.count;
+    while (lo < hi) {
+      long mid = (lo + hi) >>> 1;
+      if (TableWriteLog.readTime(chunk(v, mid), offset(mid)) < timeMillis)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+
+  /**
+   * Returns the index of the first entry logged at or after the given instant.
+   *
+   * @see #indexOf(long)
+   */
+  public long indexOf(Instant time) {
+    return indexOf(time.toEpochMilli());
+  }
+
+
+  /**
+   * Visits the entries from the given index on, in order. Checksums are not verified.
+   *
+   * @param fromIndex &ge; 0
+   * @param visitor   the callback
+   *
+   * @see #verify()
+   */
+  public void forEach(long fromIndex, Visitor visitor) {
+    View v = this.view;
+    if (fromIndex < 0 || fromIndex > v.count)
+      throw new IndexOutOfBoundsException(fromIndex);
+    byte[] id = new byte[idLength];
+    for (long index = fromIndex; index < v.count; ++index) {
+      ByteBuffer chunk = chunk(v, index);
+      int offset = offset(index);
+      chunk.get(offset + TableWriteLog.TIME_BYTES, id);
+      visitor.visit(index, TableWriteLog.readTime(chunk, offset), id);
+    }
+  }
+
+
+  /**
+   * Verifies the checksums of all (mapped) entries.
+   *
+   * @throws CorruptionException on the first mismatch
+   */
+  public void verify() throws CorruptionException {
+    View v = this.view;
+    CRC32C crc = new CRC32C();
+    for (int k = 0; k < v.chunks.length; ++k) {
+      ByteBuffer chunk = v.chunks[k];
+      ByteBuffer work = chunk.duplicate();
+      long first = k * recordsPerChunk;
+      long last = Math.min(v.count, first + recordsPerChunk);
+      for (long index = first; index < last; ++index)
+        verify(crc, chunk, work, index);
+    }
+  }
+
+
+  private void verify(View v, long index) throws CorruptionException {
+    ByteBuffer chunk = chunk(v, index);
+    verify(new CRC32C(), chunk, chunk.duplicate(), index);
+  }
+
+
+  private void verify(CRC32C crc, ByteBuffer chunk, ByteBuffer work, long index)
+      throws CorruptionException {
+    int offset = offset(index);
+    int crcOffset = offset + recordWidth - TableWriteLog.CRC_BYTES;
+    if (chunk.getInt(crcOffset) != TableWriteLog.checksum(crc, work, offset, crcOffset - offset))
+      throw new CorruptionException("checksum mismatch at entry " + index + ": " + path);
+  }
+
+
+  private View checkedView(long index) {
+    View v = this.view;
+    if (index < 0 || index >= v.count)
+      throw new IndexOutOfBoundsException(index);
+    return v;
+  }
+
+
+  private ByteBuffer chunk(View v, long index) {
+    return v.chunks[(int) (index / recordsPerChunk)];
+  }
+
+
+  private int offset(long index) {
+    return (int) (index % recordsPerChunk) * recordWidth;
+  }
+
+
+  @Override
+  public boolean isOpen() {
+    return file.isOpen();
+  }
+
+
+  /**
+   * Closes the underlying file. (The mapped entries remain readable.)
+   */
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+}
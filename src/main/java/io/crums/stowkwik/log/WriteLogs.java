@@ -25,6 +25,10 @@ public class WriteLogs {
   public final static String WLOG_PREFIX = "wlog";
   public final static String WLOG_PLAINTEXT_EXT = ".txt";
   public final static String WLOG_TABLE_EXT = ".tbl";
+  /**
+   * Extension of the {@linkplain SegmentedWriteLog segmented log} directory.
+   */
+  public final static String WLOG_SEGMENTED_EXT = ".segs";
   
   
   /**
@@ -87,6 +91,75 @@ public class WriteLogs {
   
   
   
+  /**
+   * Returns a path to the table (binary) log file for the given root {@code dir} and
+   * extension {@code ext}. On return the log subdirectory is guaranteed to exist.
+   * 
+   * @see TableWriteLog
+   */
+  public static File declareTableLogFile(File dir, String ext) {
+    return declareLogFile(dir, ext, WLOG_TABLE_EXT);
+  }
+  
+  
+  /**
+   * Determines whether there's an existing table log file. (Like its plain text
+   * sibling, creates the log subdirectory.)
+   */
+  public static boolean hasTableLogFile(BaseHashedObjectManager<?> manager) {
+    return
+        declareTableLogFile(manager.getRootDir(), manager.getFileExtension())
+        .isFile();
+  }
+  
+  
+  public static TableWriteLog newTableWriteLog(BaseHashedObjectManager<?> manager) throws UncheckedIOException {
+    try {
+      File logFile = declareTableLogFile(manager.getRootDir(), manager.getFileExtension());
+      return new TableWriteLog(logFile, manager.getHashFunction().digestLength());
+    } catch (IOException iox) {
+      throw new UncheckedIOException(iox);
+    }
+  }
+  
+  
+  public static TableWriteLogReader newTableWriteLogReader(File dir, String ext) throws UncheckedIOException {
+    try {
+      File logFile = declareTableLogFile(dir, ext);
+      return new TableWriteLogReader(logFile);
+    } catch (IOException iox) {
+      throw new UncheckedIOException(iox);
+    }
+  }
+  
+  
+  
+  /**
+   * Returns a path to the segmented log directory for the given root {@code dir} and
+   * extension {@code ext}. On return the log subdirectory is guaranteed to exist;
+   * the segmented log directory itself is not created.
+   * 
+   * @see SegmentedWriteLog
+   */
+  public static File declareSegmentedLogDir(File dir, String ext) {
+    return declareLogFile(dir, ext, WLOG_SEGMENTED_EXT);
+  }
+  
+  
+  public static SegmentedWriteLog newSegmentedWriteLog(BaseHashedObjectManager<?> manager)
+      throws UncheckedIOException {
+    File logDir = declareSegmentedLogDir(manager.getRootDir(), manager.getFileExtension());
+    return new SegmentedWriteLog(logDir, manager.getHashFunction().digestLength());
+  }
+  
+  
+  public static SegmentedWriteLogReader newSegmentedWriteLogReader(File dir, String ext)
+      throws UncheckedIOException {
+    return new SegmentedWriteLogReader(declareSegmentedLogDir(dir, ext));
+  }
+  
+  
+  
   private static File declareLogFile(File dir, String ext, String logTypeExt) {
     if (ext == null || ext.isEmpty())
       throw new IllegalArgumentException("empty ext: '" + ext + "'");
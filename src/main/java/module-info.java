@@ -8,4 +8,6 @@ module io.crums.stowkwik {
   exports io.crums.stowkwik.log;
   exports io.crums.stowkwik.main;
   
+  uses io.crums.stowkwik.HashFunction;
+  
 }
\ No newline at end of file
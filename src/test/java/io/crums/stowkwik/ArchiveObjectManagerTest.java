@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import io.crums.testing.IoTestCase;
+
+/**
+ *
+ */
+public class ArchiveObjectManagerTest extends IoTestCase {
+
+  private final static String EXT = ".arc";
+
+
+  @Test
+  public void testEmpty() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> store = new BinaryObjectManager<>(new File(dir, "store"), EXT, new MockCodec());
+    File archive = new File(dir, "empty.stow");
+    assertEquals(0, StoreArchive.export(store, archive));
+
+    ArchiveObjectManager<Mock> view = new ArchiveObjectManager<>(archive, new MockCodec());
+    assertEquals(0, view.count());
+    assertEquals(0, view.streamIds().count());
+    assertFalse(view.containsId(store.getId(new Mock())));
+  }
+
+
+  @Test
+  public void testExportAndRead() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> store = new BinaryObjectManager<>(new File(dir, "store"), EXT, new MockCodec());
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 300; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      ids.add(store.write(mock));
+    }
+
+    File archive = new File(dir, "mocks.stow");
+    assertEquals(ids.size(), StoreArchive.export(store, archive));
+    try {
+      StoreArchive.export(store, archive);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+
+    ArchiveObjectManager<Mock> view = new ArchiveObjectManager<>(archive, new MockCodec());
+    assertEquals(ids.size(), view.count());
+    for (int i = 0; i < ids.size(); ++i) {
+      String id = ids.get(i);
+      assertTrue(view.containsId(id));
+      Mock mock = view.read(id);
+      assertEquals(i, mock.c);
+      assertEquals(id, view.getId(mock));
+    }
+    assertEquals(store.readAll(ids), view.readAll(ids));
+
+    List<String> sorted = ids.stream().sorted().collect(Collectors.toList());
+    assertEquals(sorted, view.streamIds().collect(Collectors.toList()));
+    assertEquals(
+        store.streamObjects().collect(Collectors.toList()),
+        view.streamObjects().collect(Collectors.toList()));
+
+    String id = sorted.get(123);
+    assertEquals(store.read(id), view.readUsingPrefix(id.substring(0, 12)));
+    String prefix = id.substring(0, 1);
+    assertEquals(
+        sorted.stream().filter(s -> s.compareTo(prefix) >= 0).collect(Collectors.toList()),
+        view.streamIds(prefix).collect(Collectors.toList()));
+    try {
+      view.readUsingPrefix(prefix);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+
+    String missing = store.getId(new Mock());
+    if (!ids.contains(missing)) {
+      assertFalse(view.containsId(missing));
+      try {
+        view.read(missing);
+        fail();
+      } catch (NotFoundException expected) {  }
+    }
+    try {
+      view.write(new Mock());
+      fail();
+    } catch (UnsupportedOperationException expected) {  }
+  }
+
+
+  @Test
+  public void testBytes() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager store = new BytesManager(new File(dir, "store"), EXT);
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 50; ++i)
+      ids.add(store.write(ByteBuffer.wrap(("object " + i).getBytes(StandardCharsets.UTF_8))));
+
+    File archive = new File(dir, "bytes.stow");
+    StoreArchive.export(store, archive);
+    ArchiveObjectManager<ByteBuffer> view = ArchiveObjectManager.ofBytes(archive);
+    for (int i = 0; i < ids.size(); ++i) {
+      ByteBuffer bytes = view.read(ids.get(i));
+      assertTrue(bytes.isReadOnly());
+      assertEquals("object " + i, StandardCharsets.UTF_8.decode(bytes).toString());
+      assertEquals(ids.get(i), view.getId(view.read(ids.get(i))));
+    }
+  }
+
+}
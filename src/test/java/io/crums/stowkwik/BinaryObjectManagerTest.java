@@ -4,7 +4,20 @@
 package io.crums.stowkwik;
 
 
+import static org.junit.Assert.*;
+
 import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import io.crums.stowkwik.io.Channels;
+import io.crums.stowkwik.io.CorruptionException;
 
 /**
  * 
@@ -20,5 +33,158 @@ public class BinaryObjectManagerTest extends NoBiggiesObjectManagerTest {
   protected BinaryObjectManager<Mock> makeStore(File dir) {
     return new BinaryObjectManager<>(dir, ext, new MockCodec());
   }
+  
+  
+  @Test
+  public void testMetadata() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> store = makeStore(dir);
+    
+    StoreMetadata meta = StoreMetadata.load(dir, ext);
+    assertEquals(store.getMetadata(), meta);
+    assertEquals(BaseHashedObjectManager.DEFAULT_HASH_ALGO, meta.getHashAlgo());
+    assertEquals(256, meta.getMaxFilesPerDir());
+    
+    String id = store.write(new Mock());
+    
+    // reopen
+    store = makeStore(dir);
+    store.verify();
+    assertTrue(store.containsId(id));
+    
+    try {
+      new BinaryObjectManager<>(dir, ext, new MockCodec(), "SHA-256");
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
 
+  
+  @Test
+  public void testReadAllWithExecutor() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> store = makeStore(dir);
+    ExecutorService exec = Executors.newFixedThreadPool(3);
+    try {
+      store.setReadExecutor(exec, 4);
+      
+      List<String> ids = new ArrayList<>();
+      for (int i = 0; i < 64; ++i) {
+        Mock mock = new Mock();
+        mock.c = i;
+        ids.add(store.write(mock));
+      }
+      List<Mock> mocks = store.readAll(ids);
+      for (int i = 0; i < 64; ++i)
+        assertEquals(i, mocks.get(i).c);
+      
+      // errors are propagated
+      File file = store.getFilepath(ids.get(40));
+      try (FileOutputStream out = new FileOutputStream(file)) {
+        out.write(new byte[new MockCodec().maxBytes() + 1]);
+      }
+      try {
+        store.readAll(ids);
+        fail();
+      } catch (CorruptionException expected) {  }
+    } finally {
+      exec.shutdown();
+    }
+  }
+  
+  
+  @Test
+  public void testReadAllWithStalledExecutor() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> store = makeStore(dir);
+    List<Runnable> queued = new ArrayList<>();
+    store.setReadExecutor(queued::add, 4);   // (never runs anything)
+    
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 16; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      ids.add(store.write(mock));
+    }
+    List<Mock> mocks = store.readAll(ids);
+    for (int i = 0; i < 16; ++i)
+      assertEquals(i, mocks.get(i).c);
+    
+    // abandoned helpers are no-ops, if they ever do run
+    assertEquals(3, queued.size());
+    queued.forEach(Runnable::run);
+  }
+  
+  @Test
+  public void testExclusiveWrite() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> store = makeStore(dir);
+    Mock mock = new Mock();
+    mock.c = 3;
+    String id = store.write(mock);
+    File file = store.getFilepath(id);
+    
+    // the existing file is never replaced, and no temp files are left behind
+    try {
+      Channels.writeToNewFile(file, ByteBuffer.wrap(new byte[] { 1 }));
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    assertEquals(mock, store.read(id));
+    for (String name : file.getParentFile().list())
+      assertTrue(name, name.endsWith(ext));
+  }
+  
+    @Test
+  public void testStalePath() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> store = makeStore(dir);
+    Mock mock = new Mock();
+    String id = store.write(mock);
+    File file = store.getFilepath(id);
+    assertEquals(file, store.hexPath.findCached(id));
+    
+    // move the file one level deeper (where it would still be found)
+    File subdir = new File(file.getParentFile(), id.substring(2, 4));
+    assertTrue(subdir.mkdir());
+    File moved = new File(subdir, id.substring(4) + ext);
+    assertTrue(file.renameTo(moved));
+    
+    assertEquals(file, store.hexPath.findCached(id));
+    assertEquals(mock, store.read(id));
+    assertEquals(moved, store.hexPath.findCached(id));
+    assertEquals(List.of(mock), store.readAll(List.of(id)));
+    
+    // a file deleted behind the store's back isn't contained (nor still cached)
+    assertTrue(moved.delete());
+    assertEquals(moved, store.hexPath.findCached(id));
+    assertFalse(store.containsId(id));
+    assertNull(store.hexPath.findCached(id));
+  }
+  
+  
+  @Test
+  public void testRemove() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> store = makeStore(dir);
+    Mock mock = new Mock();
+    String id = store.write(mock);
+    File file = store.getFilepath(id);
+    
+    // push the file down a level, so that removing it leaves an empty subdir
+    File subdir = new File(file.getParentFile(), id.substring(2, 4));
+    assertTrue(subdir.mkdir());
+    assertTrue(file.renameTo(new File(subdir, id.substring(4) + ext)));
+    
+    assertTrue(store.remove(id));
+    assertFalse(store.containsId(id));
+    assertFalse(subdir.exists());
+    assertTrue(file.getParentFile().isDirectory());   // top level subdirs are kept
+    try {
+      store.read(id);
+      fail();
+    } catch (NotFoundException expected) {  }
+    assertFalse(store.remove(id));
+    
+    assertEquals(id, store.write(mock));
+    assertEquals(mock, store.read(id));
+  }
 }
@@ -4,8 +4,18 @@
 package io.crums.stowkwik;
 
 
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
 
 /**
  * <tt>BytesManager</tt> test. Also, a test <tt>ObjectManager.map</tt> method.
@@ -22,7 +32,7 @@ public class BytesManagerTest extends NoBiggiesObjectManagerTest {
   @Override
   protected ObjectManager<Mock> makeStore(File dir) {
     
-    BytesManager manager = new BytesManager(dir, ext);
+    BytesManager manager = newBytesManager(dir);
     MockCodec codec = new MockCodec();
     
     return ObjectManager.map(
@@ -43,4 +53,114 @@ public class BytesManagerTest extends NoBiggiesObjectManagerTest {
         });
   }
   
+  
+  protected BytesManager newBytesManager(File dir) {
+    return new BytesManager(dir, ext);
+  }
+  
+  
+  @Test
+  public void testStreamingReads() throws IOException {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager store = newBytesManager(dir);
+    
+    StringBuilder text = new StringBuilder();
+    for (int line = 0; line < 2000; ++line)
+      text.append("line ").append(line).append(": \u00e9t\u00e9\n");
+    byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+    String id = store.write(ByteBuffer.wrap(bytes));
+    
+    try (SeekableByteChannel channel = store.openChannel(id)) {
+      assertEquals(bytes.length, channel.size());
+      ByteBuffer tail = ByteBuffer.allocate(10);
+      channel.position(bytes.length - 10).read(tail);
+      assertEquals(ByteBuffer.wrap(bytes, bytes.length - 10, 10), tail.flip());
+    }
+    
+    try (InputStream in = store.openInputStream(id)) {
+      assertArrayEquals(bytes, in.readAllBytes());
+    }
+    
+    assertFalse(store.hasReader());
+    try {
+      store.getReader(id);
+      fail();
+    } catch (UnsupportedOperationException expected) {  }
+    
+    store.setReaderCharset(StandardCharsets.UTF_8);
+    assertTrue(store.hasReader());
+    try (BufferedReader reader = new BufferedReader(store.getReader(id))) {
+      assertEquals("line 0: \u00e9t\u00e9", reader.readLine());
+      assertEquals(1999, reader.lines().count());
+    }
+    
+    try {
+      store.openChannel(store.getId(ByteBuffer.wrap(new byte[32])));
+      fail();
+    } catch (NotFoundException expected) {  }
+  }
+  
+  
+  @Test
+  public void testRangeReads() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager store = newBytesManager(dir);
+    
+    byte[] bytes = new byte[200_000];
+    new Random(9).nextBytes(bytes);
+    String id = store.write(ByteBuffer.wrap(bytes));
+    
+    assertEquals(ByteBuffer.wrap(bytes, 0, 64), store.read(id, 0, 64));
+    assertEquals(ByteBuffer.wrap(bytes, 150_000, 1000), store.read(id, 150_000, 1000));
+    // short at the end
+    assertEquals(ByteBuffer.wrap(bytes, 199_990, 10), store.read(id, 199_990, 64));
+    assertEquals(0, store.read(id, 300_000, 64).remaining());
+    assertEquals(10, store.read(id, 199_990, Integer.MAX_VALUE).capacity());
+    
+    ByteBuffer header = ByteBuffer.allocate(16);
+    ByteBuffer middle = ByteBuffer.allocateDirect(100);
+    ByteBuffer tail = ByteBuffer.allocate(50);
+    long total = store.read(
+        id,
+        new long[] { 0, 100_000, 199_980 },
+        new ByteBuffer[] { header, middle, tail });
+    assertEquals(16 + 100 + 20, total);
+    assertEquals(ByteBuffer.wrap(bytes, 0, 16), header.flip());
+    assertEquals(ByteBuffer.wrap(bytes, 100_000, 100), middle.flip());
+    assertEquals(ByteBuffer.wrap(bytes, 199_980, 20), tail.flip());
+    
+    try {
+      store.read(id, -1, 10);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+  @Test
+  public void testHashersKeyedByFunction() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    HashFunction sha256 = HashFunction.forName("SHA-256");
+    // same name as the default, different function
+    HashFunction impostor = new HashFunction() {
+      @Override
+      public String name() {
+        return BaseHashedObjectManager.DEFAULT_HASH_ALGO;
+      }
+      @Override
+      public int digestLength() {
+        return sha256.digestLength();
+      }
+      @Override
+      public Hasher newHasher() {
+        return sha256.newHasher();
+      }
+    };
+    BytesManager md5Store = new BytesManager(new File(dir, "md5"), ext);
+    BytesManager otherStore = new BytesManager(new File(dir, "other"), ext, impostor, 1024);
+
+    ByteBuffer bytes = ByteBuffer.wrap("same thread, same name".getBytes(StandardCharsets.UTF_8));
+    assertEquals(32, md5Store.write(bytes.duplicate()).length());
+    assertEquals(64, otherStore.write(bytes.duplicate()).length());
+    assertEquals(32, md5Store.write(bytes.duplicate()).length());
+  }
+
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * {@linkplain CachingObjectManager} test. Also runs the standard suite thru the cache.
+ */
+public class CachingObjectManagerTest extends NoBiggiesObjectManagerTest {
+
+  public CachingObjectManagerTest() {
+    super(".cach");
+  }
+
+
+  @Override
+  protected ObjectManager<Mock> makeStore(File dir) {
+    return new CachingObjectManager<>(new BinaryObjectManager<>(dir, ext, new MockCodec()), 64);
+  }
+
+
+  /**
+   * Counts reads of the base store.
+   */
+  static class CountingReads extends WrappedObjectManager<Mock> {
+
+    final AtomicInteger reads = new AtomicInteger();
+
+    CountingReads(ObjectManager<Mock> base) {
+      super(base);
+    }
+
+    @Override
+    public Mock read(String id) throws NotFoundException, UncheckedIOException {
+      reads.incrementAndGet();
+      return super.read(id);
+    }
+  }
+
+
+  @Test
+  public void testHits() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    CountingReads base = new CountingReads(new BinaryObjectManager<>(dir, ext, new MockCodec()));
+    CachingObjectManager<Mock> store = new CachingObjectManager<>(base, 16);
+
+    Mock mock = new Mock();
+    String id = store.write(mock);
+
+    for (int count = 10; count-- > 0; )
+      assertEquals(mock, store.read(id));
+
+    assertEquals(1, base.reads.get());
+    assertEquals(9, store.hits());
+    assertEquals(1, store.misses());
+    assertEquals(0.9, store.hitRate(), 0.0001);
+
+    try {
+      store.read(store.getId(newMock(-1)));
+      fail();
+    } catch (NotFoundException expected) {  }
+  }
+
+
+  @Test
+  public void testSkewedReads() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    CountingReads base = new CountingReads(new BinaryObjectManager<>(dir, ext, new MockCodec()));
+    final int capacity = 64;
+    CachingObjectManager<Mock> store = new CachingObjectManager<>(base, capacity);
+
+    List<String> hot = new ArrayList<>();
+    for (int index = 0; index < capacity / 2; ++index)
+      hot.add(store.write(newMock(index)));
+    List<String> cold = new ArrayList<>();
+    for (int index = 0; index < 20 * capacity; ++index)
+      cold.add(store.write(newMock(capacity + index)));
+
+    // warm up the hot set..
+    for (int pass = 0; pass < 4; ++pass)
+      hot.forEach(store::read);
+
+    // ..then interleave a one-off scan of the cold set
+    int hotReads = base.reads.get();
+    for (int index = 0; index < cold.size(); ++index) {
+      store.read(cold.get(index));
+      store.read(hot.get(index % hot.size()));
+    }
+    int coldMisses = cold.size();
+    int hotMisses = base.reads.get() - hotReads - coldMisses;
+
+    // plain LRU would've missed on most of the hot reads
+    assertTrue("hot misses: " + hotMisses, hotMisses < cold.size() / 10);
+    assertTrue(store.evictions() > 0);
+    assertTrue(store.getCache().size() <= capacity + 16);
+  }
+
+
+  @Test
+  public void testByteBound() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> base = new BinaryObjectManager<>(dir, ext, new MockCodec());
+    final int mockBytes = new MockCodec().maxBytes();
+    CachingObjectManager<Mock> store =
+        new CachingObjectManager<>(base, 32 * mockBytes, m -> mockBytes, 32);
+
+    for (int index = 0; index < 256; ++index)
+      store.read(store.write(newMock(index)));
+
+    assertTrue(store.getCache().weight() <= 32 * mockBytes);
+    assertTrue(store.evictions() > 0);
+  }
+
+
+  @Test
+  public void testConcurrentMisses() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    final CyclicBarrier barrier = new CyclicBarrier(8);
+    final CountingReads base =
+        new CountingReads(new BinaryObjectManager<>(dir, ext, new MockCodec())) {
+          @Override
+          public Mock read(String id) {
+            // hold the leader long enough for the others to pile up
+            try {
+              Thread.sleep(50);
+            } catch (InterruptedException ix) {
+              throw new RuntimeException(ix);
+            }
+            return super.read(id);
+          }
+        };
+    CachingObjectManager<Mock> store = new CachingObjectManager<>(base, 16);
+    Mock mock = newMock(7);
+    String id = store.write(mock);
+
+    ExecutorService exec = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Mock>> results = new ArrayList<>();
+      for (int count = 8; count-- > 0; )
+        results.add(exec.submit(() -> { barrier.await(); return store.read(id); }));
+      for (Future<Mock> result : results)
+        assertEquals(mock, result.get());
+    } finally {
+      exec.shutdown();
+    }
+    assertEquals(1, base.reads.get());
+  }
+
+
+  private Mock newMock(int c) {
+    Mock mock = new Mock();
+    mock.c = c;
+    return mock;
+  }
+
+
+  @Test
+  public void testRemoveInvalidates() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> base = new BinaryObjectManager<>(dir, ext, new MockCodec());
+    CachingObjectManager<Mock> store = new CachingObjectManager<>(base, 16);
+
+    Mock mock = new Mock();
+    mock.c = 7;
+    String id = store.write(mock);
+    assertEquals(mock, store.read(id));   // (cached)
+
+    assertTrue(store.remove(id));
+    assertFalse(base.containsId(id));
+    try {
+      store.read(id);
+      fail();
+    } catch (NotFoundException expected) {  }
+    assertFalse(store.remove(id));
+
+    // removed from the base directly
+    assertEquals(id, store.write(mock));
+    assertEquals(mock, store.read(id));
+    assertTrue(base.remove(id));
+    store.invalidate(id);
+    try {
+      store.read(id);
+      fail();
+    } catch (NotFoundException expected) {  }
+
+    CachingObjectManager<Mock> wrapping = new CachingObjectManager<>(new CountingReads(base), 16);
+    try {
+      wrapping.remove(id);
+      fail();
+    } catch (UnsupportedOperationException expected) {  }
+  }
+
+}
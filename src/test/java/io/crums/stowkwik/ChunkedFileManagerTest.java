@@ -0,0 +1,120 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import io.crums.util.IntegralStrings;
+
+/**
+ * Tree-hashed (chunked) {@code FileManager} test.
+ */
+public class ChunkedFileManagerTest extends FileManagerTest {
+
+  private final static int CHUNK_SIZE = 4096;
+
+
+  @Override
+  protected FileManager newFileManager(File dir) {
+    return new FileManager(
+        dir, ext, HashFunction.forName(BaseHashedObjectManager.DEFAULT_HASH_ALGO), true, CHUNK_SIZE);
+  }
+
+
+  @Test
+  public void testMultiChunk() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    FileManager store = newFileManager(dir);
+    assertEquals(CHUNK_SIZE, store.getChunkSize());
+
+    // 11 chunks, the last partial
+    byte[] contents = new byte[10 * CHUNK_SIZE + 1001];
+    new Random(7).nextBytes(contents);
+
+    File input = new File(dir, "input.bin");
+    try (FileOutputStream out = new FileOutputStream(input)) {
+      out.write(contents);
+    }
+
+    String expected = IntegralStrings.toHex(treeHash(contents, 0, contents.length));
+    assertEquals(expected, store.getId(input));
+
+    String id = store.write(input);
+    assertEquals(expected, id);
+    assertTrue(store.containsId(id));
+    assertEquals(contents.length, store.read(id).length());
+
+    // reopening a populated store checks the scheme..
+    assertEquals(id, newFileManager(dir).streamIds().findFirst().get());
+
+    // ..and so a straight-hash manager balks
+    try {
+      new FileManager(dir, ext, BaseHashedObjectManager.DEFAULT_HASH_ALGO, true);
+      fail();
+    } catch (IllegalArgumentException expectedX) { }
+  }
+
+
+  @Test
+  public void testHashPool() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    FileManager store = newFileManager(dir);
+    assertNotNull(store.getHashPool());
+    assertNotSame(ForkJoinPool.commonPool(), store.getHashPool());
+
+    byte[] contents = new byte[5 * CHUNK_SIZE + 17];
+    new Random(11).nextBytes(contents);
+    File input = new File(dir, "input.bin");
+    try (FileOutputStream out = new FileOutputStream(input)) {
+      out.write(contents);
+    }
+    String expected = IntegralStrings.toHex(treeHash(contents, 0, contents.length));
+    assertEquals(expected, store.getId(input));
+
+    ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      store.setHashPool(pool);
+      assertSame(pool, store.getHashPool());
+      assertEquals(expected, store.getId(input));
+    } finally {
+      pool.shutdown();
+    }
+    store.setHashPool(null);
+    assertNotSame(pool, store.getHashPool());
+
+    // no-op for straight hashes
+    FileManager straight = new FileManager(new File(dir, "straight"), ext, false);
+    straight.setHashPool(pool);
+    assertNull(straight.getHashPool());
+  }
+
+
+  /** Straight, sequential reference implementation. */
+  private byte[] treeHash(byte[] contents, int off, int len) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance(BaseHashedObjectManager.DEFAULT_HASH_ALGO);
+    int chunks = Math.max(1, (len + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    if (chunks == 1) {
+      digest.update((byte) 0);
+      digest.update(contents, off, len);
+      return digest.digest();
+    }
+    int k = Integer.highestOneBit(chunks - 1) * CHUNK_SIZE;
+    byte[] left = treeHash(contents, off, k);
+    byte[] right = treeHash(contents, off + k, len - k);
+    digest.update((byte) 1);
+    digest.update(left);
+    digest.update(right);
+    return digest.digest();
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * {@code BinaryObjectManager} test suite run against a {@linkplain CompressingObjectManager},
+ * plus compression-specific tests.
+ */
+public class CompressingObjectManagerTest extends BinaryObjectManagerTest {
+
+  private final static String TEXT_EXT = ".txt";
+
+
+  @Override
+  protected CompressingObjectManager<Mock> makeStore(File dir) {
+    CompressingObjectManager<Mock> store = new CompressingObjectManager<>(dir, ext, new MockCodec());
+    store.setMinCompressBytes(1);
+    return store;
+  }
+
+
+  @Test
+  public void testCompressedSameIds() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    CompressingObjectManager<String> store =
+        new CompressingObjectManager<>(new File(dir, "zipped"), TEXT_EXT, new TextCodec());
+    BinaryObjectManager<String> plain =
+        new BinaryObjectManager<>(new File(dir, "plain"), TEXT_EXT, new TextCodec());
+
+    String record = record(7);
+    String id = store.write(record);
+    assertEquals(plain.write(record), id);
+    assertTrue(store.getFilepath(id).length() < record.length());
+    assertEquals(record, store.read(id));
+    assertEquals(record, store.readUsingPrefix(id.substring(0, 10)));
+    store.verify();
+
+    // writing it again validates the existing (compressed) file
+    assertEquals(id, store.write(record));
+
+    // tiny ones are stored as is
+    assertEquals(2, store.getFilepath(store.write("hi")).length());
+  }
+
+
+  @Test
+  public void testMixedStore() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    CompressingObjectManager<String> store = new CompressingObjectManager<>(dir, TEXT_EXT, new TextCodec());
+    List<String> ids = new ArrayList<>();
+    store.setMinCompressBytes(Integer.MAX_VALUE);
+    for (int i = 0; i < 10; ++i)
+      ids.add(store.write(record(i)));
+    assertEquals(record(0).length(), store.getFilepath(ids.get(0)).length());
+
+    store.setMinCompressBytes(CompressingObjectManager.DEFAULT_MIN_COMPRESS_BYTES);
+    for (int i = 10; i < 20; ++i)
+      ids.add(store.write(record(i)));
+    assertTrue(store.getFilepath(ids.get(10)).length() < record(10).length());
+
+    for (int i = 0; i < ids.size(); ++i)
+      assertEquals(record(i), store.read(ids.get(i)));
+    assertEquals(ids.size(), store.streamObjects().count());
+    store.verify();
+  }
+
+
+  @Test
+  public void testIdScheme() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    CompressingObjectManager<String> store = new CompressingObjectManager<>(dir, TEXT_EXT, new TextCodec());
+    store.write(record(1));
+    assertEquals(CompressingObjectManager.ID_SCHEME, StoreMetadata.load(dir, TEXT_EXT).getIdScheme());
+    try {
+      new BinaryObjectManager<>(dir, TEXT_EXT, new TextCodec());
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    try {
+      StoreArchive.export(store, new File(dir.getParentFile(), dir.getName() + ".stow"));
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+
+    File plainDir = new File(dir.getParentFile(), dir.getName() + "-plain");
+    new BinaryObjectManager<>(plainDir, TEXT_EXT, new TextCodec()).write(record(1));
+    try {
+      new CompressingObjectManager<>(plainDir, TEXT_EXT, new TextCodec());
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+
+  @Test
+  public void testRawTagged() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    CompressingObjectManager<String> store = new CompressingObjectManager<>(dir, TEXT_EXT, new TextCodec());
+    // an uncompressible encoding that starts with the magic bytes
+    String text = new String(new byte[] { (byte) 0xc5, 'S', 'Z', 0, 'x' }, StandardCharsets.ISO_8859_1);
+    String id = store.write(text);
+    assertEquals(text, store.read(id));
+    assertEquals(text.length() + 4, store.getFilepath(id).length());
+  }
+
+
+  @Test
+  public void testDictionary() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    CompressingObjectManager<String> store = new CompressingObjectManager<>(dir, TEXT_EXT, new TextCodec());
+    assertNull(store.trainDictionary(10, 1024));
+
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 40; ++i)
+      ids.add(store.write(record(i)));
+    long undictSize = store.getFilepath(ids.get(0)).length();
+
+    byte[] dict = store.trainDictionary(20, 4096);
+    assertNotNull(dict);
+    String id = store.write(record(100));
+    assertTrue(store.getFilepath(id).length() < undictSize);
+    ids.add(id);
+
+    // reopen: the dictionary is loaded, and both kinds of objects read back
+    store = new CompressingObjectManager<>(dir, TEXT_EXT, new TextCodec());
+    assertArrayEquals(dict, store.getDictionary());
+    for (int i = 0; i < 40; ++i)
+      assertEquals(record(i), store.read(ids.get(i)));
+    assertEquals(record(100), store.read(id));
+
+    // retire it: objects compressed with it remain readable
+    store.setDictionary(null);
+    assertEquals(record(101), store.read(store.write(record(101))));
+    assertEquals(record(100), store.read(id));
+    assertEquals("", StoreMetadata.load(dir, TEXT_EXT).getDictionary());
+
+    // the current dictionary is what the metadata says, regardless of file times
+    byte[] other = "{\"type\":\"account\",\"status\":\"active\"}".getBytes(StandardCharsets.ISO_8859_1);
+    store.setDictionary(other);
+    store.setDictionary(dict);
+    new File(dir, StoreMetadata.FILE_PREFIX + TEXT_EXT + ".dict." +
+        StoreMetadata.load(dir, TEXT_EXT).getDictionary()).setLastModified(1000);
+    store = new CompressingObjectManager<>(dir, TEXT_EXT, new TextCodec());
+    assertArrayEquals(dict, store.getDictionary());
+    assertEquals(store.getMetadata(), StoreMetadata.load(dir, TEXT_EXT));
+  }
+
+
+  private static String record(int i) {
+    return
+        "{\"type\":\"account\",\"id\":" + i + ",\"owner\":\"user-" + i +
+        "\",\"status\":\"active\",\"region\":\"us-east-1\",\"tags\":[\"alpha\",\"beta\",\"gamma\"]," +
+        "\"balance\":" + (i * 31 % 1000) + ",\"currency\":\"USD\"}";
+  }
+
+
+  private static class TextCodec implements Codec<String> {
+
+    @Override
+    public void write(String item, ByteBuffer dtn) {
+      dtn.put(item.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    public int maxBytes() {
+      return 1024;
+    }
+
+    @Override
+    public String read(ByteBuffer src) {
+      return StandardCharsets.ISO_8859_1.decode(src).toString();
+    }
+  }
+
+}
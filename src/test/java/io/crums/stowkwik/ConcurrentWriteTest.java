@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.crums.stowkwik.io.CorruptionException;
+import io.crums.testing.IoTestCase;
+
+/**
+ * Contention on the write path. Many threads write the same objects at (about)
+ * the same time; each object should only ever be written once. (Writes that
+ * arrive after an object's file is written still validate it.)
+ */
+public class ConcurrentWriteTest extends IoTestCase {
+
+  private final static int THREADS = 16;
+
+
+  /**
+   * Counts file I/O on the write path.
+   */
+  static class CountingManager extends BinaryObjectManager<Mock> {
+
+    final AtomicInteger writes = new AtomicInteger();
+    final AtomicInteger validations = new AtomicInteger();
+
+    CountingManager(File dir, String ext) {
+      super(dir, ext, new MockCodec());
+    }
+
+    @Override
+    protected void writeObjectFile(File file, Mock object, ByteBuffer buffer) throws UncheckedIOException {
+      writes.incrementAndGet();
+      super.writeObjectFile(file, object, buffer);
+    }
+
+    @Override
+    protected void validateFile(File file, Mock object, ByteBuffer buffer) throws CorruptionException {
+      validations.incrementAndGet();
+      super.validateFile(file, object, buffer);
+    }
+  }
+
+
+  @Test
+  public void testSameObject() throws Exception {
+    CountingManager store = new CountingManager(getMethodOutputFilepath(new Object() { }), ".cnc");
+
+    Mock mock = new Mock();
+    mock.c = 2;
+
+    List<String> ids = writeConcurrently(store, List.of(mock), 1);
+
+    String expected = store.getId(mock);
+    for (String id : ids)
+      assertEquals(expected, id);
+
+    assertEquals(1, store.writes.get());
+    assertEquals(mock, store.read(expected));
+  }
+
+
+  @Test
+  public void testContendedBatch() throws Exception {
+    Object label = new Object() { };
+    CountingManager store = new CountingManager(getMethodOutputFilepath(label), ".cnc");
+
+    final int count = 64;
+    List<Mock> mocks = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      mocks.add(mock);
+    }
+
+    long start = System.nanoTime();
+    writeConcurrently(store, mocks, 4);
+    long nanos = System.nanoTime() - start;
+
+    System.out.println(
+        method(label) + ": " + THREADS + " threads x " + (4 * count) + " writes in " +
+        (nanos / 1000_000) + " ms; " + store.writes.get() + " file writes, " +
+        store.validations.get() + " validations");
+
+    // every object is written exactly once (repeats are validated)
+    assertEquals(count, store.writes.get());
+    for (Mock mock : mocks)
+      assertEquals(mock, store.read(store.getId(mock)));
+  }
+
+
+  private List<String> writeConcurrently(
+      ObjectManager<Mock> store, List<Mock> mocks, int rounds) throws Exception {
+
+    CyclicBarrier barrier = new CyclicBarrier(THREADS);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>(THREADS);
+      for (int t = 0; t < THREADS; ++t)
+        futures.add(executor.submit(() -> {
+          List<String> ids = new ArrayList<>();
+          for (int r = 0; r < rounds; ++r) {
+            for (Mock mock : mocks) {
+              barrier.await();
+              ids.add(store.write(mock));
+            }
+          }
+          return ids;
+        }));
+
+      List<String> ids = new ArrayList<>();
+      for (Future<List<String>> future : futures)
+        ids.addAll(future.get());
+      return ids;
+
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.crums.stowkwik.HashFunction.Hasher;
+import io.crums.testing.IoTestCase;
+
+/**
+ * Compares {@code FileManager}'s file hashing strategies across file sizes. The
+ * timing comparison only runs with {@code -Dperftest=true}; otherwise, only
+ * agreement among the strategies is checked.
+ */
+public class FileHashingPerfTest extends IoTestCase {
+
+  private final static int[] SIZES = {
+      4 * 1024, 64 * 1024, 1024 * 1024, 4 * 1024 * 1024, 16 * 1024 * 1024, 64 * 1024 * 1024
+  };
+
+  private final static int PERF_BYTES_PER_SIZE = 256 * 1024 * 1024;
+
+
+  interface Strategy {
+    void digest(FileChannel channel, Hasher digest) throws IOException;
+  }
+
+
+  /**
+   * What {@code FileManager} did before: a new buffer per call, 8 KiB direct above 128 KiB.
+   */
+  private final static Strategy LEGACY = (channel, digest) -> {
+    long bytes = channel.size();
+    ByteBuffer buffer =
+        bytes > 128 * 1024 ?
+            ByteBuffer.allocateDirect(8 * 1024) :
+              ByteBuffer.allocate(Math.min((int) bytes, 4 * 1024));
+    while (channel.read(buffer) != -1) {
+      buffer.flip();
+      digest.update(buffer);
+      buffer.clear();
+    }
+  };
+
+  private final static Strategy READ = FileManager::digestRead;
+
+  private final static Strategy MAPPED = FileManager::digestMapped;
+
+
+  @Test
+  public void testStrategiesAgree() throws IOException {
+    File dir = getMethodOutputFilepath(new Object() { });
+    assertTrue(dir.mkdirs());
+    HashFunction md5 = HashFunction.forName("MD5");
+    for (int size : new int[] { 1, 4095, 64 * 1024 + 3, 2 * 1024 * 1024 + 5 }) {
+      File file = makeFile(dir, size);
+      byte[] expected = digest(file, LEGACY, md5);
+      assertArrayEquals(expected, digest(file, READ, md5));
+      assertArrayEquals(expected, digest(file, MAPPED, md5));
+    }
+  }
+
+
+  @Test
+  public void testPerf() throws IOException {
+    Object label = new Object() { };
+    if (!"true".equalsIgnoreCase(System.getProperty(ObjectManagerTest.PERF_FLAG))) {
+      System.out.println("Skipping " + method(label) + "; to run set -D" + ObjectManagerTest.PERF_FLAG + "=true");
+      return;
+    }
+    File dir = getMethodOutputFilepath(label);
+    assertTrue(dir.mkdirs());
+
+    for (String algo : new String[] { "MD5", "SHA-256" }) {
+      HashFunction function = HashFunction.forName(algo);
+      System.out.println(method(label) + ": " + algo + " (microseconds per file)");
+      System.out.printf("%12s %12s %12s %12s%n", "bytes", "legacy", "read", "mapped");
+      for (int size : SIZES) {
+        File file = makeFile(dir, size);
+        int reps = Math.max(3, PERF_BYTES_PER_SIZE / size);
+        // warm up, then measure
+        time(file, LEGACY, function, reps);
+        time(file, READ, function, reps);
+        time(file, MAPPED, function, reps);
+        System.out.printf(
+            "%12d %12.1f %12.1f %12.1f%n",
+            size,
+            time(file, LEGACY, function, reps),
+            time(file, READ, function, reps),
+            time(file, MAPPED, function, reps));
+        file.delete();
+      }
+    }
+  }
+
+
+  private double time(File file, Strategy strategy, HashFunction function, int reps) throws IOException {
+    long start = System.nanoTime();
+    for (int count = reps; count-- > 0; )
+      digest(file, strategy, function);
+    return (System.nanoTime() - start) / 1000.0 / reps;
+  }
+
+
+  private byte[] digest(File file, Strategy strategy, HashFunction function) throws IOException {
+    Hasher hasher = function.newHasher();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      strategy.digest(channel, hasher);
+    }
+    return hasher.digest();
+  }
+
+
+  private File makeFile(File dir, int size) throws IOException {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    File file = new File(dir, "f" + size);
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(bytes);
+    }
+    return file;
+  }
+
+}
@@ -4,14 +4,23 @@
 package io.crums.stowkwik;
 
 
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.Test;
+
 import io.crums.stowkwik.io.Channels;
 
 /**
@@ -45,7 +54,7 @@ public class FileManagerTest extends NoBiggiesObjectManagerTest {
     if (!staging.mkdirs() && !staging.isDirectory())
       throw new IllegalStateException(staging.toString());
     
-    FileManager manager = new FileManager(dir, ext, moveOnWrite);
+    FileManager manager = newFileManager(dir);
     MockCodec codec = new MockCodec();
     AtomicInteger count = new AtomicInteger();
     
@@ -76,6 +85,74 @@ public class FileManagerTest extends NoBiggiesObjectManagerTest {
   }
   
   
+  protected FileManager newFileManager(File dir) {
+    return new FileManager(dir, ext, moveOnWrite);
+  }
+  
+  
+  @Test
+  public void testTransferTo() throws IOException {
+    File dir = getMethodOutputFilepath(new Object() { });
+    FileManager store = newFileManager(dir);
+    
+    byte[] contents = new byte[100_003];
+    new Random(11).nextBytes(contents);
+    File input = new File(dir, "input.bin");
+    Files.write(input.toPath(), contents);
+    String id = store.write(input);
+    
+    ByteArrayOutputStream sink = new ByteArrayOutputStream();
+    try (WritableByteChannel out = java.nio.channels.Channels.newChannel(sink)) {
+      assertEquals(contents.length, store.transferTo(id, out));
+      assertArrayEquals(contents, sink.toByteArray());
+      
+      sink.reset();
+      assertEquals(1000, store.transferTo(id, 65_000, 1000, out));
+      assertArrayEquals(Arrays.copyOfRange(contents, 65_000, 66_000), sink.toByteArray());
+      
+      sink.reset();
+      assertEquals(3, store.transferTo(id, 100_000, -1, out));
+      assertArrayEquals(Arrays.copyOfRange(contents, 100_000, 100_003), sink.toByteArray());
+      
+      try {
+        store.transferTo(id, 100_000, 4, out);
+        fail();
+      } catch (IllegalArgumentException expected) {  }
+      
+      // offset + len overflows
+      try {
+        store.transferTo(id, 1000, Long.MAX_VALUE, out);
+        fail();
+      } catch (IllegalArgumentException expected) {  }
+    }
+  }
+  
+  
+  @Test
+  public void testWriteNeverReplaces() throws IOException {
+    File dir = getMethodOutputFilepath(new Object() { });
+    FileManager store = newFileManager(new File(dir, "store"));
+    
+    File input = new File(dir, "input.bin");
+    Files.write(input.toPath(), new byte[] { 1, 2, 3 });
+    String id = store.write(input);
+    File file = store.getFilepath(id);
+    
+    // a colliding (corrupt) write to an existing file is rejected..
+    File other = new File(dir, "other.bin");
+    Files.write(other.toPath(), new byte[] { 4, 5 });
+    try {
+      store.writeObjectFile(file, other, null);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(file.toPath()));
+    assertTrue(other.exists());
+    assertEquals(1, file.getParentFile().list().length);  // (no temp files left)
+    
+    // ..and a write of the same contents is validated against it
+    Files.write(input.toPath(), new byte[] { 1, 2, 3 });
+    assertEquals(id, store.write(input));
+  }
   
 
 }
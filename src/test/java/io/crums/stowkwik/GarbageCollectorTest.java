@@ -0,0 +1,215 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import io.crums.stowkwik.io.OffHeapIdSet;
+import io.crums.testing.IoTestCase;
+
+/**
+ *
+ */
+public class GarbageCollectorTest extends IoTestCase {
+
+  private final static String EXT = ".gc";
+
+
+  /**
+   * Objects are text of the form {@code name[ id]*}.
+   */
+  private static ByteBuffer node(String name, String... refs) {
+    StringBuilder text = new StringBuilder(name);
+    for (String ref : refs)
+      text.append(' ').append(ref);
+    return ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static Collection<String> refs(ByteBuffer node) {
+    String[] tokens = StandardCharsets.UTF_8.decode(node.duplicate()).toString().split(" ");
+    return Arrays.asList(tokens).subList(1, tokens.length);
+  }
+
+
+  @Test
+  public void testMarkAndSweep() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager store = new BytesManager(dir, EXT);
+
+    // a long chain (reachable), a diamond (reachable), and some garbage
+    List<String> chain = new ArrayList<>();
+    String head = store.write(node("tail"));
+    chain.add(head);
+    for (int i = 0; i < 500; ++i) {
+      head = store.write(node("link" + i, head));
+      chain.add(head);
+    }
+    String bottom = store.write(node("bottom"));
+    String left = store.write(node("left", bottom));
+    String right = store.write(node("right", bottom));
+    String top = store.write(node("top", left, right, "00000000000000000000000000000000"));
+
+    List<String> garbage = new ArrayList<>();
+    String junk = store.write(node("junk"));
+    garbage.add(junk);
+    garbage.add(store.write(node("junk-parent", junk, bottom)));
+    for (int i = 0; i < 20; ++i)
+      garbage.add(store.write(node("junk" + i)));
+
+    GarbageCollector<ByteBuffer> gc = new GarbageCollector<>(store, GarbageCollectorTest::refs);
+    gc.setParallelism(4);
+
+    List<String> roots = List.of(head, top);
+    OffHeapIdSet marks = gc.mark(roots, 1000);
+    assertEquals(chain.size() + 4, marks.size());   // (the dangling ref isn't marked)
+
+    // nothing's old enough to sweep
+    assertEquals(0, gc.sweep(marks, System.currentTimeMillis() - 60_000));
+
+    assertEquals(garbage.size(), gc.sweep(marks, System.currentTimeMillis() + 60_000));
+    for (String id : garbage)
+      assertFalse(store.containsId(id));
+    for (String id : chain)
+      assertTrue(store.containsId(id));
+    for (String id : List.of(bottom, left, right, top))
+      assertTrue(store.containsId(id));
+
+    // objects written just now are protected from a full collection
+    String fresh = store.write(node("fresh"));
+    assertEquals(0, gc.collect(roots));
+    assertTrue(store.containsId(fresh));
+  }
+
+
+  @Test
+  public void testDanglingRootsAndRefsDontFillMarks() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager store = new BytesManager(dir, EXT);
+    String[] dangling = new String[8];
+    for (int i = 0; i < dangling.length; ++i)
+      dangling[i] = String.format("%032x", i + 1);
+    String root = store.write(node("root", dangling));
+
+    GarbageCollector<ByteBuffer> gc = new GarbageCollector<>(store, GarbageCollectorTest::refs);
+    List<String> roots = new ArrayList<>(Arrays.asList(dangling));
+    roots.add(root);
+    OffHeapIdSet marks = gc.mark(roots, 1);
+    assertEquals(1, marks.size());
+    assertTrue(marks.contains(root));
+  }
+
+
+  /**
+   * A moved (or copied) object file keeps its source file's timestamp, so a
+   * file's age says nothing about when it was written to the store.
+   */
+  @Test
+  public void testObjectsWrittenDuringCollectionAreSpared() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    File staging = new File(dir, "staging");
+    assertTrue(staging.mkdirs());
+    FileManager store = new FileManager(new File(dir, "store"), EXT);
+    final long longAgo = System.currentTimeMillis() - 3_600_000;
+
+    File garbage = new File(staging, "garbage");
+    Files.write(garbage.toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+    assertTrue(garbage.setLastModified(longAgo));
+    String garbageId = store.write(garbage);
+
+    GarbageCollector<File> gc = new GarbageCollector<>(store, file -> List.of());
+    long started = System.currentTimeMillis();
+    OffHeapIdSet marks = gc.mark(Collections.emptyList(), 10);
+
+    // written (moved) after the mark phase started, with an old timestamp
+    File fresh = new File(staging, "fresh");
+    Files.write(fresh.toPath(), "fresh".getBytes(StandardCharsets.UTF_8));
+    assertTrue(fresh.setLastModified(longAgo));
+    String freshId = store.write(fresh);
+    assertTrue(store.read(freshId).lastModified() < started);
+
+    assertEquals(1, gc.sweep(marks, started));
+    assertFalse(store.containsId(garbageId));
+    assertTrue(store.containsId(freshId));
+  }
+
+
+  /**
+   * A sweep that filtered an object before it was written again must not remove it
+   * while (or after) the write validates the existing file.
+   */
+  @Test
+  public void testSweepRacingRewrite() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    AtomicReference<Set<String>> written = new AtomicReference<>();
+    AtomicReference<Thread> sweeper = new AtomicReference<>();
+    AtomicBoolean waited = new AtomicBoolean();
+    BytesManager[] holder = new BytesManager[1];
+    BytesManager store = new BytesManager(dir, EXT) {
+      @Override
+      protected void validateFile(File file, ByteBuffer object, ByteBuffer buffer) {
+        // the sweep removes the object mid-validation (if it can)
+        String id = getId(object);
+        Thread thread = new Thread(() -> holder[0].removeUnless(id, written.get()));
+        sweeper.set(thread);
+        thread.start();
+        try {
+          thread.join(200);
+        } catch (InterruptedException ix) {
+          throw new IllegalStateException(ix);
+        }
+        waited.set(thread.isAlive());
+        super.validateFile(file, object, buffer);
+      }
+    };
+    holder[0] = store;
+
+    String id = store.write(node("again"));
+    written.set(store.startWriteTracking());
+    assertEquals(id, store.write(node("again")));
+    sweeper.get().join();
+    assertTrue("removal waited for the write", waited.get());
+    assertTrue(store.containsId(id));
+    assertEquals(node("again"), store.read(id));
+    store.stopWriteTracking(written.get());
+
+    // unless written, it's removed
+    assertTrue(store.removeUnless(id, Set.of()));
+    assertFalse(store.containsId(id));
+  }
+
+
+  @Test
+  public void testThrottledSweep() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager store = new BytesManager(dir, EXT);
+    for (int i = 0; i < 10; ++i)
+      store.write(node("junk" + i));
+
+    GarbageCollector<ByteBuffer> gc = new GarbageCollector<>(store, GarbageCollectorTest::refs);
+    gc.setMaxRemovesPerSecond(50);
+    OffHeapIdSet marks = gc.mark(Collections.emptyList(), 1);
+    long start = System.nanoTime();
+    assertEquals(10, gc.sweep(marks, System.currentTimeMillis() + 60_000));
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    assertTrue("took " + millis + " ms", millis >= 150);
+    assertEquals(0, store.streamIds().count());
+  }
+
+}
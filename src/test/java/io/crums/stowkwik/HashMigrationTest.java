@@ -0,0 +1,165 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.crums.testing.IoTestCase;
+
+/**
+ * MD5 to SHA-256 {@linkplain HashMigration} test.
+ */
+public class HashMigrationTest extends IoTestCase {
+
+  private final static String EXT = ".mig";
+  private final static int MAX_BYTES = 64 * 1024;
+
+
+  @Test
+  public void testMigrate() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager source = new BytesManager(new File(dir, "md5"), EXT, "MD5", MAX_BYTES);
+    BytesManager target = new BytesManager(new File(dir, "sha256"), EXT, "SHA-256", MAX_BYTES);
+
+    List<String> oldIds = writeRandom(source, 40, new Random(1));
+
+    File mappingFile = new File(dir, "ids.map");
+    try (HashMigration<ByteBuffer> migration = new HashMigration<>(source, target, mappingFile)) {
+      Set<String> rewritten = source.startWriteTracking();
+      assertEquals(oldIds.size(), migration.migrate(4));
+      source.stopWriteTracking(rewritten);
+      assertTrue(rewritten.isEmpty());  // migrated objects are not written back to the source
+      assertEquals(oldIds.size(), migration.mappedCount());
+      for (String oldId : oldIds) {
+        ByteBuffer contents = source.read(oldId);
+        String newId = migration.newId(oldId);
+        assertEquals(target.getId(contents), newId);
+        assertEquals(contents, target.read(newId));
+      }
+    }
+
+    Map<String, String> mapping = HashMigration.loadMapping(mappingFile);
+    assertEquals(oldIds.size(), mapping.size());
+
+    // resuming does nothing
+    try (HashMigration<ByteBuffer> migration = new HashMigration<>(source, target, mappingFile)) {
+      assertEquals(0, migration.migrate(2));
+      assertEquals(mapping, migration.getMapping());
+    }
+  }
+
+
+  @Test
+  public void testCutover() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager source = new BytesManager(new File(dir, "md5"), EXT, "MD5", MAX_BYTES);
+    BytesManager target = new BytesManager(new File(dir, "sha256"), EXT, "SHA-256", MAX_BYTES);
+
+    List<String> oldIds = writeRandom(source, 10, new Random(2));
+
+    File mappingFile = new File(dir, "ids.map");
+    try (HashMigration<ByteBuffer> migration = new HashMigration<>(source, target, mappingFile)) {
+
+      // writes during the migration go to both stores
+      ObjectManager<ByteBuffer> cutover = migration.cutoverManager();
+      List<String> cutoverIds = writeRandom(cutover, 10, new Random(3));
+      for (String oldId : cutoverIds) {
+        assertTrue(source.containsId(oldId));
+        assertTrue(target.containsId(migration.newId(oldId)));
+      }
+
+      // the migration skips those
+      assertEquals(oldIds.size(), migration.migrate(3));
+      assertEquals(oldIds.size() + cutoverIds.size(), migration.mappedCount());
+    }
+  }
+
+
+  @Test
+  public void testDualSignature() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager source = new BytesManager(new File(dir, "md5"), EXT, "MD5", MAX_BYTES);
+    BytesManager target = new BytesManager(new File(dir, "sha256"), EXT, "SHA-256", MAX_BYTES);
+
+    try (HashMigration<ByteBuffer> migration =
+        new HashMigration<>(source, target, new File(dir, "ids.map"))) {
+
+      Random random = new Random(4);
+      // straddle the slice boundaries
+      for (int size : new int[] { 1, 8191, 8192, 8193, 3 * 8192 + 17 }) {
+        byte[] bytes = new byte[size + 5];
+        random.nextBytes(bytes);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 3, size);
+
+        String[] ids = migration.dualSignature(buffer);
+        assertEquals(3, buffer.position());
+        assertEquals(3 + size, buffer.limit());
+        assertEquals(source.getId(buffer), ids[0]);
+        assertEquals(target.getId(buffer), ids[1]);
+      }
+    }
+  }
+
+
+  @Test
+  public void testPartialLineDiscarded() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager source = new BytesManager(new File(dir, "md5"), EXT, "MD5", MAX_BYTES);
+    BytesManager target = new BytesManager(new File(dir, "sha256"), EXT, "SHA-256", MAX_BYTES);
+
+    List<String> oldIds = writeRandom(source, 5, new Random(5));
+
+    File mappingFile = new File(dir, "ids.map");
+    try (HashMigration<ByteBuffer> migration = new HashMigration<>(source, target, mappingFile)) {
+      migration.migrate(1);
+    }
+    // simulate a crash mid-line
+    try (FileWriter writer = new FileWriter(mappingFile, true)) {
+      writer.write("0123456789abcdef 0123");
+    }
+    assertEquals(oldIds.size(), HashMigration.loadMapping(mappingFile).size());
+
+    try (HashMigration<ByteBuffer> migration = new HashMigration<>(source, target, mappingFile)) {
+      assertEquals(oldIds.size(), migration.mappedCount());
+      writeRandom(migration.cutoverManager(), 1, new Random(6));
+    }
+    assertEquals(oldIds.size() + 1, HashMigration.loadMapping(mappingFile).size());
+  }
+
+
+  @Test
+  public void testSameAlgoRejected() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager source = new BytesManager(new File(dir, "a"), EXT, "MD5", MAX_BYTES);
+    BytesManager target = new BytesManager(new File(dir, "b"), EXT, "MD5", MAX_BYTES);
+    try {
+      new HashMigration<>(source, target, new File(dir, "ids.map"));
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+
+  private List<String> writeRandom(ObjectManager<ByteBuffer> store, int count, Random random) {
+    List<String> ids = new ArrayList<>(count);
+    for (int index = 0; index < count; ++index) {
+      byte[] bytes = new byte[1 + random.nextInt(MAX_BYTES)];
+      random.nextBytes(bytes);
+      ids.add(store.write(ByteBuffer.wrap(bytes)));
+    }
+    return ids;
+  }
+
+}
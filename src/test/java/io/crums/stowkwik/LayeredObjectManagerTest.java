@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class LayeredObjectManagerTest extends NoBiggiesObjectManagerTest {
+
+  public LayeredObjectManagerTest() {
+    super(".layr");
+  }
+
+
+  @Override
+  protected LayeredObjectManager<Mock> makeStore(File dir) {
+    return new LayeredObjectManager<>(
+        new BinaryObjectManager<>(new File(dir, "top"), ext, new MockCodec()),
+        new BinaryObjectManager<>(new File(dir, "base"), ext, new MockCodec()));
+  }
+
+
+  private List<String> writeMocks(ObjectManager<Mock> store, int first, int count) {
+    List<String> ids = new ArrayList<>(count);
+    for (int i = first; i < first + count; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      ids.add(store.write(mock));
+    }
+    return ids;
+  }
+
+
+  @Test
+  public void testClone() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> base1 = new BinaryObjectManager<>(new File(dir, "base1"), ext, new MockCodec());
+    PackedObjectManager<Mock> base2 = new PackedObjectManager<>(new File(dir, "base2"), ext, new MockCodec());
+    List<String> ids = writeMocks(base1, 0, 30);
+    ids.addAll(writeMocks(base2, 30, 30));
+    // overlap
+    assertEquals(ids.get(45), base1.write(base2.read(ids.get(45))));
+
+    LayeredObjectManager<Mock> clone = new LayeredObjectManager<>(
+        new BinaryObjectManager<>(new File(dir, "top"), ext, new MockCodec()),
+        List.of(base1, base2));
+    assertEquals(0, clone.topCount());
+    for (int pass = 0; pass < 2; ++pass) {
+      // existing objects aren't copied to the top layer
+      assertEquals(ids.get(5), clone.write(base1.read(ids.get(5))));
+      assertEquals(ids.get(35), clone.write(base2.read(ids.get(35))));
+      assertEquals(0, clone.topCount());
+
+      for (int i = 0; i < ids.size(); ++i) {
+        assertTrue(clone.containsId(ids.get(i)));
+        assertEquals(i, clone.read(ids.get(i)).c);
+      }
+      clone.buildFilters(LayeredObjectManager.DEFAULT_FILTER_FPP);
+    }
+
+    List<String> newIds = writeMocks(clone, 60, 10);
+    assertEquals(10, clone.topCount());
+    ids.addAll(newIds);
+    for (String id : newIds) {
+      assertTrue(clone.isInTop(id));
+      assertFalse(base1.containsId(id));
+      assertFalse(base2.containsId(id));
+    }
+    // IDs that aren't full length skip the filters
+    assertFalse(clone.containsId(newIds.get(0).substring(0, 7)));
+    assertFalse(clone.containsId(newIds.get(0).substring(0, 20)));
+
+    List<String> sorted = ids.stream().sorted().collect(Collectors.toList());
+    assertEquals(sorted, clone.streamIds().collect(Collectors.toList()));
+    String prefix = sorted.get(20).substring(0, 2);
+    assertEquals(
+        sorted.stream().filter(id -> id.compareTo(prefix) >= 0).collect(Collectors.toList()),
+        clone.streamIds(prefix).collect(Collectors.toList()));
+
+    List<String> batch = new ArrayList<>(ids);
+    Mock absent = new Mock();
+    absent.c = -1;
+    batch.add(clone.getId(absent));
+    List<Mock> mocks = clone.readAll(batch);
+    for (int i = 0; i < ids.size(); ++i)
+      assertEquals(i, mocks.get(i).c);
+    assertNull(mocks.get(ids.size()));
+
+    // reopen: the top layer's IDs are reloaded
+    clone = new LayeredObjectManager<>(
+        new BinaryObjectManager<>(new File(dir, "top"), ext, new MockCodec()),
+        List.of(base1, base2));
+    assertEquals(10, clone.topCount());
+    assertEquals(sorted, clone.streamIds().collect(Collectors.toList()));
+  }
+
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import java.io.File;
+
+/**
+ * {@code BinaryObjectManager} test with objects decoded from mapped files.
+ */
+public class MappedBinaryObjectManagerTest extends BinaryObjectManagerTest {
+  
+
+  @Override
+  protected BinaryObjectManager<Mock> makeStore(File dir) {
+    BinaryObjectManager<Mock> store = super.makeStore(dir);
+    store.setMappedReadThreshold(1);
+    return store;
+  }
+
+}
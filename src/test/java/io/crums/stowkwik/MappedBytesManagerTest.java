@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * {@code BytesManager} test with mapped reads (of every file).
+ */
+public class MappedBytesManagerTest extends BytesManagerTest {
+  
+  
+  @Override
+  protected BytesManager newBytesManager(File dir) {
+    BytesManager manager = super.newBytesManager(dir);
+    manager.setMappedReadThreshold(1);
+    return manager;
+  }
+  
+  
+  @Test
+  public void testThreshold() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager store = newBytesManager(dir);
+    store.setMappedReadThreshold(1024);
+    
+    Random random = new Random(1);
+    byte[] small = new byte[1023];
+    byte[] large = new byte[1024];
+    random.nextBytes(small);
+    random.nextBytes(large);
+    
+    String smallId = store.write(ByteBuffer.wrap(small));
+    String largeId = store.write(ByteBuffer.wrap(large));
+    
+    ByteBuffer smallRead = store.read(smallId);
+    assertFalse(smallRead instanceof MappedByteBuffer);
+    assertEquals(ByteBuffer.wrap(small), smallRead);
+    
+    ByteBuffer largeRead = store.read(largeId);
+    assertTrue(largeRead instanceof MappedByteBuffer);
+    assertTrue(largeRead.isReadOnly());
+    assertEquals(ByteBuffer.wrap(large), largeRead);
+    
+    // validating a repeat write also reads thru the mapping
+    assertEquals(largeId, store.write(ByteBuffer.wrap(large)));
+    
+    store.setMappedReadThreshold(0);
+    assertFalse(store.read(largeId) instanceof MappedByteBuffer);
+  }
+
+}
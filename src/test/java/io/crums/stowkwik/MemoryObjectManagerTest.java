@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class MemoryObjectManagerTest extends ObjectManagerTest {
+
+  public MemoryObjectManagerTest() {
+    super(".mem");
+  }
+
+
+  /** The {@code dir} is ignored. */
+  @Override
+  protected MemoryObjectManager<Mock> makeStore(File dir) {
+    return new MemoryObjectManager<>(new MockCodec());
+  }
+
+
+  @Test
+  public void testSameIdsAsBinaryStore() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> files = new BinaryObjectManager<>(dir, ext, new MockCodec());
+    MemoryObjectManager<Mock> store = makeStore(dir);
+    for (int i = 0; i < 20; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      assertEquals(files.write(mock), store.write(mock));
+    }
+    assertEquals(
+        files.streamIds().collect(Collectors.toList()),
+        store.streamIds().collect(Collectors.toList()));
+    String id = files.streamIds().findFirst().get();
+    assertEquals(files.read(id), store.readUsingPrefix(id.substring(0, 8)));
+    assertEquals(20 * new MockCodec().maxBytes(), store.allocatedBytes());
+    assertTrue(store.getBytes(id).isReadOnly());
+  }
+
+
+  @Test
+  public void testSegments() {
+    MemoryObjectManager<Mock> store =
+        new MemoryObjectManager<>(new MockCodec(), HashFunction.forName("SHA-256"), 4096);
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      ids.add(store.write(mock));
+    }
+    assertEquals(1000, store.size());
+    assertTrue(store.segmentBytes() > 4096);
+    for (int i = 0; i < ids.size(); ++i)
+      assertEquals(i, store.read(ids.get(i)).c);
+    List<String> sorted = new ArrayList<>(ids);
+    Collections.sort(sorted);
+    String prefix = sorted.get(500).substring(0, 3);
+    assertEquals(
+        sorted.stream().filter(id -> id.compareTo(prefix) >= 0).collect(Collectors.toList()),
+        store.streamIds(prefix).collect(Collectors.toList()));
+    assertEquals(
+        sorted.subList(500, 1000).stream().map(store::read).collect(Collectors.toList()),
+        store.streamObjects(sorted.get(500)).collect(Collectors.toList()));
+  }
+
+
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    MemoryObjectManager<Mock> store = makeStore((File) null);
+    final int threads = 8;
+    final int perThread = 2000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; ++t) {
+        futures.add(executor.submit(() -> {
+          // every thread writes the same objects
+          List<String> ids = new ArrayList<>(perThread);
+          for (int i = 0; i < perThread; ++i) {
+            Mock mock = new Mock();
+            mock.c = i;
+            ids.add(store.write(mock));
+          }
+          return ids;
+        }));
+      }
+      List<String> expected = futures.get(0).get();
+      for (Future<List<String>> future : futures)
+        assertEquals(expected, future.get());
+      assertEquals(perThread, store.size());
+      for (int i = 0; i < perThread; ++i)
+        assertEquals(i, store.read(expected.get(i)).c);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -7,7 +7,11 @@ package io.crums.stowkwik;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
 import java.util.TreeMap;
 
 import org.junit.Test;
@@ -97,6 +101,37 @@ public abstract class ObjectManagerTest extends IoTestCase {
   }
   
   
+  @Test
+  public void testReadAll() {
+    ObjectManager<Mock> store = makeStore(new Object() { });
+    
+    List<String> ids = new ArrayList<>();
+    List<Mock> expected = new ArrayList<>();
+    
+    for (int i = 0; i < 500; ++i) {
+      Mock item = new Mock();
+      item.c = i;
+      if (i % 10 == 3) {
+        // not written
+        ids.add(store.getId(item));
+        expected.add(null);
+      } else {
+        ids.add(store.write(item));
+        expected.add(item);
+      }
+    }
+    // duplicates
+    ids.add(ids.get(0));
+    expected.add(expected.get(0));
+    
+    Collections.shuffle(ids, new Random(ids.size()));
+    Collections.shuffle(expected, new Random(expected.size()));
+    
+    assertEquals(expected, store.readAll(ids));
+    assertTrue(store.readAll(Collections.emptyList()).isEmpty());
+  }
+  
+  
   @Test
   public void testStreaming01_256() {
     Object label = new Object() { };
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class PackedObjectManagerTest extends NoBiggiesObjectManagerTest {
+
+  /** Small, so the tests cross segment boundaries. */
+  private final static int SEGMENT_SIZE = 4096;
+
+  public PackedObjectManagerTest() {
+    super(".pkd");
+  }
+
+
+  @Override
+  protected PackedObjectManager<Mock> makeStore(File dir) {
+    return new PackedObjectManager<>(
+        dir, ext, new MockCodec(),
+        HashFunction.forName(BaseHashedObjectManager.DEFAULT_HASH_ALGO), SEGMENT_SIZE);
+  }
+
+
+  private List<Mock> mocks(int count) {
+    List<Mock> mocks = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      mocks.add(mock);
+    }
+    return mocks;
+  }
+
+
+  /** Writes in batches, so that a seal may follow each. */
+  private List<String> writeAll(PackedObjectManager<Mock> store, List<Mock> mocks) {
+    List<String> ids = new ArrayList<>(mocks.size());
+    for (int i = 0; i < mocks.size(); i += 50)
+      ids.addAll(store.writeAll(mocks.subList(i, Math.min(i + 50, mocks.size()))));
+    return ids;
+  }
+
+
+  @Test
+  public void testSameIdsAsBinaryStore() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BinaryObjectManager<Mock> files = new BinaryObjectManager<>(new File(dir, "files"), ext, new MockCodec());
+    try (PackedObjectManager<Mock> packed = makeStore(new File(dir, "packed"))) {
+      for (Mock mock : mocks(10))
+        assertEquals(files.write(mock), packed.write(mock));
+    }
+  }
+
+
+  @Test
+  public void testSealAndReopen() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    List<Mock> mocks = mocks(500);
+    List<String> ids;
+    try (PackedObjectManager<Mock> store = makeStore(dir)) {
+      ids = writeAll(store, mocks);
+      assertEquals(mocks.size(), ids.size());
+      assertTrue(store.getSealedSegmentCount() > 1);
+      for (int i = 0; i < mocks.size(); ++i)
+        assertEquals(mocks.get(i), store.read(ids.get(i)));
+      assertEquals(mocks, store.readAll(ids));
+    }
+
+    try (PackedObjectManager<Mock> store = makeStore(dir)) {
+      for (int i = 0; i < mocks.size(); ++i)
+        assertEquals(mocks.get(i), store.read(ids.get(i)));
+      List<String> sorted = ids.stream().sorted().collect(Collectors.toList());
+      assertEquals(sorted, store.streamIds().collect(Collectors.toList()));
+
+      String prefix = sorted.get(200).substring(0, 3);
+      assertEquals(
+          sorted.stream().filter(id -> id.startsWith(prefix)).collect(Collectors.toList()),
+          store.streamIds(prefix).takeWhile(id -> id.startsWith(prefix)).collect(Collectors.toList()));
+    }
+  }
+
+
+  @Test
+  public void testRecoverTruncatedAppend() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    List<Mock> mocks = mocks(3);
+    List<String> ids;
+    File active;
+    try (PackedObjectManager<Mock> store = makeStore(dir)) {
+      ids = store.writeAll(mocks);
+      assertEquals(0, store.getSealedSegmentCount());
+      active = dir.listFiles((d, name) -> name.endsWith(ext + ".pack"))[0];
+    }
+    // simulate a torn write of the last record
+    try (RandomAccessFile file = new RandomAccessFile(active, "rw")) {
+      file.setLength(file.length() - 3);
+    }
+    try (PackedObjectManager<Mock> store = makeStore(dir)) {
+      assertEquals(mocks.get(0), store.read(ids.get(0)));
+      assertEquals(mocks.get(1), store.read(ids.get(1)));
+      assertFalse(store.containsId(ids.get(2)));
+
+      // re-appends cleanly
+      assertEquals(ids.get(2), store.write(mocks.get(2)));
+      assertEquals(mocks.get(2), store.read(ids.get(2)));
+    }
+  }
+
+
+  @Test
+  public void testCompact() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    List<Mock> mocks = mocks(500);
+    List<String> ids;
+    try (PackedObjectManager<Mock> store = makeStore(dir)) {
+      ids = writeAll(store, mocks);
+      int segments = store.getSealedSegmentCount();
+      assertTrue(segments > 1);
+      assertEquals(segments, store.compact());
+      assertEquals(1, store.getSealedSegmentCount());
+      assertEquals(0, store.compact());
+      for (int i = 0; i < mocks.size(); ++i)
+        assertEquals(mocks.get(i), store.read(ids.get(i)));
+    }
+    try (PackedObjectManager<Mock> store = makeStore(dir)) {
+      assertEquals(1, store.getSealedSegmentCount());
+      assertEquals(mocks.size(), store.streamIds().count());
+      assertEquals(mocks, store.readAll(ids));
+    }
+  }
+
+
+  @Test
+  public void testInterruptedReadLeavesChannelsOpen() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    List<Mock> mocks = mocks(500);
+    try (PackedObjectManager<Mock> store = makeStore(dir)) {
+      List<String> ids = writeAll(store, mocks);
+      assertTrue(store.getSealedSegmentCount() > 0);
+      String sealedId = ids.get(0);
+      String activeId = ids.get(ids.size() - 1);
+
+      for (String id : List.of(sealedId, activeId)) {
+        Thread.currentThread().interrupt();
+        try {
+          store.read(id);
+          fail();
+        } catch (UncheckedIOException expected) {
+        } finally {
+          Thread.interrupted();
+        }
+      }
+
+      assertEquals(mocks, store.readAll(ids));
+      Mock mock = new Mock();
+      mock.c = mocks.size();
+      assertEquals(mock, store.read(store.write(mock)));
+    }
+  }
+
+}
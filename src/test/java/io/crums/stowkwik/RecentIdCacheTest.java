@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import io.crums.stowkwik.ConcurrentWriteTest.CountingManager;
+import io.crums.testing.IoTestCase;
+
+/**
+ *
+ */
+public class RecentIdCacheTest extends IoTestCase {
+
+  @Test
+  public void testRepeatWrites() {
+    CountingManager store = new CountingManager(getMethodOutputFilepath(new Object() { }), ".rid");
+    RecentIdCache cache = new RecentIdCache();
+    store.setRecentIdCache(cache);
+
+    Mock mock = new Mock();
+    mock.c = 17;
+    String id = store.write(mock);
+    for (int count = 5; count-- > 0; )
+      assertEquals(id, store.write(mock));
+
+    assertEquals(1, store.writes.get());
+    assertEquals(0, store.validations.get());
+    assertEquals(5, cache.hits());
+    assertTrue(store.containsId(id));
+    assertEquals(6, cache.hits());
+    assertTrue(store.containsId(id.toUpperCase()));
+    assertEquals(7, cache.hits());
+  }
+
+
+  @Test
+  public void testIdentities() {
+    CountingManager store = new CountingManager(getMethodOutputFilepath(new Object() { }), ".rid");
+    RecentIdCache cache = new RecentIdCache(16, 0, true);
+    store.setRecentIdCache(cache);
+
+    Mock mock = new Mock();
+    String id = store.write(mock);
+    assertEquals(id, store.write(mock));
+    assertEquals(1, cache.identityHits());
+    assertEquals(0, cache.hits());
+
+    Mock copy = new Mock();
+    assertEquals(id, store.write(copy));
+    assertEquals(1, cache.hits());
+    assertEquals(1, store.writes.get());
+  }
+
+
+  @Test
+  public void testRewriteAfterRemove() {
+    CountingManager store = new CountingManager(getMethodOutputFilepath(new Object() { }), ".rid");
+    RecentIdCache cache = new RecentIdCache(16, 0, true);
+    store.setRecentIdCache(cache);
+
+    Mock mock = new Mock();
+    mock.c = 5;
+    String id = store.write(mock);
+    assertTrue(store.remove(id));
+    assertFalse(store.containsId(id));
+
+    // the same instance is really written again
+    assertEquals(id, store.write(mock));
+    assertEquals(2, store.writes.get());
+    assertEquals(mock, store.read(id));
+  }
+
+
+  @Test
+  public void testEviction() {
+    CountingManager store = new CountingManager(getMethodOutputFilepath(new Object() { }), ".rid");
+    RecentIdCache cache = new RecentIdCache(16, 0, false);
+    store.setRecentIdCache(cache);
+
+    for (int i = 0; i < 64; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      store.write(mock);
+    }
+    assertEquals(48, cache.evictions());
+
+    Mock first = new Mock();
+    first.c = 0;
+    store.write(first);
+    assertEquals(1, store.validations.get());
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class ShardedObjectManagerTest extends NoBiggiesObjectManagerTest {
+
+  public ShardedObjectManagerTest() {
+    super(".shd");
+  }
+
+
+  @Override
+  protected ShardedObjectManager<Mock> makeStore(File dir) {
+    return makeStore(dir, 4);
+  }
+
+
+  private ShardedObjectManager<Mock> makeStore(File dir, int n) {
+    List<BinaryObjectManager<Mock>> shards = new ArrayList<>();
+    for (int s = 0; s < n; ++s)
+      shards.add(new BinaryObjectManager<>(new File(dir, n + "-" + s), ext, new MockCodec()));
+    return new ShardedObjectManager<>(shards);
+  }
+
+
+  private List<String> writeMocks(ObjectManager<Mock> store, int count) {
+    List<String> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      ids.add(store.write(mock));
+    }
+    return ids;
+  }
+
+
+  @Test
+  public void testShardIndex() {
+    assertEquals(0, ShardedObjectManager.shardIndex("00000000", 4));
+    assertEquals(0, ShardedObjectManager.shardIndex("3fffffff", 4));
+    assertEquals(1, ShardedObjectManager.shardIndex("40000000", 4));
+    assertEquals(3, ShardedObjectManager.shardIndex("ffffffff", 4));
+    assertEquals(2, ShardedObjectManager.shardIndex("8", 4));
+    assertEquals(0, ShardedObjectManager.shardIndex("ffffffff", 1));
+  }
+
+
+  @Test
+  public void testRouting() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    ShardedObjectManager<Mock> store = makeStore(dir);
+    List<String> ids = writeMocks(store, 400);
+
+    int[] counts = new int[store.getShardCount()];
+    for (String id : ids) {
+      int s = store.shardIndex(id);
+      ++counts[s];
+      assertTrue(store.getShards().get(s).containsId(id));
+      for (int t = 0; t < counts.length; ++t)
+        if (t != s)
+          assertFalse(store.getShards().get(t).containsId(id));
+    }
+    for (int count : counts)
+      assertTrue(count > 50);
+
+    List<String> sorted = ids.stream().sorted().collect(Collectors.toList());
+    assertEquals(sorted, store.streamIds().collect(Collectors.toList()));
+    assertEquals(sorted, store.streamIdsUnordered().sorted().collect(Collectors.toList()));
+  }
+
+
+  @Test
+  public void testReshard() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    ShardedObjectManager<Mock> store = makeStore(dir);
+    List<String> ids = writeMocks(store, 200);
+
+    ShardedObjectManager<Mock> resharded = store.reshard(makeStore(dir, 3).getShards(), 2);
+    assertEquals(3, resharded.getShardCount());
+    List<Mock> mocks = resharded.readAll(ids);
+    for (int i = 0; i < ids.size(); ++i) {
+      assertEquals(i, mocks.get(i).c);
+      assertTrue(resharded.getShard(ids.get(i)).containsId(ids.get(i)));
+    }
+    assertEquals(
+        ids.stream().sorted().collect(Collectors.toList()),
+        resharded.streamIds().collect(Collectors.toList()));
+  }
+
+
+  @Test
+  public void testReshardRejectsSharedRoots() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    ShardedObjectManager<Mock> store = makeStore(dir, 2);
+    writeMocks(store, 10);
+
+    List<BaseHashedObjectManager<Mock>> targets = new ArrayList<>(makeStore(dir, 3).getShards());
+    targets.set(1, store.getShards().get(0));
+    try {
+      store.reshard(targets, 2);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+
+  @Test
+  public void testReshardFileShardsLeavesSources() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    File staging = new File(dir, "staging");
+    assertTrue(staging.mkdirs());
+    List<FileManager> sources = new ArrayList<>();
+    for (int s = 0; s < 2; ++s)
+      sources.add(new FileManager(new File(dir, "src-" + s), ".fsh", true));
+    ShardedObjectManager<File> store = new ShardedObjectManager<>(sources);
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 20; ++i) {
+      File file = new File(staging, "f" + i);
+      Files.write(file.toPath(), ("file " + i).getBytes(StandardCharsets.UTF_8));
+      ids.add(store.write(file));
+    }
+
+    List<FileManager> moving = new ArrayList<>();
+    for (int s = 0; s < 3; ++s)
+      moving.add(new FileManager(new File(dir, "mv-" + s), ".fsh", true));
+    try {
+      store.reshard(moving, 2);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+
+    List<FileManager> copying = new ArrayList<>();
+    for (int s = 0; s < 3; ++s)
+      copying.add(new FileManager(new File(dir, "cp-" + s), ".fsh", false));
+    ShardedObjectManager<File> resharded = store.reshard(copying, 2);
+    for (String id : ids) {
+      assertTrue(store.containsId(id));
+      assertTrue(resharded.getShard(id).containsId(id));
+    }
+  }
+
+
+  @Test
+  public void testIdSchemeMismatch() {
+    File dir = getMethodOutputFilepath(new Object() { });
+    HashFunction md5 = HashFunction.forName(BaseHashedObjectManager.DEFAULT_HASH_ALGO);
+    List<FileManager> shards = List.of(
+        new FileManager(new File(dir, "flat"), ".fsh", md5, false),
+        new FileManager(new File(dir, "tree"), ".fsh", md5, false, 64 * 1024));
+    try {
+      new ShardedObjectManager<>(shards);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+}
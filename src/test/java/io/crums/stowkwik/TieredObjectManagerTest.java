@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class TieredObjectManagerTest extends NoBiggiesObjectManagerTest {
+
+  public TieredObjectManagerTest() {
+    super(".tier");
+  }
+
+
+  @Override
+  protected TieredObjectManager<Mock> makeStore(File dir) {
+    return new TieredObjectManager<>(
+        new BinaryObjectManager<>(new File(dir, "hot"), ext, new MockCodec()),
+        new PackedObjectManager<>(new File(dir, "cold"), ext, new MockCodec()));
+  }
+
+
+  private List<String> writeMocks(ObjectManager<Mock> store, int first, int count) {
+    List<String> ids = new ArrayList<>(count);
+    for (int i = first; i < first + count; ++i) {
+      Mock mock = new Mock();
+      mock.c = i;
+      ids.add(store.write(mock));
+    }
+    return ids;
+  }
+
+
+  @Test
+  public void testMigrate() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    List<String> ids;
+    try (TieredObjectManager<Mock> store = makeStore(dir)) {
+      ids = writeMocks(store, 0, 20);
+      assertEquals(20, store.hotCount());
+
+      // nothing's that old
+      assertEquals(0, store.migrateOlderThan(Instant.now().minusSeconds(3600)));
+      assertEquals(20, store.hotCount());
+
+      assertEquals(20, store.migrateOlderThan(Instant.now().plusSeconds(2)));
+      assertEquals(0, store.hotCount());
+      assertEquals(0, store.getHotTier().streamIds().count());
+      for (int i = 0; i < ids.size(); ++i) {
+        assertFalse(store.isHot(ids.get(i)));
+        assertTrue(store.getColdTier().containsId(ids.get(i)));
+        assertEquals(i, store.read(ids.get(i)).c);
+      }
+
+      // cold objects are not re-heated
+      assertEquals(ids.get(3), writeMocks(store, 3, 1).get(0));
+      assertEquals(0, store.hotCount());
+      assertEquals(0, store.migrateOlderThan(Instant.now().plusSeconds(2)));
+
+      ids.addAll(writeMocks(store, 20, 5));
+      assertEquals(5, store.hotCount());
+      List<Mock> mocks = store.readAll(ids);
+      for (int i = 0; i < ids.size(); ++i)
+        assertEquals(i, mocks.get(i).c);
+      assertEquals(
+          ids.stream().sorted().collect(Collectors.toList()),
+          store.streamIds().collect(Collectors.toList()));
+    }
+
+    // membership is reloaded on reopening
+    try (TieredObjectManager<Mock> store = makeStore(dir)) {
+      assertEquals(5, store.hotCount());
+      assertEquals(5, store.migrateOlderThan(Instant.now().plusSeconds(2)));
+      assertEquals(25, store.getColdTier().streamIds().count());
+    }
+  }
+
+}
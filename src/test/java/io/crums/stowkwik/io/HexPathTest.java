@@ -298,6 +298,38 @@ public class HexPathTest extends IoTestCase {
   }
   
   
+  @Test
+  public void testCache() throws IOException {
+    File dir = getMethodOutputFilepath(new Object() { });
+    HexPath hexPath = new HexPath(dir, EXT, 256);
+    
+    String hex = "00112233";
+    File file = hexPath.suggest(hex, true);
+    assertTrue(file.createNewFile());
+    
+    // disabled by default
+    assertEquals(file, hexPath.find(hex));
+    assertNull(hexPath.findCached(hex));
+    
+    hexPath.setCacheSize(16);
+    assertNull(hexPath.findCached(hex));
+    assertEquals(file, hexPath.find(hex));
+    assertEquals(file, hexPath.findCached(hex));
+    assertEquals(file, hexPath.findCached(hex.toUpperCase()));
+    
+    // cached paths aren't validated..
+    assertTrue(file.delete());
+    assertEquals(file, hexPath.findCached(hex));
+    assertEquals(List.of(file), hexPath.findAll(List.of(hex)));
+    
+    // ..until evicted
+    hexPath.evictCached(hex);
+    assertNull(hexPath.findCached(hex));
+    assertNull(hexPath.find(hex));
+    assertEquals(Collections.singletonList(null), hexPath.findAll(List.of(hex)));
+  }
+  
+  
   @Test
   public void testFileRenameAssumption() throws IOException {
     File dir = getMethodOutputFilepath(new Object() { });
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.io;
+
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class IdBloomFilterTest {
+
+
+  @Test
+  public void testNoFalseNegatives() {
+    Random random = new Random(11);
+    byte[][] ids = new byte[5000][20];
+    IdBloomFilter filter = new IdBloomFilter(ids.length, 0.01);
+    for (byte[] id : ids) {
+      random.nextBytes(id);
+      filter.add(id);
+    }
+    for (byte[] id : ids)
+      assertTrue(filter.mightContain(id));
+    assertTrue(filter.mightContain(io.crums.util.IntegralStrings.toHex(ids[0])));
+  }
+
+
+  @Test
+  public void testFalsePositiveRate() {
+    Random random = new Random(12);
+    final int count = 10_000;
+    IdBloomFilter filter = new IdBloomFilter(count, 0.01);
+    byte[] id = new byte[32];
+    for (int i = 0; i < count; ++i) {
+      random.nextBytes(id);
+      filter.add(id);
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < count; ++i) {
+      random.nextBytes(id);
+      if (filter.mightContain(id))
+        ++falsePositives;
+    }
+    assertTrue("false positives: " + falsePositives, falsePositives < count / 50);
+  }
+
+
+  @Test
+  public void testBadArgs() {
+    try {
+      new IdBloomFilter(0, 0.01);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    try {
+      new IdBloomFilter(10, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    // rounds up to 2^37 bits: one past the max
+    try {
+      new IdBloomFilter(50_000_000_000L, 0.5);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+}
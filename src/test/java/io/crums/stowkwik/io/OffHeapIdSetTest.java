@@ -0,0 +1,78 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.io;
+
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+/**
+ *
+ */
+public class OffHeapIdSetTest {
+
+
+  private static byte[][] randomIds(int count, int idLength, long seed) {
+    Random random = new Random(seed);
+    byte[][] ids = new byte[count][idLength];
+    for (byte[] id : ids)
+      random.nextBytes(id);
+    return ids;
+  }
+
+
+  @Test
+  public void testAddContains() {
+    byte[][] ids = randomIds(1000, 16, 7);
+    OffHeapIdSet set = new OffHeapIdSet(16, ids.length);
+    for (int index = 0; index < ids.length; index += 2)
+      assertTrue(set.add(ids[index]));
+    assertEquals(ids.length / 2, set.size());
+    for (int index = 0; index < ids.length; ++index)
+      assertEquals(index % 2 == 0, set.contains(ids[index]));
+    assertFalse(set.add(ids[0]));
+
+    // same leading 8 bytes (tag), different ID
+    byte[] twin = ids[0].clone();
+    twin[15] ^= 1;
+    assertFalse(set.contains(twin));
+    assertTrue(set.add(twin));
+    assertTrue(set.contains(twin));
+  }
+
+
+  @Test
+  public void testConcurrentAdds() {
+    byte[][] ids = randomIds(20_000, 20, 11);
+    OffHeapIdSet set = new OffHeapIdSet(20, ids.length);
+    AtomicInteger added = new AtomicInteger();
+    // each ID is added by 4 threads; exactly one should win
+    IntStream.range(0, 4 * ids.length).parallel().forEach(i -> {
+      if (set.add(ids[i % ids.length]))
+        added.incrementAndGet();
+    });
+    assertEquals(ids.length, added.get());
+    assertEquals(ids.length, set.size());
+    for (byte[] id : ids)
+      assertTrue(set.contains(id));
+  }
+
+
+  @Test
+  public void testFull() {
+    byte[][] ids = randomIds(64, 16, 3);
+    OffHeapIdSet set = new OffHeapIdSet(16, 4);
+    try {
+      for (byte[] id : ids)
+        set.add(id);
+      fail();
+    } catch (IllegalStateException expected) {  }
+  }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.crums.testing.IoTestCase;
+import io.crums.util.IntegralStrings;
+
+/**
+ *
+ */
+public class GroupCommitWriteLogTest extends IoTestCase {
+
+
+  /**
+   * Counts batches written thru to the underlying log.
+   */
+  private static class CountingLog implements BatchWriteLog {
+    final BatchWriteLog log;
+    final AtomicInteger batches = new AtomicInteger();
+    final AtomicInteger forces = new AtomicInteger();
+    volatile boolean fail;
+
+    CountingLog(BatchWriteLog log) {
+      this.log = log;
+    }
+
+    @Override
+    public void objectWritten(String id) {
+      throw new AssertionError("not batched: " + id);
+    }
+
+    @Override
+    public void objectsWritten(long[] timeMillis, String[] ids, int count) {
+      if (fail)
+        throw new UncheckedIOException(new IOException("simulated"));
+      batches.incrementAndGet();
+      log.objectsWritten(timeMillis, ids, count);
+    }
+
+    @Override
+    public void force() {
+      forces.incrementAndGet();
+      log.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+      log.close();
+    }
+  }
+
+
+  private static String id(int thread, int i) {
+    byte[] id = new byte[16];
+    id[0] = (byte) thread;
+    id[12] = (byte) (i >>> 24);
+    id[13] = (byte) (i >>> 16);
+    id[14] = (byte) (i >>> 8);
+    id[15] = (byte) i;
+    return IntegralStrings.toHex(id);
+  }
+
+
+  private File logFile(Object label) {
+    File dir = getMethodOutputFilepath(label);
+    dir.mkdirs();
+    return new File(dir, "wlog.gc" + WriteLogs.WLOG_TABLE_EXT);
+  }
+
+
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    File file = logFile(new Object() { });
+    CountingLog counting = new CountingLog(new TableWriteLog(file, 16));
+    final int threads = 8;
+    final int perThread = 5000;
+
+    try (GroupCommitWriteLog log =
+        new GroupCommitWriteLog(counting, 1024, 256, Duration.ofMillis(5), false)) {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; ++t) {
+          final int thread = t;
+          futures.add(executor.submit(() -> {
+            for (int i = 0; i < perThread; ++i)
+              log.objectWritten(id(thread, i));
+          }));
+        }
+        for (Future<?> future : futures)
+          future.get();
+      } finally {
+        executor.shutdown();
+      }
+      log.flush();
+      assertEquals(threads * perThread, log.committedCount());
+    }
+    assertTrue(counting.batches.get() < threads * perThread);
+    assertEquals(0, counting.forces.get());
+
+    try (TableWriteLogReader reader = new TableWriteLogReader(file)) {
+      assertEquals(threads * perThread, reader.count());
+      reader.verify();
+      Set<String> ids = new HashSet<>();
+      long[] last = { 0 };
+      reader.forEach(0, (index, time, id) -> {
+        assertTrue(time >= last[0]);
+        last[0] = time;
+        ids.add(IntegralStrings.toHex(id));
+      });
+      assertEquals(threads * perThread, ids.size());
+    }
+  }
+
+
+  @Test
+  public void testDurable() throws Exception {
+    File file = logFile(new Object() { });
+    CountingLog counting = new CountingLog(new TableWriteLog(file, 16));
+    // a long interval: durable writes shouldn't have to wait for it
+    try (GroupCommitWriteLog log =
+            new GroupCommitWriteLog(counting, 64, 64, Duration.ofMinutes(5), true);
+         TableWriteLogReader reader = new TableWriteLogReader(file)) {
+
+      log.objectWritten(id(0, 0));
+      log.objectWrittenDurably(id(0, 1));
+      reader.update();
+      assertEquals(2, reader.count());
+      assertEquals(id(0, 1), reader.get(1).hex);
+      assertTrue(counting.forces.get() >= 1);
+
+      // more entries than fit in the ring
+      for (int i = 2; i < 500; ++i)
+        log.objectWritten(id(0, i));
+      log.flush();
+      reader.update();
+      assertEquals(500, reader.count());
+    }
+  }
+
+
+  @Test
+  public void testFailure() throws Exception {
+    File file = logFile(new Object() { });
+    CountingLog counting = new CountingLog(new PlainTextWriteLog(file));
+    GroupCommitWriteLog log = new GroupCommitWriteLog(counting);
+    log.objectWrittenDurably(id(1, 1));
+    counting.fail = true;
+    try {
+      log.objectWrittenDurably(id(1, 2));
+      fail();
+    } catch (UncheckedIOException expected) {  }
+    try {
+      log.objectWritten(id(1, 3));
+      fail();
+    } catch (UncheckedIOException expected) {  }
+    try {
+      log.close();
+      fail();
+    } catch (UncheckedIOException expected) {  }
+
+    try (PlainTextWriteLogReader reader = new PlainTextWriteLogReader(file)) {
+      assertEquals(1, reader.size());
+      assertEquals(id(1, 1), reader.get(0).hex);
+    }
+  }
+
+}
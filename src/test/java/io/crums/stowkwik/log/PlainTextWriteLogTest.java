@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import org.junit.Test;
+
+import io.crums.stowkwik.io.CorruptionException;
+import io.crums.testing.IoTestCase;
+
+/**
+ *
+ */
+public class PlainTextWriteLogTest extends IoTestCase {
+
+  private final static String ID_A = "86d3f3a95c324c9479bd8986968f4327";
+  private final static String ID_B = "067b4e4fdb16fd58aa8a009b9fc0aad2";
+  private final static String ID_C = "aa8a009b9fc0aad2067b4e4fdb16fd58";
+
+
+  private File logFile(Object label) {
+    File dir = getMethodOutputFilepath(label);
+    dir.mkdirs();
+    return new File(dir, "wlog.pt" + WriteLogs.WLOG_PLAINTEXT_EXT);
+  }
+
+
+  @Test
+  public void testTimeOrderAcrossReopens() throws Exception {
+    File file = logFile(new Object() { });
+    long future = Instant.now().plusSeconds(3600).toEpochMilli();
+    try (PlainTextWriteLog log = new PlainTextWriteLog(file)) {
+      log.objectsWritten(new long[] { future }, new String[] { ID_A }, 1);
+    }
+    // the clock now reads earlier than the last entry
+    try (PlainTextWriteLog log = new PlainTextWriteLog(file)) {
+      log.objectWritten(ID_B);
+    }
+    try (PlainTextWriteLogReader reader = new PlainTextWriteLogReader(file)) {
+      assertEquals(2, reader.size());
+      assertEquals(ID_B, reader.get(1).hex);
+      assertEquals(reader.get(0).timestamp, reader.get(1).timestamp);
+    }
+  }
+
+
+  @Test
+  public void testReopenIgnoresPartialEntry() throws Exception {
+    File file = logFile(new Object() { });
+    try (PlainTextWriteLog log = new PlainTextWriteLog(file)) {
+      log.objectWritten(ID_A);
+    }
+    Files.write(
+        file.toPath(), "2019-11-15T23:0".getBytes(StandardCharsets.US_ASCII),
+        StandardOpenOption.APPEND);
+    new PlainTextWriteLog(file).close();
+  }
+
+
+  @Test
+  public void testReopenMalformed() throws Exception {
+    File file = logFile(new Object() { });
+    Files.write(
+        file.toPath(),
+        ("not-a-time " + ID_C + PlainTextWriteLog.ENTRY_END).getBytes(StandardCharsets.US_ASCII));
+    try {
+      new PlainTextWriteLog(file).close();
+      fail();
+    } catch (CorruptionException expected) {  }
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import io.crums.testing.IoTestCase;
+import io.crums.util.IntegralStrings;
+
+/**
+ *
+ */
+public class SegmentedWriteLogTest extends IoTestCase {
+
+  private final static int ID_LEN = 16;
+
+
+  private static String id(int i) {
+    byte[] id = new byte[ID_LEN];
+    id[0] = (byte) (i >>> 8);
+    id[1] = (byte) i;
+    return IntegralStrings.toHex(id);
+  }
+
+
+  /**
+   * Logs {@code count} entries, one per second (of logical time) from {@code startMillis}.
+   */
+  private static void log(SegmentedWriteLog log, int first, int count, long startMillis) {
+    for (int i = first; i < first + count; ++i)
+      log.objectsWritten(new long[] { startMillis + i * 1000L }, new String[] { id(i) }, 1);
+  }
+
+
+  @Test
+  public void testRotateBySize() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    final long start = 1_700_000_000_000L;
+    final int width = TableWriteLog.recordWidth(ID_LEN);
+    final int perSegment = (4096 - TableWriteLog.HEADER_BYTES) / width;
+
+    try (SegmentedWriteLog log = new SegmentedWriteLog(dir, ID_LEN)) {
+      log.setMaxSegmentBytes(4096);
+      log(log, 0, 1000, start);
+
+      List<SegmentedWriteLog.Segment> sealed = log.sealedSegments();
+      assertEquals(1000 / perSegment, sealed.size());
+      long total = 0;
+      for (int index = 0; index < sealed.size(); ++index) {
+        SegmentedWriteLog.Segment segment = sealed.get(index);
+        assertEquals(index, segment.seq);
+        assertEquals(perSegment, segment.count);
+        assertTrue(segment.file.length() <= 4096);
+        assertEquals(start + total * 1000, segment.firstMillis);
+        total += segment.count;
+        assertEquals(start + (total - 1) * 1000, segment.lastMillis);
+      }
+      assertEquals(sealed.size(), log.activeSeq());
+    }
+
+    // reopen and append
+    try (SegmentedWriteLog log = new SegmentedWriteLog(dir, ID_LEN)) {
+      log.setMaxSegmentBytes(4096);
+      log(log, 1000, 10, start);
+    }
+
+    try (SegmentedWriteLogReader reader = new SegmentedWriteLogReader(dir)) {
+      assertEquals(1010, reader.count());
+      for (int i : new int[] { 0, 1, perSegment - 1, perSegment, 500, 999, 1000, 1009 }) {
+        List<TableWriteLogReader.Entry> entries = reader.listFrom(start + i * 1000L);
+        assertEquals(1010 - i, entries.size());
+        assertEquals(id(i), entries.get(0).hex);
+        assertEquals(start + i * 1000L, entries.get(0).timeMillis);
+      }
+      // between entries
+      assertEquals(id(501), reader.streamFrom(start + 500_500).findFirst().get().hex);
+      assertEquals(1010, reader.listFrom(0).size());
+      assertTrue(reader.listFrom(start + 2_000_000).isEmpty());
+    }
+  }
+
+
+  @Test
+  public void testRotateByAgeAndDetach() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    final long start = 1_700_000_000_000L;
+    try (SegmentedWriteLog log = new SegmentedWriteLog(dir, ID_LEN);
+         SegmentedWriteLogReader reader = new SegmentedWriteLogReader(dir)) {
+      log.setMaxSegmentAge(Duration.ofSeconds(10));
+      log(log, 0, 35, start);   // 10 entries per segment
+
+      assertEquals(3, log.sealedSegments().size());
+      assertEquals(10, log.sealedSegments().get(0).count);
+      reader.update();
+      assertEquals(35, reader.count());
+
+      // segments 0 and 1 are entirely before entry 20
+      List<SegmentedWriteLog.Segment> detached = log.detachBefore(start + 20_000);
+      assertEquals(2, detached.size());
+      assertTrue(detached.get(0).file.isFile());
+      assertEquals(1, log.sealedSegments().size());
+      File archive = new File(dir.getParentFile(), dir.getName() + ".archived-seg0");
+      assertTrue(detached.get(0).file.renameTo(archive));
+      assertTrue(detached.get(1).file.delete());
+
+      reader.update();
+      assertEquals(15, reader.count());
+      assertEquals(id(20), reader.listFrom(0).get(0).hex);
+
+      // the archived segment is still a readable table log
+      try (TableWriteLogReader segment = new TableWriteLogReader(archive)) {
+        assertEquals(10, segment.count());
+        assertEquals(id(0), segment.get(0).hex);
+      }
+
+      assertEquals(0, log.deleteBefore(start));
+      assertTrue(log.rotate());
+      assertFalse(log.rotate());
+      assertEquals(2, log.deleteBefore(start + 100_000));
+      reader.update();
+      assertEquals(0, reader.count());
+      log(log, 40, 1, start);
+      reader.update();
+      assertEquals(
+          List.of(id(40)),
+          reader.streamFrom(0).map(e -> e.hex).collect(Collectors.toList()));
+    }
+  }
+
+}
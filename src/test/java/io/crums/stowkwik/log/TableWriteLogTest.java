@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.stowkwik.log;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.crums.stowkwik.BytesManager;
+import io.crums.stowkwik.io.CorruptionException;
+import io.crums.testing.IoTestCase;
+import io.crums.util.IntegralStrings;
+
+/**
+ *
+ */
+public class TableWriteLogTest extends IoTestCase {
+
+  private final static String EXT = ".tlog";
+
+
+  private List<String> writeObjects(WriteLoggedObjectManager<ByteBuffer> store, int first, int count) {
+    List<String> ids = new ArrayList<>(count);
+    for (int i = first; i < first + count; ++i)
+      ids.add(store.write(ByteBuffer.wrap(("object " + i).getBytes())));
+    return ids;
+  }
+
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager bytes = new BytesManager(dir, EXT);
+    long before = System.currentTimeMillis();
+    List<String> ids;
+    try (WriteLoggedObjectManager<ByteBuffer> store =
+        new WriteLoggedObjectManager<>(bytes, WriteLogs.newTableWriteLog(bytes))) {
+      ids = writeObjects(store, 0, 100);
+    }
+    long after = System.currentTimeMillis();
+
+    File logFile = WriteLogs.declareTableLogFile(dir, EXT);
+    int width = TableWriteLog.recordWidth(16);
+    assertEquals(TableWriteLog.HEADER_BYTES + 100L * width, logFile.length());
+    // over twice as compact as plain text (timestamp, space, hex, newline)
+    assertTrue(2 * width < 19 + 1 + 32 + 1);
+
+    try (TableWriteLogReader reader = WriteLogs.newTableWriteLogReader(dir, EXT)) {
+      assertEquals(16, reader.getIdLength());
+      assertEquals(100, reader.count());
+      reader.verify();
+      long last = 0;
+      byte[] id = new byte[16];
+      for (int index = 0; index < ids.size(); ++index) {
+        TableWriteLogReader.Entry entry = reader.get(index);
+        assertEquals(ids.get(index), entry.hex);
+        assertTrue(entry.timeMillis >= before && entry.timeMillis <= after);
+        assertTrue(entry.timeMillis >= last);
+        last = entry.timeMillis;
+        assertEquals(entry.timeMillis, reader.timeMillis(index));
+        reader.copyId(index, id);
+        assertEquals(ids.get(index), IntegralStrings.toHex(id));
+      }
+      assertEquals(0, reader.indexOf(before));
+      assertEquals(100, reader.indexOf(after + 1));
+      long mid = reader.timeMillis(50);
+      long index = reader.indexOf(mid);
+      assertTrue(index <= 50);
+      assertEquals(mid, reader.timeMillis(index));
+      assertTrue(index == 0 || reader.timeMillis(index - 1) < mid);
+
+      int[] visits = { 0 };
+      reader.forEach(40, (i, time, bid) -> {
+        assertEquals(ids.get((int) i), IntegralStrings.toHex(bid));
+        ++visits[0];
+      });
+      assertEquals(60, visits[0]);
+    }
+  }
+
+
+  @Test
+  public void testAppendAndUpdate() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    BytesManager bytes = new BytesManager(dir, EXT);
+    File logFile = WriteLogs.declareTableLogFile(dir, EXT);
+
+    try (WriteLoggedObjectManager<ByteBuffer> store =
+        new WriteLoggedObjectManager<>(bytes, WriteLogs.newTableWriteLog(bytes))) {
+      List<String> ids = writeObjects(store, 0, 10);
+      try (TableWriteLogReader reader = new TableWriteLogReader(logFile)) {
+        assertEquals(10, reader.count());
+        assertFalse(reader.update());
+        ids.addAll(writeObjects(store, 10, 5));
+        assertEquals(10, reader.count());
+        assertTrue(reader.update());
+        assertEquals(15, reader.count());
+        assertEquals(ids.get(14), reader.get(14).hex);
+      }
+    }
+
+    // simulate a torn append
+    try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+      raf.seek(raf.length());
+      raf.write(new byte[] { 1, 2, 3 });
+    }
+    try (TableWriteLog log = new TableWriteLog(logFile, 16)) {
+      assertEquals(TableWriteLog.HEADER_BYTES + 15L * TableWriteLog.recordWidth(16), logFile.length());
+      log.objectWritten(bytes.getId(ByteBuffer.wrap("x".getBytes())));
+    }
+    try (TableWriteLogReader reader = new TableWriteLogReader(logFile)) {
+      assertEquals(16, reader.count());
+      reader.verify();
+    }
+
+    try {
+      new TableWriteLog(logFile, 32).close();
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+
+  @Test
+  public void testCorruption() throws Exception {
+    File dir = getMethodOutputFilepath(new Object() { });
+    dir.mkdirs();
+    File logFile = new File(dir, "wlog" + EXT + WriteLogs.WLOG_TABLE_EXT);
+    byte[] id = new byte[20];
+    Arrays.fill(id, (byte) 7);
+    try (TableWriteLog log = new TableWriteLog(logFile, 20)) {
+      for (int i = 0; i < 3; ++i)
+        log.objectWritten(IntegralStrings.toHex(id));
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+      raf.seek(TableWriteLog.HEADER_BYTES + TableWriteLog.recordWidth(20) + 10);
+      raf.write(0);
+    }
+    try (TableWriteLogReader reader = new TableWriteLogReader(logFile)) {
+      reader.get(0);
+      try {
+        reader.get(1);
+        fail();
+      } catch (CorruptionException expected) {  }
+      try {
+        reader.verify();
+        fail();
+      } catch (CorruptionException expected) {  }
+    }
+  }
+
+}